@@ -0,0 +1,32 @@
+package pl.mrugames.commons.router;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Encoding of byte frames. All formats share the shape of JSON frames, so requests and responses
+ * are translated and bound to the route arguments in the same way.
+ */
+public enum FrameFormat {
+    JSON,
+    SMILE,
+    CBOR;
+
+    /**
+     * @return factory of parsers and generators of this format, bound to the mapper, so it shares its configuration
+     */
+    public JsonFactory createFactory(ObjectMapper mapper) {
+        switch (this) {
+            case JSON:
+                return mapper.getFactory();
+            case SMILE:
+                return new SmileFactory(mapper);
+            case CBOR:
+                return new CBORFactory(mapper);
+            default:
+                throw new IllegalStateException("Unknown frame format: " + this);
+        }
+    }
+}
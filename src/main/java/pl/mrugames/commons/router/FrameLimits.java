@@ -0,0 +1,109 @@
+package pl.mrugames.commons.router;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pl.mrugames.commons.router.client.FrameDecompressor;
+import pl.mrugames.commons.router.exceptions.FrameLimitExceededException;
+
+/**
+ * Limits of the frames read by {@link JsonFrameTranslator} and {@link JsonBytesFrameTranslator}.
+ * Size is checked before parsing, nesting depth and array length while the payload is read,
+ * so an oversized frame is rejected without being materialized. 0 disables a limit.
+ * <p>
+ * Frame size is not limited by default, depth and array length are. Size of text frames is their length in UTF-8 bytes,
+ * so the same limit applies to text and byte frames. Compressed frames are checked before and after decompression.
+ * <p>
+ * Requests which exceed the limits are answered with BAD_REQUEST, under id -1 if the frame is rejected before its id is read.
+ */
+@Component
+public class FrameLimits {
+    private final int maxFrameBytes;
+    private final int maxDepth;
+    private final int maxArrayLength;
+
+    private final Counter framesTooLarge;
+    private final Counter payloadsTooDeep;
+    private final Counter arraysTooLong;
+
+    FrameLimits(MetricRegistry metricRegistry,
+                @Value("${" + RouterProperties.MAX_FRAME_BYTES + ":0}") int maxFrameBytes,
+                @Value("${" + RouterProperties.MAX_PAYLOAD_DEPTH + ":32}") int maxDepth,
+                @Value("${" + RouterProperties.MAX_ARRAY_LENGTH + ":65536}") int maxArrayLength) {
+        this.maxFrameBytes = maxFrameBytes;
+        this.maxDepth = maxDepth;
+        this.maxArrayLength = maxArrayLength;
+
+        framesTooLarge = metricRegistry.counter(MetricRegistry.name(FrameLimits.class, "frames_too_large"));
+        payloadsTooDeep = metricRegistry.counter(MetricRegistry.name(FrameLimits.class, "payloads_too_deep"));
+        arraysTooLong = metricRegistry.counter(MetricRegistry.name(FrameLimits.class, "arrays_too_long"));
+    }
+
+    public void checkFrameSize(long size) {
+        if (maxFrameBytes > 0 && size > maxFrameBytes) {
+            framesTooLarge.inc();
+            throw new FrameLimitExceededException("Frame of " + size + " bytes exceeds the limit of " + maxFrameBytes + " bytes");
+        }
+    }
+
+    /**
+     * Counts UTF-8 bytes only if the length in characters does not decide it, as every character takes 1 to 3 bytes.
+     */
+    void checkFrameSize(String frame) {
+        if (maxFrameBytes > 0 && (long) frame.length() * 3 > maxFrameBytes) {
+            checkFrameSize(frame.length() > maxFrameBytes ? frame.length() : utf8Length(frame));
+        }
+    }
+
+    private static long utf8Length(String frame) {
+        long length = 0;
+
+        for (int i = 0; i < frame.length(); ++i) {
+            char c = frame.charAt(i);
+            if (c < 0x80) {
+                ++length;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < frame.length() && Character.isLowSurrogate(frame.charAt(i + 1))) {
+                length += 4;
+                ++i;
+            } else {
+                length += 3;
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * @see FrameDecompressor#decompress(byte[], int)
+     */
+    byte[] decompress(byte[] frame) {
+        checkFrameSize(frame.length);
+
+        try {
+            return FrameDecompressor.decompress(frame, maxFrameBytes);
+        } catch (FrameLimitExceededException e) {
+            framesTooLarge.inc();
+            throw e;
+        }
+    }
+
+    /**
+     * @param depth - nesting depth of the payload, 1 for the payload object itself
+     */
+    public void checkDepth(int depth) {
+        if (maxDepth > 0 && depth > maxDepth) {
+            payloadsTooDeep.inc();
+            throw new FrameLimitExceededException("Payload exceeds the nesting limit of " + maxDepth);
+        }
+    }
+
+    public void checkArrayLength(int length) {
+        if (maxArrayLength > 0 && length > maxArrayLength) {
+            arraysTooLong.inc();
+            throw new FrameLimitExceededException("Array of the payload exceeds the limit of " + maxArrayLength + " elements");
+        }
+    }
+}
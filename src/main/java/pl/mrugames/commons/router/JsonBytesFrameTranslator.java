@@ -0,0 +1,213 @@
+package pl.mrugames.commons.router;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import org.springframework.stereotype.Service;
+import pl.mrugames.commons.router.client.FrameDecompressor;
+import pl.mrugames.commons.router.exceptions.FrameLimitExceededException;
+import pl.mrugames.commons.router.request_handlers.JsonRequest;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Translates byte frames, see {@link JsonFrameReader}.
+ * Frames are parsed from and written to bytes directly, without intermediate strings.
+ * <p>
+ * Methods without {@link FrameFormat} use UTF-8 encoded JSON. The format may be chosen per connection:
+ * requests remember the format they were read in, so {@link pl.mrugames.commons.router.request_handlers.JsonBytesRequestHandler}
+ * responds in the same one.
+ * <p>
+ * Frames compressed by {@link pl.mrugames.commons.router.request_handlers.FrameCompressor} are decompressed before they are read.
+ */
+@Service
+public class JsonBytesFrameTranslator implements FrameTranslator<byte[]> {
+    private static class Codec {
+        final JsonFrameReader reader;
+        final ObjectWriter writer;
+        final FrameTranslator<byte[]> view;
+
+        Codec(JsonFrameReader reader, ObjectWriter writer, FrameTranslator<byte[]> view) {
+            this.reader = reader;
+            this.writer = writer;
+            this.view = view;
+        }
+    }
+
+    private final ObjectMapper objectMapper;
+    private final FrameLimits limits;
+    private final Map<FrameFormat, Codec> codecs = new EnumMap<>(FrameFormat.class);
+
+    JsonBytesFrameTranslator(ObjectMapper objectMapper, FrameLimits limits, Router router) {
+        this.objectMapper = objectMapper;
+        this.limits = limits;
+
+        for (FrameFormat format : FrameFormat.values()) {
+            FrameTranslator<byte[]> view = new FrameTranslator<byte[]>() {
+                @Override
+                public Object translateToRequestOrResponse(byte[] frame) {
+                    return JsonBytesFrameTranslator.this.translateToRequestOrResponse(frame, format);
+                }
+
+                @Override
+                public byte[] translateFromRequest(Request request) {
+                    return JsonBytesFrameTranslator.this.translateFromRequest(request, format);
+                }
+            };
+
+            JsonFactory factory = format.createFactory(objectMapper);
+            codecs.put(format, new Codec(new JsonFrameReader(objectMapper, factory, limits, router::getPayloadFields), objectMapper.writer().with(factory), view));
+        }
+    }
+
+    /**
+     * @return translator of the frames in given format, e.g. to be kept by the connection
+     */
+    public FrameTranslator<byte[]> forFormat(FrameFormat format) {
+        return codecs.get(format).view;
+    }
+
+    Class<?> recognize(byte[] frame) {
+        return codecs.get(FrameFormat.JSON).reader.recognize(factory -> frame == null ? null : factory.createParser(frame), () -> describe(frame, FrameFormat.JSON));
+    }
+
+    @Override
+    public Object translateToRequestOrResponse(byte[] frame) {
+        return translateToRequestOrResponse(frame, FrameFormat.JSON);
+    }
+
+    /**
+     * @return request with {@link JsonRequest#getLimitViolation()} and without other fields if the frame is too large to be parsed
+     */
+    public Object translateToRequestOrResponse(byte[] received, FrameFormat format) {
+        byte[] frame;
+        try {
+            if (received != null && !FrameDecompressor.isCompressed(received)) {
+                limits.checkFrameSize(received.length);
+            }
+
+            frame = FrameDecompressor.isCompressed(received) ? limits.decompress(received) : received;
+        } catch (FrameLimitExceededException e) {
+            return JsonFrameReader.rejected(e);
+        }
+
+        Object result = codecs.get(format).reader.translateToRequestOrResponse(factory -> frame == null ? null : factory.createParser(frame), () -> describe(frame, format));
+
+        if (result instanceof JsonRequest) {
+            JsonRequest jsonRequest = (JsonRequest) result;
+            jsonRequest.setFormat(format);
+
+            if (format == FrameFormat.JSON) {
+                jsonRequest.setRawFrame(frame);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads remaining bytes of the buffer. Position of the buffer is not changed.
+     * <p>
+     * The buffer is not referenced by the result, so it may be reused once this method returns.
+     */
+    public Object translateToRequestOrResponse(ByteBuffer frame) {
+        return translateToRequestOrResponse(frame, FrameFormat.JSON);
+    }
+
+    /**
+     * @see #translateToRequestOrResponse(ByteBuffer)
+     */
+    public Object translateToRequestOrResponse(ByteBuffer frame, FrameFormat format) {
+        if (FrameDecompressor.isCompressed(frame)) {
+            byte[] bytes = new byte[frame.remaining()];
+            frame.duplicate().get(bytes);
+            return translateToRequestOrResponse(bytes, format);
+        }
+
+        if (frame != null) {
+            try {
+                limits.checkFrameSize(frame.remaining());
+            } catch (FrameLimitExceededException e) {
+                return JsonFrameReader.rejected(e);
+            }
+        }
+
+        Object result = codecs.get(format).reader.translateToRequestOrResponse(factory -> {
+            if (frame == null) {
+                return null;
+            }
+
+            if (frame.hasArray()) {
+                return factory.createParser(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+            }
+
+            return factory.createParser(new ByteBufferBackedInputStream(frame.duplicate()));
+        }, () -> describe(frame, format));
+
+        if (result instanceof JsonRequest) {
+            ((JsonRequest) result).setFormat(format);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param acceptCompression - if true, the request tells the server that responses may be compressed
+     */
+    public byte[] translateFromRequest(Request request, FrameFormat format, boolean acceptCompression) {
+        if (!acceptCompression) {
+            return translateFromRequest(request, format);
+        }
+
+        try {
+            ObjectNode envelope = objectMapper.valueToTree(request);
+            envelope.put("acceptCompression", true);
+            return codecs.get(format).writer.writeValueAsBytes(envelope);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Failed to serialize request", e);
+        }
+    }
+
+    @Override
+    public byte[] translateFromRequest(Request request) {
+        try {
+            return objectMapper.writeValueAsBytes(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize request", e);
+        }
+    }
+
+    public byte[] translateFromRequest(Request request, FrameFormat format) {
+        if (format == FrameFormat.JSON) {
+            return translateFromRequest(request);
+        }
+
+        try {
+            return codecs.get(format).writer.writeValueAsBytes(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize request", e);
+        }
+    }
+
+    private static String describe(byte[] frame, FrameFormat format) {
+        if (frame == null) {
+            return null;
+        }
+
+        return format == FrameFormat.JSON ? new String(frame, StandardCharsets.UTF_8) : frame.length + " bytes of " + format;
+    }
+
+    private static String describe(ByteBuffer frame, FrameFormat format) {
+        if (frame == null) {
+            return null;
+        }
+
+        return format == FrameFormat.JSON ? StandardCharsets.UTF_8.decode(frame.duplicate()).toString() : frame.remaining() + " bytes of " + format;
+    }
+}
@@ -0,0 +1,475 @@
+package pl.mrugames.commons.router;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import pl.mrugames.commons.router.exceptions.FrameLimitExceededException;
+import pl.mrugames.commons.router.request_handlers.JsonBatchRequest;
+import pl.mrugames.commons.router.request_handlers.JsonRequest;
+import pl.mrugames.commons.router.request_handlers.JsonResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Reads the frame in a single pass: envelope fields are read directly from the parser
+ * and the payload is captured as tokens, so it can be bound to the route arguments without parsing it again.
+ * <p>
+ * Shared by the frame translators, which differ only in the source and format the parser is created from.
+ * <p>
+ * If the route and the request method precede the payload in the frame, fields of an object payload which the route
+ * does not bind are skipped instead of captured, see {@link PayloadFields}. Otherwise the whole payload is captured.
+ * <p>
+ * Payload is checked against {@link FrameLimits} while it is captured. A request whose payload exceeds the limits
+ * is still read, but without the payload, so it can be answered with BAD_REQUEST.
+ */
+class JsonFrameReader {
+    @FunctionalInterface
+    interface ParserSource {
+        JsonParser createParser(JsonFactory factory) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface PayloadFields {
+        PayloadFields ALL = (route, requestMethod) -> null;
+
+        /**
+         * @return names of the payload fields bound by the route, null if the whole payload has to be captured
+         */
+        Set<String> find(String route, RequestMethod requestMethod);
+    }
+
+    private final ObjectMapper objectMapper;
+    private final JsonFactory factory;
+    private final FrameLimits limits;
+    private final PayloadFields payloadFields;
+
+    private static class Envelope {
+        Long id;
+        String route;
+        boolean hasRoute;
+        String requestMethod;
+        boolean hasRequestMethod;
+        String requestType;
+        String status;
+        boolean hasStatus;
+        TokenBuffer payload;
+        FrameLimitExceededException limitViolation;
+        IllegalArgumentException readError;
+        List<Envelope> batch;
+        boolean concurrent;
+        boolean separateResponses;
+        boolean acceptCompression;
+
+        Class<?> recognize() {
+            if (batch != null) {
+                return Request.class;
+            }
+
+            if (hasRoute && hasRequestMethod
+                    || RequestType.CLOSE_STREAM.name().equals(requestType)
+                    || RequestType.CREDITS.name().equals(requestType)) {
+                return Request.class;
+            }
+
+            if (hasStatus) {
+                return Response.class;
+            }
+
+            return null;
+        }
+    }
+
+    JsonFrameReader(ObjectMapper objectMapper, FrameLimits limits, PayloadFields payloadFields) {
+        this(objectMapper, objectMapper.getFactory(), limits, payloadFields);
+    }
+
+    /**
+     * @param factory - factory of the parsers of the frame format, see {@link FrameFormat#createFactory(ObjectMapper)}
+     */
+    JsonFrameReader(ObjectMapper objectMapper, JsonFactory factory, FrameLimits limits, PayloadFields payloadFields) {
+        this.objectMapper = objectMapper;
+        this.factory = factory;
+        this.limits = limits;
+        this.payloadFields = payloadFields;
+    }
+
+    /**
+     * @param frame - text of the frame, used only in error messages
+     */
+    Class<?> recognize(ParserSource source, Supplier<String> frame) {
+        return readEnvelope(source, frame).recognize();
+    }
+
+    /**
+     * @param frame - text of the frame, used only in error messages
+     * @return {@link JsonRequest}, {@link JsonBatchRequest} or {@link JsonResponse}
+     */
+    Object translateToRequestOrResponse(ParserSource source, Supplier<String> frame) {
+        Envelope envelope;
+        try {
+            envelope = readEnvelope(source, frame);
+        } catch (FrameLimitExceededException e) {
+            return rejected(e);
+        }
+
+        Class<?> type = envelope.recognize();
+
+        try {
+            if (type.equals(Response.class)) {
+                if (envelope.limitViolation != null) {
+                    throw envelope.limitViolation;
+                }
+
+                if (envelope.readError != null) {
+                    throw envelope.readError;
+                }
+
+                Object payload = envelope.payload != null ? objectMapper.readValue(envelope.payload.asParser(), Object.class) : null;
+
+                return new JsonResponse(envelope.id == null ? 0 : envelope.id,
+                        envelope.status == null ? null : ResponseStatus.valueOf(envelope.status),
+                        payload);
+            }
+
+            if (envelope.batch != null) {
+                List<JsonRequest> requests = new ArrayList<>(envelope.batch.size());
+                for (Envelope entry : envelope.batch) {
+                    requests.add(toRequest(entry));
+                }
+
+                JsonBatchRequest batch = new JsonBatchRequest(requests, envelope.concurrent, envelope.separateResponses);
+                batch.setCompressionAccepted(envelope.acceptCompression);
+                return batch;
+            }
+
+            return toRequest(envelope);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Failed to serialize frame", e);
+        }
+    }
+
+    /**
+     * @return request answered with BAD_REQUEST under id -1, for frames which exceed the limits before their id is read
+     */
+    static JsonRequest rejected(FrameLimitExceededException violation) {
+        JsonRequest jsonRequest = new JsonRequest(null, null, null, null);
+        jsonRequest.setLimitViolation(violation);
+        return jsonRequest;
+    }
+
+    /**
+     * Invalid values of the envelope do not fail the frame, they are kept in the request, so it can be answered
+     * with BAD_REQUEST on its own, e.g. as a single entry of a batch.
+     */
+    private JsonRequest toRequest(Envelope envelope) {
+        IllegalArgumentException readError = envelope.readError;
+        RequestMethod requestMethod = null;
+        RequestType requestType = null;
+
+        try {
+            requestMethod = envelope.requestMethod == null ? null : RequestMethod.valueOf(envelope.requestMethod);
+        } catch (IllegalArgumentException e) {
+            readError = new IllegalArgumentException("Unknown request method: " + envelope.requestMethod);
+        }
+
+        try {
+            requestType = envelope.requestType == null ? null : RequestType.valueOf(envelope.requestType);
+        } catch (IllegalArgumentException e) {
+            readError = new IllegalArgumentException("Unknown request type: " + envelope.requestType);
+        }
+
+        JsonRequest jsonRequest = new JsonRequest(envelope.id, envelope.route, requestMethod, requestType);
+
+        jsonRequest.setPayloadTokens(envelope.payload);
+        jsonRequest.setLimitViolation(envelope.limitViolation);
+        jsonRequest.setReadError(readError);
+        jsonRequest.setCompressionAccepted(envelope.acceptCompression);
+        return jsonRequest;
+    }
+
+    private Envelope readEnvelope(ParserSource source, Supplier<String> frame) {
+        try {
+            Envelope envelope = parseEnvelope(source);
+            if (envelope != null && envelope.recognize() != null) {
+                return envelope;
+            }
+
+            throw new IllegalArgumentException("Failed to recognize frame: " + frame.get());
+        } catch (FrameLimitExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Failed to recognize frame: " + frame.get(), e);
+        }
+    }
+
+    /**
+     * @return envelope or null if the frame is missing or it is neither an object nor an array of requests
+     */
+    private Envelope parseEnvelope(ParserSource source) throws IOException {
+        JsonParser created = source.createParser(factory);
+        if (created == null) {
+            return null;
+        }
+
+        try (JsonParser parser = created) {
+            JsonToken token = parser.nextToken();
+
+            if (token == JsonToken.START_ARRAY) {
+                Envelope envelope = new Envelope();
+                envelope.batch = readBatch(parser);
+                return envelope;
+            }
+
+            if (token != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            return readFields(parser, true);
+        }
+    }
+
+    /**
+     * @param topLevel - if false, batch fields are ignored, so batches can not be nested
+     */
+    private Envelope readFields(JsonParser parser, boolean topLevel) throws IOException {
+        Envelope envelope = new Envelope();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+
+            switch (field) {
+                case "id":
+                    try {
+                        envelope.id = readLong(parser);
+                    } catch (IllegalArgumentException e) {
+                        envelope.readError = e;
+                    }
+                    break;
+                case "route":
+                    envelope.route = readText(parser);
+                    envelope.hasRoute = true;
+                    break;
+                case "requestMethod":
+                    envelope.requestMethod = readText(parser);
+                    envelope.hasRequestMethod = true;
+                    break;
+                case "requestType":
+                    envelope.requestType = readText(parser);
+                    break;
+                case "status":
+                    envelope.status = readText(parser);
+                    envelope.hasStatus = true;
+                    break;
+                case "payload":
+                    try {
+                        envelope.payload = copyPayload(parser, findPayloadFields(envelope));
+                    } catch (FrameLimitExceededException e) {
+                        envelope.payload = null;
+                        envelope.limitViolation = e;
+                    }
+                    break;
+                case "batch":
+                    if (topLevel && token == JsonToken.START_ARRAY) {
+                        envelope.batch = readBatch(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "concurrent":
+                    envelope.concurrent = topLevel && token == JsonToken.VALUE_TRUE;
+                    break;
+                case "separateResponses":
+                    envelope.separateResponses = topLevel && token == JsonToken.VALUE_TRUE;
+                    break;
+                case "acceptCompression":
+                    envelope.acceptCompression = token == JsonToken.VALUE_TRUE;
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        return envelope;
+    }
+
+    /**
+     * Entries which are not objects are read as requests without fields, so they are answered with an error
+     * like any other invalid request of the batch.
+     */
+    private List<Envelope> readBatch(JsonParser parser) throws IOException {
+        List<Envelope> entries = new ArrayList<>();
+
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            limits.checkArrayLength(entries.size() + 1);
+
+            if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                entries.add(readFields(parser, false));
+            } else {
+                parser.skipChildren();
+                entries.add(new Envelope());
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * @return fields bound by the route of a standard request, if it is already known, otherwise null
+     */
+    private Set<String> findPayloadFields(Envelope envelope) {
+        if (!envelope.hasRoute || !envelope.hasRequestMethod
+                || envelope.requestType != null && !RequestType.STANDARD.name().equals(envelope.requestType)) {
+            return null;
+        }
+
+        for (RequestMethod requestMethod : RequestMethod.values()) {
+            if (requestMethod.name().equals(envelope.requestMethod)) {
+                return payloadFields.find(envelope.route, requestMethod);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param fields - names of the fields of an object payload to capture, others are skipped; null to capture all of them
+     */
+    private TokenBuffer copyPayload(JsonParser parser, Set<String> fields) throws IOException {
+        TokenBuffer tokens = new TokenBuffer(parser);
+        if (fields == null || parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            copyValue(parser, tokens, 0);
+            return tokens;
+        }
+
+        tokens.copyCurrentEvent(parser);
+
+        try {
+            limits.checkDepth(1);
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                boolean bound = fields.contains(parser.getCurrentName());
+                if (bound) {
+                    tokens.copyCurrentEvent(parser);
+                }
+
+                parser.nextToken();
+                if (bound) {
+                    copyValue(parser, tokens, 1);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (FrameLimitExceededException e) {
+            // the value which exceeded the limits is already skipped
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                parser.nextToken();
+                parser.skipChildren();
+            }
+
+            throw e;
+        }
+
+        tokens.copyCurrentEvent(parser);
+        return tokens;
+    }
+
+    /**
+     * Same as {@link TokenBuffer#copyCurrentStructure(JsonParser)}, but checks the limits on the way.
+     * If a limit is exceeded, rest of the value is skipped, so the envelope may still be read.
+     *
+     * @param baseDepth - depth of the value within the payload
+     */
+    private void copyValue(JsonParser parser, TokenBuffer tokens, int baseDepth) throws IOException {
+        boolean[] arrays = new boolean[8];
+        int[] lengths = new int[8];
+        int depth = 0;
+
+        try {
+            JsonToken token = parser.getCurrentToken();
+
+            while (true) {
+                int parent = depth - 1;
+                boolean element = parent >= 0 && arrays[parent] && token != JsonToken.END_ARRAY;
+
+                tokens.copyCurrentEvent(parser);
+
+                // depth is updated before the checks, so the skipping below knows where the payload ends
+                if (token.isStructStart()) {
+                    ++depth;
+
+                    if (depth > arrays.length) {
+                        arrays = Arrays.copyOf(arrays, arrays.length * 2);
+                        lengths = Arrays.copyOf(lengths, lengths.length * 2);
+                    }
+
+                    arrays[depth - 1] = token == JsonToken.START_ARRAY;
+                    lengths[depth - 1] = 0;
+                    limits.checkDepth(baseDepth + depth);
+                } else if (token.isStructEnd()) {
+                    --depth;
+                }
+
+                if (element) {
+                    limits.checkArrayLength(++lengths[parent]);
+                }
+
+                if (depth == 0) {
+                    return;
+                }
+
+                token = parser.nextToken();
+            }
+        } catch (FrameLimitExceededException e) {
+            while (depth > 0) {
+                JsonToken token = parser.nextToken();
+                if (token.isStructStart()) {
+                    ++depth;
+                } else if (token.isStructEnd()) {
+                    --depth;
+                }
+            }
+
+            throw e;
+        }
+    }
+
+    private Long readLong(JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_NUMBER_INT:
+                return parser.getLongValue();
+            case VALUE_STRING:
+                try {
+                    return Long.valueOf(parser.getText());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid '" + parser.getCurrentName() + "': " + parser.getText());
+                }
+            default:
+                JsonToken token = parser.getCurrentToken();
+                parser.skipChildren();
+                throw new IllegalArgumentException("Unexpected token of '" + parser.getCurrentName() + "': " + token);
+        }
+    }
+
+    private String readText(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+
+        if (parser.getCurrentToken().isScalarValue()) {
+            return parser.getText();
+        }
+
+        parser.skipChildren();
+        return null;
+    }
+}
@@ -1,60 +1,51 @@
 package pl.mrugames.commons.router;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Service;
+import pl.mrugames.commons.router.exceptions.FrameLimitExceededException;
 import pl.mrugames.commons.router.request_handlers.JsonRequest;
-import pl.mrugames.commons.router.request_handlers.JsonResponse;
-
-import java.io.IOException;
 
+/**
+ * Translates text frames, see {@link JsonFrameReader}.
+ * If frames are received as bytes, use {@link JsonBytesFrameTranslator} to avoid decoding them into strings.
+ */
 @Service
 public class JsonFrameTranslator implements FrameTranslator<String> {
     private final ObjectMapper objectMapper;
+    private final JsonFrameReader frameReader;
+    private final FrameLimits limits;
 
-    JsonFrameTranslator(ObjectMapper objectMapper) {
+    JsonFrameTranslator(ObjectMapper objectMapper, FrameLimits limits, Router router) {
         this.objectMapper = objectMapper;
+        this.frameReader = new JsonFrameReader(objectMapper, limits, router::getPayloadFields);
+        this.limits = limits;
     }
 
     Class<?> recognize(String frame) {
-        try {
-            if (frame != null) {
-                JsonNode node = objectMapper.readTree(frame);
-                if (node.has("route") && node.has("requestMethod") || node.has("requestType") && RequestType.CLOSE_STREAM.name().equals(node.get("requestType").asText())) {
-                    return Request.class;
-                }
-
-                if (node.has("status")) {
-                    return Response.class;
-                }
-            }
-
-            throw new IllegalArgumentException("Failed to recognize frame: " + frame);
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Failed to recognize frame: " + frame, e);
-        }
+        return frameReader.recognize(factory -> frame == null ? null : factory.createParser(frame), () -> frame);
     }
 
+    /**
+     * @return request with {@link JsonRequest#getLimitViolation()} and without other fields if the frame is too large to be parsed
+     */
     @Override
     public Object translateToRequestOrResponse(String json) {
-        Class<?> type = recognize(json);
-
-        try {
-            if (type.equals(Response.class)) {
-                return objectMapper.readValue(json, JsonResponse.class);
+        if (json != null) {
+            try {
+                limits.checkFrameSize(json);
+            } catch (FrameLimitExceededException e) {
+                return JsonFrameReader.rejected(e);
             }
+        }
 
-            if (type.equals(Request.class)) {
-                JsonRequest jsonRequest = objectMapper.readValue(json, JsonRequest.class);
-                jsonRequest.setRawJson(json);
-                return jsonRequest;
-            }
-        } catch (IOException e) {
-            throw new IllegalArgumentException("Failed to serialize frame", e);
+        Object result = frameReader.translateToRequestOrResponse(factory -> json == null ? null : factory.createParser(json), () -> json);
+
+        if (result instanceof JsonRequest) {
+            ((JsonRequest) result).setRawJson(json);
         }
 
-        throw new IllegalArgumentException("Unknown frame type: " + json);
+        return result;
     }
 
     @Override
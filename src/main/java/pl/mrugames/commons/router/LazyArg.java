@@ -0,0 +1,99 @@
+package pl.mrugames.commons.router;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import pl.mrugames.commons.router.exceptions.IncompatibleParameterException;
+import pl.mrugames.commons.router.exceptions.RouterException;
+
+import java.io.IOException;
+
+/**
+ * Argument which is deserialized only if the route reads it, e.g.
+ * <pre>
+ * {@literal @}Route("report")
+ * public Report report({@literal @}Arg("filter") String filter, {@literal @}Arg("details") LazyArg&lt;Details&gt; details)
+ * </pre>
+ * Tokens of the argument are kept as they were read from the frame. Values of non-JSON payloads are wrapped as they are.
+ */
+public final class LazyArg<T> {
+    private final String name;
+    private final TokenBuffer tokens;
+    private final ObjectReader reader;
+    private volatile T value;
+    private volatile boolean resolved;
+
+    private LazyArg(String name, TokenBuffer tokens, ObjectReader reader, T value, boolean resolved) {
+        this.name = name;
+        this.tokens = tokens;
+        this.reader = reader;
+        this.value = value;
+        this.resolved = resolved;
+    }
+
+    public static <T> LazyArg<T> of(T value) {
+        return new LazyArg<>(null, null, null, value, true);
+    }
+
+    /**
+     * @param tokens - tokens of the argument value
+     * @param reader - reader of the argument type
+     */
+    public static <T> LazyArg<T> deferred(String name, TokenBuffer tokens, ObjectReader reader) {
+        return new LazyArg<>(name, tokens, reader, null, false);
+    }
+
+    /**
+     * Deserializes the value on first call.
+     *
+     * @throws IncompatibleParameterException if the value is not compatible with the argument type
+     */
+    public T get() {
+        if (!resolved) {
+            synchronized (this) {
+                if (!resolved) {
+                    value = read();
+                    resolved = true;
+                }
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * @return value as a tree, without binding it to the argument type
+     */
+    public JsonNode getTree() {
+        if (tokens == null) {
+            throw new IllegalStateException("Argument '" + name + "' was not read from JSON");
+        }
+
+        try {
+            return reader.readTree(tokens.asParser());
+        } catch (IOException e) {
+            throw new RouterException(e.getMessage(), e);
+        }
+    }
+
+    public boolean isResolved() {
+        return resolved;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T read() {
+        try {
+            return (T) reader.readValue(tokens.asParser());
+        } catch (InvalidFormatException e) {
+            throw new IncompatibleParameterException(name, e.getTargetType(), e);
+        } catch (IOException e) {
+            throw new RouterException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return resolved ? "LazyArg{" + value + '}' : "LazyArg{" + name + ", not resolved}";
+    }
+}
@@ -0,0 +1,97 @@
+package pl.mrugames.commons.router;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * JSON merge patch (RFC 7396) of values mapped to JSON as maps, lists and values.
+ * Objects are patched field by field, a null field removes the field. Any other value, including lists, is replaced whole.
+ */
+public final class MergePatch {
+    private MergePatch() {
+    }
+
+    /**
+     * @param source - previous value, null if there is none
+     * @return patch which turns the source into the target
+     */
+    @SuppressWarnings("unchecked")
+    public static Object diff(Object source, Object target) {
+        if (!(target instanceof Map)) {
+            return target;
+        }
+
+        Map<String, Object> targetMap = (Map<String, Object>) target;
+        if (!(source instanceof Map)) {
+            return withoutNulls(targetMap);
+        }
+
+        Map<String, Object> sourceMap = (Map<String, Object>) source;
+        Map<String, Object> patch = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Object> entry : targetMap.entrySet()) {
+            Object previous = sourceMap.get(entry.getKey());
+            Object current = entry.getValue();
+
+            if (current == null) {
+                if (previous != null) {
+                    patch.put(entry.getKey(), null);
+                }
+            } else if (previous instanceof Map && current instanceof Map) {
+                Map<?, ?> nested = (Map<?, ?>) diff(previous, current);
+                if (!nested.isEmpty()) {
+                    patch.put(entry.getKey(), nested);
+                }
+            } else if (!Objects.equals(previous, current)) {
+                patch.put(entry.getKey(), diff(null, current));
+            }
+        }
+
+        for (Map.Entry<String, Object> entry : sourceMap.entrySet()) {
+            if (entry.getValue() != null && !targetMap.containsKey(entry.getKey())) {
+                patch.put(entry.getKey(), null);
+            }
+        }
+
+        return patch;
+    }
+
+    /**
+     * @param target - value the patch is applied to, it is not modified
+     * @return patched value
+     */
+    @SuppressWarnings("unchecked")
+    public static Object apply(Object target, Object patch) {
+        if (!(patch instanceof Map)) {
+            return patch;
+        }
+
+        Map<String, Object> result = target instanceof Map ? new LinkedHashMap<>((Map<String, Object>) target) : new LinkedHashMap<>();
+
+        for (Map.Entry<String, Object> entry : ((Map<String, Object>) patch).entrySet()) {
+            if (entry.getValue() == null) {
+                result.remove(entry.getKey());
+            } else {
+                result.put(entry.getKey(), apply(result.get(entry.getKey()), entry.getValue()));
+            }
+        }
+
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> withoutNulls(Map<String, Object> map) {
+        Map<String, Object> result = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            if (entry.getValue() instanceof Map) {
+                result.put(entry.getKey(), withoutNulls((Map<String, Object>) entry.getValue()));
+            } else if (entry.getValue() != null) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,10 @@
+package pl.mrugames.commons.router;
+
+/**
+ * Converts value of a path variable into type of the parameter it is bound to.
+ * Any runtime exception means that the value is not compatible with the type.
+ */
+@FunctionalInterface
+public interface PathVariableConverter {
+    Object convert(String value);
+}
@@ -0,0 +1,79 @@
+package pl.mrugames.commons.router;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Converters of path variables, resolved once per parameter while routes are initialized.
+ */
+class PathVariableConverters {
+    private final static Map<Class<?>, PathVariableConverter> CONVERTERS = new HashMap<>();
+
+    static {
+        CONVERTERS.put(String.class, value -> value);
+        CONVERTERS.put(int.class, Integer::valueOf);
+        CONVERTERS.put(Integer.class, Integer::valueOf);
+        CONVERTERS.put(long.class, Long::valueOf);
+        CONVERTERS.put(Long.class, Long::valueOf);
+        CONVERTERS.put(double.class, Double::valueOf);
+        CONVERTERS.put(Double.class, Double::valueOf);
+        CONVERTERS.put(float.class, Float::valueOf);
+        CONVERTERS.put(Float.class, Float::valueOf);
+        CONVERTERS.put(short.class, Short::valueOf);
+        CONVERTERS.put(Short.class, Short::valueOf);
+        CONVERTERS.put(byte.class, Byte::valueOf);
+        CONVERTERS.put(Byte.class, Byte::valueOf);
+        CONVERTERS.put(boolean.class, Boolean::valueOf);
+        CONVERTERS.put(Boolean.class, Boolean::valueOf);
+        CONVERTERS.put(UUID.class, UUID::fromString);
+    }
+
+    private PathVariableConverters() {
+    }
+
+    /**
+     * @return converter for given type or null if values of the type can't be created from a path variable
+     */
+    @SuppressWarnings("unchecked")
+    static PathVariableConverter forType(Class<?> type) {
+        PathVariableConverter converter = CONVERTERS.get(type);
+        if (converter != null) {
+            return converter;
+        }
+
+        if (type.isEnum()) {
+            return enumConverter(type.asSubclass(Enum.class));
+        }
+
+        return stringConstructor(type);
+    }
+
+    private static <E extends Enum<E>> PathVariableConverter enumConverter(Class<E> type) {
+        return value -> Enum.valueOf(type, value);
+    }
+
+    private static PathVariableConverter stringConstructor(Class<?> type) {
+        MethodHandle constructor;
+        try {
+            constructor = MethodHandles.publicLookup()
+                    .findConstructor(type, MethodType.methodType(void.class, String.class))
+                    .asType(MethodType.methodType(Object.class, String.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+
+        return value -> {
+            try {
+                return (Object) constructor.invokeExact(value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalArgumentException(e);
+            }
+        };
+    }
+}
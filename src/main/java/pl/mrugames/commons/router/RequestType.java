@@ -1,5 +1,10 @@
 package pl.mrugames.commons.router;
 
 public enum RequestType {
-    STANDARD, CLOSE_STREAM
+    STANDARD, CLOSE_STREAM,
+    /**
+     * Grants the stream with the id of the request as many more items as the payload says,
+     * see {@link pl.mrugames.commons.router.request_handlers.RequestProcessor#creditsRequest(long, long)}
+     */
+    CREDITS
 }
@@ -3,5 +3,13 @@ package pl.mrugames.commons.router;
 public enum ResponseStatus {
     OK, INTERNAL_ERROR, ERROR, STREAM, CLOSE,
     PERMISSION_DENIED,
-    BAD_REQUEST, BAD_PARAMETERS
+    BAD_REQUEST, BAD_PARAMETERS,
+    /**
+     * Several items of a stream, payload is the list of the items, see {@link pl.mrugames.commons.router.annotations.StreamCoalescing}
+     */
+    STREAM_BATCH,
+    /**
+     * Item of a stream as a merge patch against the previous item, see {@link pl.mrugames.commons.router.annotations.StreamDelta}
+     */
+    STREAM_DELTA
 }
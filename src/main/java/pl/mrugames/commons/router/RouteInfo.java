@@ -1,23 +1,67 @@
 package pl.mrugames.commons.router;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.reactivex.Observable;
+import org.reactivestreams.Publisher;
+import pl.mrugames.commons.router.annotations.StreamCoalescing;
+import pl.mrugames.commons.router.annotations.StreamDelta;
+
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class RouteInfo implements Serializable {
     private final Object controllerInstance;
     private final Method method;
     private final List<RouteParameter> parameters;
     private final String routePattern;
+    private final MethodHandle invoker;
+    private final RouteParameter[] pathParameters;
+    private final RouteParameter[] argParameters;
+    private final RouteParameter[] sessionParameters;
+    private final RouteParameter bodyParameter;
+    private final Set<String> payloadFields;
+    private final StreamCoalescing coalescing;
+    private final boolean delta;
+    private final boolean stream;
 
+    /**
+     * @param invoker - handle of the method bound to the controller instance,
+     *                accepting arguments as Object[] and returning Object (null for void methods)
+     */
     public RouteInfo(Object controllerInstance,
                      Method method,
                      List<RouteParameter> parameters,
-                     String routePattern) {
+                     String routePattern,
+                     MethodHandle invoker) {
         this.controllerInstance = controllerInstance;
         this.method = method;
         this.parameters = parameters;
         this.routePattern = routePattern;
+        this.invoker = invoker;
+        this.pathParameters = filter(parameters, RouteParameter.ParameterType.PATH_VAR);
+        this.argParameters = filter(parameters, RouteParameter.ParameterType.ARG);
+        this.sessionParameters = filter(parameters, RouteParameter.ParameterType.NONE);
+
+        RouteParameter[] bodyParameters = filter(parameters, RouteParameter.ParameterType.BODY);
+        this.bodyParameter = bodyParameters.length > 0 ? bodyParameters[0] : null;
+        this.payloadFields = bodyParameter != null ? null : Collections.unmodifiableSet(Arrays.stream(argParameters)
+                .map(RouteParameter::getName)
+                .collect(Collectors.toSet()));
+        this.coalescing = method != null ? method.getAnnotation(StreamCoalescing.class) : null;
+        this.delta = method != null && method.isAnnotationPresent(StreamDelta.class);
+        this.stream = method != null && (Observable.class.isAssignableFrom(method.getReturnType()) || Publisher.class.isAssignableFrom(method.getReturnType()));
+    }
+
+    private static RouteParameter[] filter(List<RouteParameter> parameters, RouteParameter.ParameterType parameterType) {
+        return parameters.stream()
+                .filter(p -> p.getParameterType() == parameterType)
+                .toArray(RouteParameter[]::new);
     }
 
     Object getControllerInstance() {
@@ -28,10 +72,76 @@ public class RouteInfo implements Serializable {
         return method;
     }
 
+    MethodHandle getInvoker() {
+        return invoker;
+    }
+
     public List<RouteParameter> getParameters() {
         return parameters;
     }
 
+    /**
+     * @return new array for arguments of the route, to be filled by argument resolvers
+     */
+    public Object[] newArguments() {
+        return new Object[parameters.size()];
+    }
+
+    @JsonIgnore
+    public RouteParameter[] getPathParameters() {
+        return pathParameters;
+    }
+
+    @JsonIgnore
+    public RouteParameter[] getArgParameters() {
+        return argParameters;
+    }
+
+    /**
+     * @return parameter bound to the whole payload or null if the route has no such parameter
+     */
+    @JsonIgnore
+    public RouteParameter getBodyParameter() {
+        return bodyParameter;
+    }
+
+    /**
+     * @return names of the payload fields bound to the arguments or null if the whole payload is bound, see {@link #getBodyParameter()}
+     */
+    @JsonIgnore
+    public Set<String> getPayloadFields() {
+        return payloadFields;
+    }
+
+    /**
+     * @return coalescing of the stream items or null if each item is sent in its own frame
+     */
+    @JsonIgnore
+    public StreamCoalescing getCoalescing() {
+        return coalescing;
+    }
+
+    /**
+     * @return true if stream items are sent as patches, see {@link StreamDelta}
+     */
+    @JsonIgnore
+    public boolean isDelta() {
+        return delta;
+    }
+
+    /**
+     * @return true if the route is declared to return a stream, routes which return it as Object are not recognized
+     */
+    @JsonIgnore
+    public boolean isStream() {
+        return stream;
+    }
+
+    @JsonIgnore
+    public RouteParameter[] getSessionParameters() {
+        return sessionParameters;
+    }
+
     public String getRoutePattern() {
         return routePattern;
     }
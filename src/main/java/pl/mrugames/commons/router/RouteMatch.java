@@ -0,0 +1,60 @@
+package pl.mrugames.commons.router;
+
+import java.util.Map;
+
+/**
+ * Result of matching a concrete route against registered patterns.
+ * Carries path segments captured while matching, so path variables don't have to be extracted again.
+ */
+public class RouteMatch {
+    private final RouteInfo routeInfo;
+    private final RouteTemplate template;
+    private final String[] matchedSegments;
+    private volatile Map<String, String> pathVariables;
+
+    public RouteMatch(RouteInfo routeInfo, Map<String, String> pathVariables) {
+        this.routeInfo = routeInfo;
+        this.template = null;
+        this.matchedSegments = null;
+        this.pathVariables = pathVariables;
+    }
+
+    RouteMatch(RouteInfo routeInfo, RouteTemplate template, String[] matchedSegments) {
+        this.routeInfo = routeInfo;
+        this.template = template;
+        this.matchedSegments = matchedSegments;
+    }
+
+    public RouteInfo getRouteInfo() {
+        return routeInfo;
+    }
+
+    /**
+     * @return value of the path variable or null if the route does not define it
+     */
+    public String getPathVariable(String name) {
+        if (template == null) {
+            return pathVariables.get(name);
+        }
+
+        return template.variable(name, matchedSegments);
+    }
+
+    public Map<String, String> getPathVariables() {
+        Map<String, String> pathVariables = this.pathVariables;
+        if (pathVariables == null) {
+            pathVariables = template.variables(matchedSegments);
+            this.pathVariables = pathVariables;
+        }
+
+        return pathVariables;
+    }
+
+    @Override
+    public String toString() {
+        return "RouteMatch{" +
+                "routePattern=" + routeInfo.getRoutePattern() +
+                ", pathVariables=" + getPathVariables() +
+                '}';
+    }
+}
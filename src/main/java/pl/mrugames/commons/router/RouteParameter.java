@@ -1,10 +1,14 @@
 package pl.mrugames.commons.router;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.base.Defaults;
+
 import java.io.Serializable;
 
 public class RouteParameter implements Serializable {
     public enum ParameterType {
-        PATH_VAR, ARG, NONE
+        PATH_VAR, ARG, BODY, NONE
     }
 
     private final String name;
@@ -12,13 +16,30 @@ public class RouteParameter implements Serializable {
     private final String defaultValue;
     private final ParameterType parameterType;
     private final Class<?>[] generics;
+    private final int index;
+    private final Object typeDefault;
+    private final PathVariableConverter converter;
+    private final ObjectReader reader;
+    private final Object parsedDefaultValue;
 
-    RouteParameter(String name, Class<?> type, String defaultValue, ParameterType parameterType, Class<?>[] generics) {
+    /**
+     * @param index     - position of the parameter in the method signature, which is also its slot in the arguments array
+     * @param converter - converter of path variable values, null for parameters other than PATH_VAR
+     * @param reader    - reader of the full generic type of the parameter (of the wrapped type for {@link LazyArg}), null for parameters other than ARG and BODY
+     * @param parsedDefaultValue - default value deserialized by the reader, null if there is no default value
+     */
+    RouteParameter(String name, Class<?> type, String defaultValue, ParameterType parameterType, Class<?>[] generics, int index,
+                   PathVariableConverter converter, ObjectReader reader, Object parsedDefaultValue) {
         this.name = name;
         this.type = type;
         this.defaultValue = defaultValue;
         this.parameterType = parameterType;
         this.generics = generics;
+        this.index = index;
+        this.typeDefault = Defaults.defaultValue(type);
+        this.converter = converter;
+        this.reader = reader;
+        this.parsedDefaultValue = parsedDefaultValue;
     }
 
     public String getName() {
@@ -40,4 +61,39 @@ public class RouteParameter implements Serializable {
     public Class<?>[] getGenerics() {
         return generics;
     }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return value used when there is nothing to bind: null for objects, zero or false for primitives
+     */
+    @JsonIgnore
+    public Object getTypeDefault() {
+        return typeDefault;
+    }
+
+    /**
+     * @return true if the argument is bound as {@link LazyArg}
+     */
+    @JsonIgnore
+    public boolean isLazy() {
+        return type == LazyArg.class;
+    }
+
+    @JsonIgnore
+    public PathVariableConverter getConverter() {
+        return converter;
+    }
+
+    @JsonIgnore
+    public ObjectReader getReader() {
+        return reader;
+    }
+
+    @JsonIgnore
+    public Object getParsedDefaultValue() {
+        return parsedDefaultValue;
+    }
 }
@@ -0,0 +1,71 @@
+package pl.mrugames.commons.router;
+
+import org.springframework.util.AntPathMatcher;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Segments of a registered route pattern together with positions of its path variables.
+ * Values of the variables are read directly from the path segments matched by {@link RouteTrie}.
+ */
+class RouteTemplate {
+    private final AntPathMatcher pathMatcher;
+    private final String[] patternSegments;
+    private final Map<String, Integer> variableDepths;
+    private final boolean complexVariables;
+
+    RouteTemplate(AntPathMatcher pathMatcher, String[] patternSegments) {
+        this.pathMatcher = pathMatcher;
+        this.patternSegments = patternSegments;
+
+        Map<String, Integer> variableDepths = new HashMap<>();
+        boolean complexVariables = false;
+
+        for (int depth = 0; depth < patternSegments.length; ++depth) {
+            String segment = patternSegments[depth];
+
+            if (RouteTrie.isVariable(segment)) {
+                variableDepths.put(segment.substring(1, segment.length() - 1), depth);
+            } else if (segment.indexOf('{') >= 0) {
+                complexVariables = true;
+            }
+        }
+
+        this.variableDepths = variableDepths;
+        this.complexVariables = complexVariables;
+    }
+
+    /**
+     * @param matched - path segments matched by consecutive pattern segments
+     * @return value of the variable or null if pattern does not define it
+     */
+    String variable(String name, String[] matched) {
+        Integer depth = variableDepths.get(name);
+        if (depth != null) {
+            return matched[depth];
+        }
+
+        return complexVariables ? variables(matched).get(name) : null;
+    }
+
+    Map<String, String> variables(String[] matched) {
+        if (variableDepths.isEmpty() && !complexVariables) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, String> variables = new HashMap<>();
+        for (int depth = 0; depth < patternSegments.length; ++depth) {
+            String patternSegment = patternSegments[depth];
+
+            if (RouteTrie.isVariable(patternSegment)) {
+                variables.put(patternSegment.substring(1, patternSegment.length() - 1), matched[depth]);
+            } else if (patternSegment.indexOf('{') >= 0) {
+                variables.putAll(pathMatcher.extractUriTemplateVariables(patternSegment, matched[depth]));
+            }
+        }
+
+        return Collections.unmodifiableMap(variables);
+    }
+}
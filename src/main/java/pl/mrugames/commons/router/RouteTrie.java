@@ -0,0 +1,192 @@
+package pl.mrugames.commons.router;
+
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+
+import java.util.*;
+
+/**
+ * Segment trie of the route patterns registered for a single {@link RequestMethod}.
+ * <p>
+ * Lookup descends the trie segment by segment, so its cost depends on the length of the route,
+ * not on the number of registered routes. At every level candidates are tried from the most specific one:
+ * literal segment, segment pattern (e.g. "file*.txt" or "{id:[0-9]+}"), "{var}", "*" and finally "**".
+ */
+class RouteTrie {
+    private final static String PATH_SEPARATOR = "/";
+    private final static Comparator<PatternNode> PATTERN_SPECIFICITY = Comparator
+            .comparingInt((PatternNode p) -> p.wildcards)
+            .thenComparing(p -> -p.pattern.length())
+            .thenComparing(p -> p.pattern);
+
+    private class Node {
+        final Map<String, Node> literals = new HashMap<>();
+        final List<PatternNode> patterns = new ArrayList<>();
+        Node variable;
+        Node wildcard;
+        Node deepWildcard;
+        RouteInfo routeInfo;
+        RouteTemplate template;
+
+        Node child(String segment) {
+            if (segment.equals("**")) {
+                return deepWildcard == null ? deepWildcard = new Node() : deepWildcard;
+            }
+
+            if (segment.equals("*")) {
+                return wildcard == null ? wildcard = new Node() : wildcard;
+            }
+
+            if (isVariable(segment)) {
+                return variable == null ? variable = new Node() : variable;
+            }
+
+            if (isLiteral(segment)) {
+                return literals.computeIfAbsent(segment, s -> new Node());
+            }
+
+            for (PatternNode existing : patterns) {
+                if (existing.pattern.equals(segment)) {
+                    return existing;
+                }
+            }
+
+            PatternNode node = new PatternNode(segment);
+            patterns.add(node);
+            patterns.sort(PATTERN_SPECIFICITY);
+            return node;
+        }
+    }
+
+    private class PatternNode extends Node {
+        final String pattern;
+        final int wildcards;
+
+        PatternNode(String pattern) {
+            this.pattern = pattern;
+
+            int wildcards = 0;
+            for (int i = 0; i < pattern.length(); ++i) {
+                char c = pattern.charAt(i);
+                if (c == '*' || c == '?' || c == '{') {
+                    ++wildcards;
+                }
+            }
+
+            this.wildcards = wildcards;
+        }
+
+        boolean matches(String segment) {
+            return pathMatcher.match(pattern, segment);
+        }
+    }
+
+    private final AntPathMatcher pathMatcher;
+    private final Node root;
+    private int maxDepth;
+
+    RouteTrie(AntPathMatcher pathMatcher) {
+        this.pathMatcher = pathMatcher;
+        this.root = new Node();
+    }
+
+    /**
+     * @param pattern - route pattern without the request method prefix, e.g. "app/player/{playerId}"
+     */
+    void add(String pattern, RouteInfo routeInfo) {
+        String[] patternSegments = tokenize(pattern);
+
+        Node node = root;
+        for (String segment : patternSegments) {
+            node = node.child(segment);
+        }
+
+        if (node.routeInfo != null) {
+            throw new IllegalStateException("Route " + routeInfo.getRoutePattern() + " collides with " + node.routeInfo.getRoutePattern());
+        }
+
+        node.routeInfo = routeInfo;
+        node.template = new RouteTemplate(pathMatcher, patternSegments);
+        maxDepth = Math.max(maxDepth, patternSegments.length);
+    }
+
+    /**
+     * @return most specific route matching given path together with captured path segments
+     * or null if there is no such route
+     */
+    RouteMatch find(String route) {
+        String[] segments = tokenize(route);
+        String[] matched = new String[maxDepth];
+
+        Node leaf = find(root, segments, 0, matched, 0);
+        if (leaf == null) {
+            return null;
+        }
+
+        return new RouteMatch(leaf.routeInfo, leaf.template, matched);
+    }
+
+    /**
+     * @param matched - path segments matched by consecutive pattern segments, filled while descending
+     * @param depth   - depth of the node, which is also index of the pattern segment matched by its children
+     */
+    private Node find(Node node, String[] segments, int index, String[] matched, int depth) {
+        if (index == segments.length) {
+            if (node.routeInfo != null) {
+                return node;
+            }
+
+            return node.deepWildcard != null ? find(node.deepWildcard, segments, index, matched, depth + 1) : null;
+        }
+
+        String segment = segments[index];
+        Node found;
+
+        Node literal = node.literals.get(segment);
+        if (literal != null && (found = find(literal, segments, index + 1, matched, depth + 1)) != null) {
+            return found;
+        }
+
+        for (PatternNode pattern : node.patterns) {
+            if (pattern.matches(segment) && (found = find(pattern, segments, index + 1, matched, depth + 1)) != null) {
+                matched[depth] = segment;
+                return found;
+            }
+        }
+
+        if (node.variable != null && (found = find(node.variable, segments, index + 1, matched, depth + 1)) != null) {
+            matched[depth] = segment;
+            return found;
+        }
+
+        if (node.wildcard != null && (found = find(node.wildcard, segments, index + 1, matched, depth + 1)) != null) {
+            return found;
+        }
+
+        if (node.deepWildcard != null) {
+            for (int i = index; i <= segments.length; ++i) {
+                if ((found = find(node.deepWildcard, segments, i, matched, depth + 1)) != null) {
+                    return found;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    static String[] tokenize(String path) {
+        return StringUtils.tokenizeToStringArray(path, PATH_SEPARATOR, false, true);
+    }
+
+    static boolean isVariable(String segment) {
+        return segment.length() > 2
+                && segment.charAt(0) == '{'
+                && segment.indexOf('}') == segment.length() - 1
+                && segment.indexOf('{', 1) < 0
+                && segment.indexOf(':') < 0;
+    }
+
+    private static boolean isLiteral(String segment) {
+        return segment.indexOf('*') < 0 && segment.indexOf('?') < 0 && segment.indexOf('{') < 0;
+    }
+}
@@ -1,10 +1,13 @@
 package pl.mrugames.commons.router;
 
-import com.google.common.base.Defaults;
-import org.hibernate.validator.internal.engine.path.NodeImpl;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.primitives.Primitives;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.util.AntPathMatcher;
-import pl.mrugames.commons.router.annotations.ArgDefaultValue;
 import pl.mrugames.commons.router.exceptions.RouteConstraintViolationException;
 import pl.mrugames.social.i18n.I18nObjectTranslator;
 import pl.mrugames.social.i18n.Translatable;
@@ -12,152 +15,230 @@ import pl.mrugames.social.i18n.Translatable;
 import javax.annotation.PostConstruct;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
+import javax.validation.ElementKind;
 import javax.validation.Path;
-import java.lang.reflect.InvocationTargetException;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 public class Router {
-    private final Map<String, RouteInfo> routes;
+    private static class RouteCacheKey {
+        final RequestMethod requestMethod;
+        final String route;
+
+        RouteCacheKey(RequestMethod requestMethod, String route) {
+            this.requestMethod = requestMethod;
+            this.route = route;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RouteCacheKey)) return false;
+
+            RouteCacheKey that = (RouteCacheKey) o;
+
+            if (requestMethod != that.requestMethod) return false;
+            return route != null ? route.equals(that.route) : that.route == null;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = requestMethod != null ? requestMethod.hashCode() : 0;
+            result = 31 * result + (route != null ? route.hashCode() : 0);
+            return result;
+        }
+    }
+
+    private final Map<RequestMethod, RouteTrie> routes;
     private final RouterInitializer initializer;
-    private final AntPathMatcher pathMatcher;
     private final I18nObjectTranslator objectTranslator;
-
-    Router(RouterInitializer initializer, AntPathMatcher antPathMatcher, I18nObjectTranslator objectTranslator) {
+    private final Cache<RouteCacheKey, RouteMatch> routeCache;
+    private final Counter routeCacheHits;
+    private final Counter routeCacheMisses;
+    private final Counter routeCacheEvictions;
+
+    /**
+     * @param routeCacheSize - maximum amount of concrete routes whose matches are cached, 0 disables the cache
+     */
+    Router(RouterInitializer initializer,
+           I18nObjectTranslator objectTranslator,
+           MetricRegistry metricRegistry,
+           @Value("${" + RouterProperties.ROUTE_CACHE_SIZE + ":0}") long routeCacheSize) {
         this.initializer = initializer;
-        this.routes = new HashMap<>();
-        this.pathMatcher = antPathMatcher;
+        this.routes = new EnumMap<>(RequestMethod.class);
         this.objectTranslator = objectTranslator;
+
+        routeCacheHits = metricRegistry.counter(MetricRegistry.name(Router.class, "route_cache_hits"));
+        routeCacheMisses = metricRegistry.counter(MetricRegistry.name(Router.class, "route_cache_misses"));
+        routeCacheEvictions = metricRegistry.counter(MetricRegistry.name(Router.class, "route_cache_evictions"));
+
+        if (routeCacheSize > 0) {
+            routeCache = CacheBuilder.newBuilder()
+                    .maximumSize(routeCacheSize)
+                    .<RouteCacheKey, RouteMatch>removalListener(n -> {
+                        if (n.getCause() == RemovalCause.SIZE) {
+                            routeCacheEvictions.inc();
+                        }
+                    })
+                    .build();
+        } else {
+            routeCache = null;
+        }
     }
 
     @PostConstruct
     private void postConstruct() {
-        routes.putAll(initializer.getRoutes());
+        routes.putAll(initializer.getRouteTries());
     }
 
-    public RouteInfo findRoute(String route, RequestMethod requestMethod) {
-        route = requestMethod.name() + ":" + route;
-
-        for (Map.Entry<String, RouteInfo> entry : routes.entrySet()) {
-            if (pathMatcher.match(entry.getKey(), route)) {
-                return entry.getValue();
-            }
+    /**
+     * Used while the frame is read, so it neither throws nor counts the cache metrics, see {@link RouteInfo#getPayloadFields()}.
+     *
+     * @return names of the payload fields bound by the route, null if the route binds the whole payload or it is not found
+     */
+    Set<String> getPayloadFields(String route, RequestMethod requestMethod) {
+        RouteMatch routeMatch = routeCache != null ? routeCache.getIfPresent(new RouteCacheKey(requestMethod, route)) : null;
+        if (routeMatch == null) {
+            RouteTrie trie = routes.get(requestMethod);
+            routeMatch = trie != null ? trie.find(route) : null;
         }
 
-        throw new IllegalArgumentException("Route not found: " + route);
+        return routeMatch != null ? routeMatch.getRouteInfo().getPayloadFields() : null;
     }
 
-    public Object navigate(RouteInfo routeInfo,
-                           Map<String, Object> pathParameters,
-                           Map<String, Object> payloadParameters,
-                           Map<Class<?>, Optional<Object>> sessionParameters) throws IllegalAccessException {
+    public RouteInfo findRoute(String route, RequestMethod requestMethod) {
+        return match(route, requestMethod).getRouteInfo();
+    }
 
-        List<RouteParameter> parameters = routeInfo.getParameters();
-        Object[] args = new Object[parameters.size()];
-
-        int i = 0;
-        for (RouteParameter parameter : parameters) {
-            switch (parameter.getParameterType()) {
-                case PATH_VAR:
-                    args[i] = pathParameters.get(parameter.getName());
-                    break;
-                case ARG:
-                    if (payloadParameters.containsKey(parameter.getName())) {
-                        args[i] = payloadParameters.get(parameter.getName());
-                    } else if (parameter.getDefaultValue().equals(ArgDefaultValue.ARG_NULL_DEFAULT_VALUE)) {
-                        throw new IllegalArgumentException("Missing argument: " + parameter.getName());
-                    } else {
-                        args[i] = parameter.getDefaultValue();
-                    }
-                    break;
-                case NONE:
-                    Optional<Object> arg = sessionParameters.get(parameter.getType());
-                    if (arg.isPresent()) {
-                        args[i] = arg.get();
-                    } else {
-                        args[i] = Defaults.defaultValue(parameter.getType());
-                    }
-                    break;
-            }
+    /**
+     * Same as findRoute but also returns values of path variables captured during matching.
+     * When the route cache is enabled, successful matches are cached by request method and concrete route.
+     */
+    public RouteMatch match(String route, RequestMethod requestMethod) {
+        if (routeCache == null) {
+            return lookup(route, requestMethod);
+        }
 
-            ++i;
+        RouteCacheKey key = new RouteCacheKey(requestMethod, route);
+        RouteMatch routeMatch = routeCache.getIfPresent(key);
+        if (routeMatch != null) {
+            routeCacheHits.inc();
+            return routeMatch;
         }
 
-        try {
-            Object returnValue = routeInfo.getMethod().invoke(routeInfo.getControllerInstance(), args);
-            if (returnValue == null) {
-                Class<?> returnType = routeInfo.getMethod().getReturnType();
-
-                if (returnType != void.class) {
-                    return Mono.NO_VAL;
-                } else {
-                    return null;
-                }
-            }
+        routeCacheMisses.inc();
+        routeMatch = lookup(route, requestMethod);
+        routeCache.put(key, routeMatch);
 
-            if (returnValue instanceof String) {
-                returnValue = objectTranslator.translateString((String) returnValue);
-            } else if (returnValue instanceof Translatable) {
-                objectTranslator.translate(returnValue);
-            }
+        return routeMatch;
+    }
+
+    private RouteMatch lookup(String route, RequestMethod requestMethod) {
+        RouteTrie trie = routes.get(requestMethod);
+        RouteMatch routeMatch = trie != null ? trie.find(route) : null;
 
-            return returnValue;
-        } catch (InvocationTargetException e) {
-            Throwable cause = e.getCause();
+        if (routeMatch == null) {
+            throw new IllegalArgumentException("Route not found: " + requestMethod.name() + ":" + route);
+        }
 
-            if (cause instanceof ConstraintViolationException) {
-                ConstraintViolationException cve = (ConstraintViolationException) cause;
+        return routeMatch;
+    }
 
-                List<String> messages = cve.getConstraintViolations().stream()
-                        .map(c -> getConstraintMessage(c, routeInfo.getParameters(), routeInfo.getMethod().getDeclaringClass()))
-                        .collect(Collectors.toList());
+    /**
+     * @param args - arguments of the route, already bound by argument resolvers
+     *             (see {@link RouteInfo#newArguments()})
+     */
+    public Object navigate(RouteInfo routeInfo, Object[] args) throws IllegalAccessException {
+        List<RouteParameter> parameters = routeInfo.getParameters();
+        if (args.length != parameters.size()) {
+            throw new IllegalArgumentException("wrong number of arguments");
+        }
 
-                throw new RouteConstraintViolationException(messages);
+        for (int i = 0; i < args.length; ++i) {
+            Class<?> type = parameters.get(i).getType();
+            if (args[i] == null ? type.isPrimitive() : !Primitives.wrap(type).isInstance(args[i])) {
+                throw new IllegalArgumentException("argument type mismatch");
             }
+        }
+
+        Object returnValue;
+        try {
+            returnValue = (Object) routeInfo.getInvoker().invokeExact(args);
+        } catch (ConstraintViolationException cve) {
+            List<String> messages = cve.getConstraintViolations().stream()
+                    .map(c -> getConstraintMessage(c, routeInfo.getParameters(), routeInfo.getMethod().getDeclaringClass()))
+                    .collect(Collectors.toList());
+
+            throw new RouteConstraintViolationException(messages);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RouteExceptionWrapper(e);
+        }
+
+        if (returnValue == null) {
+            Class<?> returnType = routeInfo.getMethod().getReturnType();
 
-            if (cause instanceof RuntimeException) {
-                throw (RuntimeException) e.getCause();
-            } else if (cause instanceof Exception) {
-                throw new RouteExceptionWrapper(cause);
+            if (returnType != void.class) {
+                return Mono.NO_VAL;
+            } else {
+                return null;
             }
+        }
 
-            throw (Error) e.getCause();
+        if (returnValue instanceof String) {
+            returnValue = objectTranslator.translateString((String) returnValue);
+        } else if (returnValue instanceof Translatable) {
+            objectTranslator.translate(returnValue);
         }
+
+        return returnValue;
     }
 
+    /**
+     * @return message prefixed with the parameter name and the path of the invalid property within it,
+     * properties of the {@link pl.mrugames.commons.router.annotations.Body} parameter are not prefixed with the parameter name
+     */
     private String getConstraintMessage(ConstraintViolation<?> constraintViolation, List<RouteParameter> parameters, Class<?> controllerClass) {
         if (!controllerClass.equals(constraintViolation.getRootBeanClass())) {
             return String.format("value '%s' %s", constraintViolation.getInvalidValue(), constraintViolation.getMessage());
         }
 
-        Iterator<Path.Node> iterator = constraintViolation.getPropertyPath().iterator();
-        Path.Node parameter = null;
-        while (iterator.hasNext()) {
-            parameter = iterator.next();
-        }
-
-        if (parameter == null) {
-            throw new IllegalStateException("Shouldn't be null");
-        }
+        RouteParameter parameter = null;
+        StringBuilder property = new StringBuilder();
 
-        if (!(parameter instanceof NodeImpl)) {
-            throw new IllegalStateException("Should be hibernate implementation");
-        }
+        for (Path.Node node : constraintViolation.getPropertyPath()) {
+            if (node.getKind() == ElementKind.PARAMETER) {
+                int index = node.as(Path.ParameterNode.class).getParameterIndex();
+                if (index < 0 || index >= parameters.size()) {
+                    throw new IllegalStateException("List should contain the parameter");
+                }
 
-        int index = ((NodeImpl) parameter).getParameterIndex();
+                parameter = parameters.get(index);
+            } else if (parameter != null && node.getName() != null) {
+                if (property.length() > 0) {
+                    property.append('.');
+                }
 
-        if (index < 0) {
-            throw new IllegalStateException("Parameter index should be greater or equal to 0");
+                property.append(node.getName());
+            }
         }
 
-        if (parameters.size() < index) {
-            throw new IllegalStateException("List should contain the parameter");
+        if (parameter == null) {
+            throw new IllegalStateException("Parameter of the violation not found: " + constraintViolation.getPropertyPath());
         }
 
-        String paramName = parameters.get(index).getName();
+        String name;
+        if (property.length() == 0) {
+            name = parameter.getName();
+        } else if (parameter.getParameterType() == RouteParameter.ParameterType.BODY) {
+            name = property.toString();
+        } else {
+            name = parameter.getName() + "." + property;
+        }
 
-        return paramName + ": " + constraintViolation.getMessage();
+        return name + ": " + constraintViolation.getMessage();
     }
 
 
@@ -1,5 +1,9 @@
 package pl.mrugames.commons.router;
 
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.TextNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
@@ -8,6 +12,10 @@ import org.springframework.util.AntPathMatcher;
 import pl.mrugames.commons.router.annotations.*;
 
 import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.lang.reflect.ParameterizedType;
@@ -19,14 +27,18 @@ public class RouterInitializer {
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final ApplicationContext context;
     private final AntPathMatcher pathMatcher;
+    private final ObjectMapper objectMapper;
     private final Map<String, RouteInfo> routes;
+    private final Map<RequestMethod, RouteTrie> routeTries;
 
     private volatile String[] controllers;
 
-    private RouterInitializer(ApplicationContext applicationContext, AntPathMatcher pathMatcher) {
+    private RouterInitializer(ApplicationContext applicationContext, AntPathMatcher pathMatcher, ObjectMapper objectMapper) {
         this.context = applicationContext;
         this.pathMatcher = pathMatcher;
+        this.objectMapper = objectMapper;
         this.routes = new HashMap<>();
+        this.routeTries = new EnumMap<>(RequestMethod.class);
     }
 
     @PostConstruct
@@ -54,9 +66,13 @@ public class RouterInitializer {
                     String name = null;
                     String defaultValue = null;
                     RouteParameter.ParameterType parameterType = RouteParameter.ParameterType.NONE;
+                    PathVariableConverter converter = null;
+                    ObjectReader reader = null;
+                    Object parsedDefaultValue = null;
 
                     Arg arg = parameter.getAnnotation(Arg.class);
                     PathVar pathVar = parameter.getAnnotation(PathVar.class);
+                    Body body = parameter.getAnnotation(Body.class);
 
                     if (arg != null && pathVar != null) {
                         throw new IllegalStateException("Both Arg and PathVar annotations are not allowed. Found on: " +
@@ -64,6 +80,12 @@ public class RouterInitializer {
                         );
                     }
 
+                    if (body != null && (arg != null || pathVar != null)) {
+                        throw new IllegalStateException("Body annotation is not allowed together with Arg or PathVar. Found on: " +
+                                controller.getClass() + "#" + method.getName()
+                        );
+                    }
+
                     if (arg != null) {
                         name = arg.value();
                         if (!arg.required() && arg.defaultValue().equals(ArgDefaultValue.ARG_NULL_DEFAULT_VALUE)) {
@@ -72,9 +94,37 @@ public class RouterInitializer {
                             defaultValue = arg.defaultValue();
                         }
                         parameterType = RouteParameter.ParameterType.ARG;
+
+                        JavaType argType = objectMapper.constructType(parameter.getParameterizedType());
+                        if (argType.getRawClass() == LazyArg.class) {
+                            argType = argType.containedTypeOrUnknown(0);
+                        }
+
+                        reader = objectMapper.readerFor(argType);
+                        if (defaultValue != null && !defaultValue.equals(ArgDefaultValue.ARG_NULL_DEFAULT_VALUE)) {
+                            try {
+                                parsedDefaultValue = reader.readValue(TextNode.valueOf(defaultValue));
+                            } catch (IOException e) {
+                                throw new IllegalStateException("Default value '" + defaultValue + "' of argument '" + name + "' is not compatible with " +
+                                        parameter.getParameterizedType().getTypeName() + ". Found on: " + controller.getClass() + "#" + method.getName(), e
+                                );
+                            }
+                        }
+                    } else if (body != null) {
+                        name = "body";
+                        defaultValue = body.required() ? ArgDefaultValue.ARG_NULL_DEFAULT_VALUE : null;
+                        parameterType = RouteParameter.ParameterType.BODY;
+                        reader = objectMapper.readerFor(objectMapper.constructType(parameter.getParameterizedType()));
                     } else if (pathVar != null) {
                         name = pathVar.value();
                         parameterType = RouteParameter.ParameterType.PATH_VAR;
+
+                        converter = PathVariableConverters.forType(parameter.getType());
+                        if (converter == null) {
+                            throw new IllegalStateException("Path variable '" + name + "' of unsupported type " + parameter.getType().getName() +
+                                    ". Found on: " + controller.getClass() + "#" + method.getName()
+                            );
+                        }
                     }
 
                     Class<?>[] generics;
@@ -83,18 +133,29 @@ public class RouterInitializer {
                         generics = new Class[genericTypes.length];
 
                         for (int i = 0; i < generics.length; ++i) {
-                            generics[i] = (Class<?>) genericTypes[i];
+                            generics[i] = objectMapper.getTypeFactory().constructType(genericTypes[i]).getRawClass();
                         }
                     } else {
                         generics = new Class[0];
                     }
 
-                    parameters.add(new RouteParameter(name, parameter.getType(), defaultValue, parameterType, generics));
+                    parameters.add(new RouteParameter(name, parameter.getType(), defaultValue, parameterType, generics, parameters.size(), converter,
+                            reader, parsedDefaultValue));
+                }
+
+                long bodies = parameters.stream().filter(p -> p.getParameterType() == RouteParameter.ParameterType.BODY).count();
+                if (bodies > 1 || bodies == 1 && parameters.stream().anyMatch(p -> p.getParameterType() == RouteParameter.ParameterType.ARG)) {
+                    throw new IllegalStateException("Body parameter is not allowed together with other Body or Arg parameters. Found on: " +
+                            controller.getClass() + "#" + method.getName()
+                    );
                 }
 
-                String path = route.method().name() + ":" + pathMatcher.combine(baseRoute, route.value());
+                checkStreamAnnotations(controller, method);
 
-                RouteInfo routeInfo = new RouteInfo(controller, method, parameters, path);
+                String pattern = pathMatcher.combine(baseRoute, route.value());
+                String path = route.method().name() + ":" + pattern;
+
+                RouteInfo routeInfo = new RouteInfo(controller, method, parameters, path, createInvoker(controller, method));
 
                 if (routes.containsKey(path)) {
                     RouteInfo colliding = routes.get(path);
@@ -105,12 +166,51 @@ public class RouterInitializer {
                     );
                 }
 
+                routeTries.computeIfAbsent(route.method(), m -> new RouteTrie(pathMatcher)).add(pattern, routeInfo);
                 routes.put(path, routeInfo);
                 logger.info("Mapped {} to {}#{}", path, controller.getClass().getSimpleName(), method.getName());
             }
         }
     }
 
+    void checkStreamAnnotations(Object controller, Method method) {
+        StreamCoalescing coalescing = method.getAnnotation(StreamCoalescing.class);
+        if (coalescing == null) {
+            return;
+        }
+
+        if (coalescing.window() < 0 || coalescing.maxItems() < 0 || coalescing.window() == 0 && coalescing.maxItems() == 0) {
+            throw new IllegalStateException("StreamCoalescing requires non-negative window and maxItems, at least one of them positive. Found on: " +
+                    controller.getClass() + "#" + method.getName()
+            );
+        }
+
+        // only full items are coalesced, patches would be silently sent one by one
+        if (method.isAnnotationPresent(StreamDelta.class)) {
+            throw new IllegalStateException("StreamCoalescing is not allowed together with StreamDelta. Found on: " +
+                    controller.getClass() + "#" + method.getName()
+            );
+        }
+    }
+
+    /**
+     * Creates handle which dispatches exactly like Method.invoke (including Spring proxies), but without
+     * per call access checks and InvocationTargetException wrapping.
+     */
+    private MethodHandle createInvoker(Object controller, Method method) {
+        try {
+            method.setAccessible(true);
+
+            return MethodHandles.lookup()
+                    .unreflect(method)
+                    .bindTo(controller)
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Failed to create invoker for " + controller.getClass().getName() + "#" + method.getName(), e);
+        }
+    }
+
     String[] getControllers() {
         return controllers;
     }
@@ -118,4 +218,8 @@ public class RouterInitializer {
     public Map<String, RouteInfo> getRoutes() {
         return routes;
     }
+
+    Map<RequestMethod, RouteTrie> getRouteTries() {
+        return routeTries;
+    }
 }
@@ -4,4 +4,9 @@ public class RouterProperties {
     public final static String ANONYMOUS_KEY = "pl.mrugames.commons.router.anonymous_key";
     public final static String REMEMBER_ME_KEY = "pl.mrugames.commons.router.remember_me_key";
     public final static String SEND_STACK_TRACES = "pl.mrugames.commons.router.send_stack_traces";
+    public final static String ROUTE_CACHE_SIZE = "pl.mrugames.commons.router.route_cache_size";
+    public final static String MAX_FRAME_BYTES = "pl.mrugames.commons.router.max_frame_bytes";
+    public final static String MAX_PAYLOAD_DEPTH = "pl.mrugames.commons.router.max_payload_depth";
+    public final static String MAX_ARRAY_LENGTH = "pl.mrugames.commons.router.max_array_length";
+    public final static String COMPRESSION_THRESHOLD = "pl.mrugames.commons.router.compression_threshold";
 }
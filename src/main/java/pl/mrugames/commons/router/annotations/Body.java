@@ -0,0 +1,20 @@
+package pl.mrugames.commons.router.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds the whole request payload to the parameter in a single pass, e.g. to a DTO.
+ * May not be combined with {@link Arg} parameters on the same route.
+ * Constraints of the DTO are validated if the parameter is annotated with {@link javax.validation.Valid}.
+ */
+@Target({ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Body {
+    /**
+     * @return if false, null is bound when the request has no payload
+     */
+    boolean required() default true;
+}
@@ -0,0 +1,29 @@
+package pl.mrugames.commons.router.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Items of the stream returned by the route are collected and sent in frames with status
+ * {@link pl.mrugames.commons.router.ResponseStatus#STREAM_BATCH}, whose payload is the list of the items.
+ * Frame is sent when the window elapses or when it has {@link #maxItems()} items, whichever comes first.
+ * A window with a single item is sent as a regular STREAM frame.
+ * <p>
+ * Closing and error frames are sent after the items collected before them, so they may be delayed by up to one window.
+ * Ignored on routes which do not return a stream. Not allowed together with {@link StreamDelta}.
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StreamCoalescing {
+    /**
+     * @return window in milliseconds, 0 to collect only by {@link #maxItems()}
+     */
+    long window() default 50;
+
+    /**
+     * @return maximum amount of frames collected in a window, 0 to collect only by {@link #window()}
+     */
+    int maxItems() default 100;
+}
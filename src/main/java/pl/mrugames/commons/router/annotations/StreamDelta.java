@@ -0,0 +1,20 @@
+package pl.mrugames.commons.router.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Items of the stream returned by the route are sent in frames with status
+ * {@link pl.mrugames.commons.router.ResponseStatus#STREAM_DELTA}: the first one carries the full item,
+ * next ones only a JSON merge patch against the previous item, see {@link pl.mrugames.commons.router.MergePatch}.
+ * {@link pl.mrugames.commons.router.client.Client} applies the patches, so its subscribers still receive full items.
+ * <p>
+ * Items are sent as they are mapped to JSON, i.e. as maps, lists and values. Fields with null values are omitted.
+ * Ignored on routes which do not return a stream. Not allowed together with {@link StreamCoalescing}.
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StreamDelta {
+}
@@ -1,11 +1,14 @@
 package pl.mrugames.commons.router.arg_resolvers;
 
-import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.google.common.primitives.Primitives;
 import org.springframework.stereotype.Component;
+import pl.mrugames.commons.router.LazyArg;
+import pl.mrugames.commons.router.RouteInfo;
 import pl.mrugames.commons.router.RouteParameter;
 import pl.mrugames.commons.router.annotations.ArgDefaultValue;
 import pl.mrugames.commons.router.exceptions.IncompatibleParameterException;
@@ -13,71 +16,137 @@ import pl.mrugames.commons.router.exceptions.ParameterNotFoundException;
 import pl.mrugames.commons.router.exceptions.RouterException;
 
 import java.io.IOException;
-import java.util.AbstractMap;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 
+/**
+ * Binds arguments while streaming over the payload tokens captured by {@link pl.mrugames.commons.router.JsonFrameTranslator}:
+ * fields of route arguments are read directly from the parser, all other fields are skipped without being materialized.
+ * Reading stops as soon as all arguments are bound. The frame reader captures only bound fields if the route precedes
+ * the payload in the frame, otherwise the whole payload was buffered as tokens.
+ * Arguments of type {@link LazyArg} only keep their tokens, they are deserialized when the route reads them.
+ * Parameter annotated with {@link pl.mrugames.commons.router.annotations.Body} is bound to the whole payload in a single pass.
+ */
 @Component
-public class JsonPayloadArgumentResolver implements PayloadArgumentResolver<String> {
-    private final ObjectMapper mapper;
-
-    private JsonPayloadArgumentResolver(ObjectMapper mapper) {
-        this.mapper = mapper;
+public class JsonPayloadArgumentResolver implements PayloadArgumentResolver<JsonParser> {
+    private JsonPayloadArgumentResolver() {
     }
 
+    /**
+     * @param input - parser positioned before or at the start of the payload, null if there is no payload
+     */
     @Override
-    public Map<String, Object> resolve(String input, List<RouteParameter> parameters) {
+    public void resolve(JsonParser input, RouteInfo routeInfo, Object[] args) {
+        if (routeInfo.getBodyParameter() != null) {
+            resolveBody(input, routeInfo.getBodyParameter(), args);
+            return;
+        }
+
+        RouteParameter[] parameters = routeInfo.getArgParameters();
+        boolean[] bound = new boolean[parameters.length];
+
         try {
-            JsonNode rootNode = mapper.readTree(input);
+            JsonToken token = input == null ? null : input.hasCurrentToken() ? input.getCurrentToken() : input.nextToken();
 
-            return parameters.stream()
-                    .filter(p -> p.getParameterType() == RouteParameter.ParameterType.ARG)
-                    .map(p -> map(p, rootNode))
-                    .collect(HashMap::new, (m, v) -> m.put(v.getKey(), v.getValue()), HashMap::putAll);
-        } catch (JsonParseException e) {
-            throw new RouterException(e.getMessage(), e);
+            if (token == JsonToken.START_OBJECT) {
+                int unbound = parameters.length;
+
+                // rest of the payload is not needed once all arguments are bound
+                while (unbound > 0 && input.nextToken() == JsonToken.FIELD_NAME) {
+                    int i = indexOf(parameters, input.getCurrentName());
+                    input.nextToken();
+
+                    if (i < 0) {
+                        input.skipChildren();
+                        continue;
+                    }
+
+                    args[parameters[i].getIndex()] = read(parameters[i], input);
+                    if (!bound[i]) {
+                        bound[i] = true;
+                        --unbound;
+                    }
+                }
+            }
         } catch (IOException e) {
             throw new RouterException(e.getMessage(), e);
         }
+
+        for (int i = 0; i < parameters.length; ++i) {
+            if (!bound[i]) {
+                args[parameters[i].getIndex()] = defaultValue(parameters[i]);
+            }
+        }
     }
 
-    private Map.Entry<String, Object> map(RouteParameter parameter, JsonNode root) {
-        JsonNode node = root.get(parameter.getName());
+    private void resolveBody(JsonParser input, RouteParameter parameter, Object[] args) {
+        Object value = null;
 
-        String strNode;
-        if (node == null) {
-            if (ArgDefaultValue.ARG_NULL_DEFAULT_VALUE.equals(parameter.getDefaultValue())) {
-                throw new ParameterNotFoundException(parameter.getName());
+        try {
+            JsonToken token = input == null ? null : input.hasCurrentToken() ? input.getCurrentToken() : input.nextToken();
+            if (token != null && token != JsonToken.VALUE_NULL) {
+                value = read(parameter, input);
             }
+        } catch (IOException e) {
+            throw new RouterException(e.getMessage(), e);
+        }
 
-            if (parameter.getDefaultValue() == null) {
-                strNode = null;
-            } else {
-                strNode = "\"" + parameter.getDefaultValue() + "\"";
-            }
-        } else {
-            strNode = node.toString();
+        if (value == null && ArgDefaultValue.ARG_NULL_DEFAULT_VALUE.equals(parameter.getDefaultValue())) {
+            throw new ParameterNotFoundException(parameter.getName());
         }
 
-        if (strNode == null) {
-            return new AbstractMap.SimpleEntry<>(parameter.getName(), null);
+        args[parameter.getIndex()] = value;
+    }
+
+    private int indexOf(RouteParameter[] parameters, String name) {
+        for (int i = 0; i < parameters.length; ++i) {
+            if (parameters[i].getName().equals(name)) {
+                return i;
+            }
         }
 
-        Object mapped;
+        return -1;
+    }
+
+    private Object read(RouteParameter parameter, JsonParser parser) {
         try {
-            if (parameter.getGenerics().length > 0) {
-                JavaType type = mapper.getTypeFactory().constructParametricType(parameter.getType(), parameter.getGenerics());
-                mapped = mapper.readValue(strNode, type);
-            } else {
-                mapped = mapper.readValue(strNode, parameter.getType());
+            if (parameter.isLazy()) {
+                TokenBuffer tokens = new TokenBuffer(parser);
+                tokens.copyCurrentStructure(parser);
+                return LazyArg.deferred(parameter.getName(), tokens, parameter.getReader());
             }
+
+            return parameter.getReader().readValue(parser);
         } catch (InvalidFormatException e) {
             throw new IncompatibleParameterException(parameter.getName(), e.getTargetType(), e);
         } catch (IOException e) {
             throw new RouterException(e.getMessage(), e);
         }
+    }
+
+    private Object defaultValue(RouteParameter parameter) {
+        if (ArgDefaultValue.ARG_NULL_DEFAULT_VALUE.equals(parameter.getDefaultValue())) {
+            throw new ParameterNotFoundException(parameter.getName());
+        }
+
+        Object value = parameter.getParsedDefaultValue();
+        if (value != null && !isImmutable(value)) {
+            // don't share mutable default between requests
+            try {
+                value = parameter.getReader().readValue(TextNode.valueOf(parameter.getDefaultValue()));
+            } catch (IOException e) {
+                throw new RouterException(e.getMessage(), e);
+            }
+        }
+
+        return parameter.isLazy() ? LazyArg.of(value) : value;
+    }
 
-        return new AbstractMap.SimpleEntry<>(parameter.getName(), mapped);
+    private boolean isImmutable(Object value) {
+        return value instanceof String
+                || value instanceof Enum
+                || Primitives.isWrapperType(value.getClass())
+                || value instanceof BigDecimal
+                || value instanceof BigInteger;
     }
 }
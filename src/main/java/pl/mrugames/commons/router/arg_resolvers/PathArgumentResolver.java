@@ -1,56 +1,29 @@
 package pl.mrugames.commons.router.arg_resolvers;
 
-import com.google.common.primitives.Primitives;
 import org.springframework.stereotype.Component;
-import org.springframework.util.AntPathMatcher;
+import pl.mrugames.commons.router.RouteMatch;
 import pl.mrugames.commons.router.RouteParameter;
 import pl.mrugames.commons.router.exceptions.IncompatibleParameterException;
 import pl.mrugames.commons.router.exceptions.PathParameterNotFoundException;
 
-import java.lang.reflect.InvocationTargetException;
-import java.util.AbstractMap;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-
 @Component
 public class PathArgumentResolver {
-    private final AntPathMatcher pathMatcher;
-
-    private PathArgumentResolver(AntPathMatcher pathMatcher) {
-        this.pathMatcher = pathMatcher;
-    }
-
-    public Map<String, Object> resolve(String path, String pattern, List<RouteParameter> parameters) {
-
-        Map<String, String> mappedValues;
-        try {
-            mappedValues = pathMatcher.extractUriTemplateVariables(pattern, path);
-        } catch (IllegalStateException e) {
-            throw new PathParameterNotFoundException(path, pattern, e);
-        }
 
-        return parameters.stream()
-                .filter(p -> p.getParameterType() == RouteParameter.ParameterType.PATH_VAR)
-                .map(p -> map(mappedValues, p))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    private PathArgumentResolver() {
     }
 
-    private Map.Entry<String, Object> map(Map<String, String> mappedValues, RouteParameter parameter) {
-        try {
-            String strValue = mappedValues.get(parameter.getName());
-
-            Class<?> type = parameter.getType();
-
-            if (type.isPrimitive()) {
-                type = Primitives.wrap(type);
+    public void resolve(RouteMatch routeMatch, Object[] args) {
+        for (RouteParameter parameter : routeMatch.getRouteInfo().getPathParameters()) {
+            String strValue = routeMatch.getPathVariable(parameter.getName());
+            if (strValue == null) {
+                throw new PathParameterNotFoundException(parameter.getName());
             }
 
-            Object converted = type.getConstructor(String.class).newInstance(strValue);
-
-            return new AbstractMap.SimpleEntry<>(parameter.getName(), converted);
-        } catch (NoSuchMethodException | InstantiationException | InvocationTargetException | IllegalAccessException e) {
-            throw new IncompatibleParameterException(parameter.getName(), parameter.getType(), e);
+            try {
+                args[parameter.getIndex()] = parameter.getConverter().convert(strValue);
+            } catch (RuntimeException e) {
+                throw new IncompatibleParameterException(parameter.getName(), parameter.getType(), e);
+            }
         }
     }
 }
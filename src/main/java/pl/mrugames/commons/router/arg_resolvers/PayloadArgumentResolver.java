@@ -1,10 +1,10 @@
 package pl.mrugames.commons.router.arg_resolvers;
 
-import pl.mrugames.commons.router.RouteParameter;
-
-import java.util.List;
-import java.util.Map;
+import pl.mrugames.commons.router.RouteInfo;
 
 interface PayloadArgumentResolver<T> {
-    Map<String, Object> resolve(T input, List<RouteParameter> parameters);
+    /**
+     * Writes values of {@link pl.mrugames.commons.router.annotations.Arg} parameters into their slots of the args array.
+     */
+    void resolve(T input, RouteInfo routeInfo, Object[] args);
 }
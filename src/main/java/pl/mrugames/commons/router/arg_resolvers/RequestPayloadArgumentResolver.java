@@ -1,73 +1,162 @@
 package pl.mrugames.commons.router.arg_resolvers;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.primitives.Primitives;
 import org.springframework.stereotype.Component;
+import pl.mrugames.commons.router.LazyArg;
+import pl.mrugames.commons.router.RouteInfo;
 import pl.mrugames.commons.router.RouteParameter;
 import pl.mrugames.commons.router.annotations.ArgDefaultValue;
 import pl.mrugames.commons.router.exceptions.IncompatibleParameterException;
 import pl.mrugames.commons.router.exceptions.ParameterNotFoundException;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.io.IOException;
 import java.lang.reflect.Method;
-import java.util.*;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 @Component
 public class RequestPayloadArgumentResolver implements PayloadArgumentResolver<Object> {
+    private final static MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
 
-    private RequestPayloadArgumentResolver() {
+    /**
+     * Getters of route arguments (in order of {@link RouteInfo#getArgParameters()}) per payload class.
+     * Null getter means that the payload class does not have the argument.
+     */
+    private final ClassValue<ConcurrentMap<RouteInfo, MethodHandle[]>> getters = new ClassValue<ConcurrentMap<RouteInfo, MethodHandle[]>>() {
+        @Override
+        protected ConcurrentMap<RouteInfo, MethodHandle[]> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final ObjectMapper objectMapper;
+
+    private RequestPayloadArgumentResolver(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
     }
 
     @Override
-    public Map<String, Object> resolve(Object payload, List<RouteParameter> parameters) {
-        return parameters.stream()
-                .filter(p -> RouteParameter.ParameterType.ARG == p.getParameterType())
-                .map(p -> map(p, payload))
-                .collect(HashMap::new, (m, v) -> m.put(v.getKey(), v.getValue()), HashMap::putAll);
-    }
+    public void resolve(Object payload, RouteInfo routeInfo, Object[] args) {
+        RouteParameter body = routeInfo.getBodyParameter();
+        if (body != null) {
+            // payload is already an object, it is passed as it is - only decoded maps are converted to the parameter type
+            args[body.getIndex()] = checkType(body, payload == null ? defaultValue(body) : payload);
+            return;
+        }
 
-    private Map.Entry<String, Object> map(RouteParameter parameter, Object payload) {
         if (payload == null) {
             payload = Collections.EMPTY_MAP;
         }
 
-        Object result;
+        RouteParameter[] parameters = routeInfo.getArgParameters();
+        if (parameters.length == 0) {
+            return;
+        }
 
         if (payload instanceof Map) {
             Map payloadMap = (Map) payload;
-            if (payloadMap.containsKey(parameter.getName())) {
-                result = payloadMap.get(parameter.getName());
-            } else {
-                if (ArgDefaultValue.ARG_NULL_DEFAULT_VALUE.equals(parameter.getDefaultValue())) {
-                    throw new ParameterNotFoundException(parameter.getName());
+
+            for (RouteParameter parameter : parameters) {
+                Object result = payloadMap.get(parameter.getName());
+                if (result == null && !payloadMap.containsKey(parameter.getName())) {
+                    result = defaultValue(parameter);
                 }
 
-                result = parameter.getDefaultValue();
+                args[parameter.getIndex()] = checkType(parameter, result);
             }
         } else {
-            try {
-                String getterName = "get" + parameter.getName().substring(0, 1).toUpperCase() + parameter.getName().substring(1);
-                Method getter = payload.getClass().getMethod(getterName);
-                result = getter.invoke(payload);
-            } catch (NoSuchMethodException e) {
-                if (ArgDefaultValue.ARG_NULL_DEFAULT_VALUE.equals(parameter.getDefaultValue())) {
-                    throw new ParameterNotFoundException(parameter.getName());
-                }
+            Class<?> payloadType = payload.getClass();
+            MethodHandle[] routeGetters = getters.get(payloadType).computeIfAbsent(routeInfo, r -> findGetters(payloadType, parameters));
 
-                result = parameter.getDefaultValue();
-            } catch (InvocationTargetException | IllegalAccessException e) {
-                throw new ParameterNotFoundException(parameter.getName(), e);
+            for (int i = 0; i < parameters.length; ++i) {
+                RouteParameter parameter = parameters[i];
+                Object result = routeGetters[i] != null ? get(routeGetters[i], parameter, payload) : defaultValue(parameter);
+
+                args[parameter.getIndex()] = checkType(parameter, result);
             }
         }
+    }
+
+    private Object defaultValue(RouteParameter parameter) {
+        if (ArgDefaultValue.ARG_NULL_DEFAULT_VALUE.equals(parameter.getDefaultValue())) {
+            throw new ParameterNotFoundException(parameter.getName());
+        }
+
+        return parameter.getDefaultValue();
+    }
+
+    private Object get(MethodHandle getter, RouteParameter parameter, Object payload) {
+        try {
+            return (Object) getter.invokeExact(payload);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new ParameterNotFoundException(parameter.getName(), e);
+        }
+    }
+
+    private Object checkType(RouteParameter parameter, Object result) {
+        if (parameter.isLazy() && !(result instanceof LazyArg)) {
+            return LazyArg.of(result);
+        }
 
         if (result == null) {
-            return new AbstractMap.SimpleEntry<>(parameter.getName(), null);
+            return null;
         }
 
         Class<?> type = parameter.getType().isPrimitive() ? Primitives.wrap(parameter.getType()) : parameter.getType();
         if (!type.isInstance(result)) {
+            if ((result instanceof Map || result instanceof Collection) && parameter.getReader() != null) {
+                return convert(parameter, result);
+            }
+
             throw new IncompatibleParameterException(parameter.getName(), parameter.getType(), result.getClass());
         }
 
-        return new AbstractMap.SimpleEntry<>(parameter.getName(), result);
+        return result;
+    }
+
+    /**
+     * Converts maps and lists into the parameter type, e.g. payloads decoded by {@link pl.mrugames.commons.router.binary.ValuePayloadEncoder}.
+     */
+    private Object convert(RouteParameter parameter, Object result) {
+        try {
+            return parameter.getReader().readValue(objectMapper.<JsonNode>valueToTree(result));
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IncompatibleParameterException(parameter.getName(), parameter.getType(), e);
+        }
+    }
+
+    private MethodHandle[] findGetters(Class<?> payloadType, RouteParameter[] parameters) {
+        MethodHandle[] getters = new MethodHandle[parameters.length];
+
+        for (int i = 0; i < parameters.length; ++i) {
+            String name = parameters[i].getName();
+            String getterName = "get" + name.substring(0, 1).toUpperCase() + name.substring(1);
+
+            Method method;
+            try {
+                method = payloadType.getMethod(getterName);
+            } catch (NoSuchMethodException e) {
+                continue;
+            }
+
+            try {
+                method.setAccessible(true);
+                getters[i] = MethodHandles.lookup().unreflect(method).asType(GETTER_TYPE);
+            } catch (IllegalAccessException | RuntimeException e) {
+                throw new ParameterNotFoundException(name, e);
+            }
+        }
+
+        return getters;
     }
 }
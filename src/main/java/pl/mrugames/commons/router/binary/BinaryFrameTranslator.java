@@ -0,0 +1,151 @@
+package pl.mrugames.commons.router.binary;
+
+import org.springframework.stereotype.Service;
+import pl.mrugames.commons.router.*;
+
+/**
+ * Compact binary format of {@link Request} and {@link Response}, an alternative to Java serialization
+ * for transports built on {@link pl.mrugames.commons.router.request_handlers.ObjectRequestHandler}.
+ * <p>
+ * Request frame: kind, id (signed varint), request method, request type, route (null flag and length prefixed UTF-8), payload.
+ * Response frame: kind, id (signed varint), status, payload.
+ * Enums are written as ordinal + 1, zero stands for null. Payload is written by the {@link PayloadEncoder}.
+ */
+@Service
+public class BinaryFrameTranslator implements FrameTranslator<byte[]> {
+    private final static int REQUEST = 1;
+    private final static int RESPONSE = 2;
+
+    private final static RequestMethod[] REQUEST_METHODS = RequestMethod.values();
+    private final static RequestType[] REQUEST_TYPES = RequestType.values();
+    private final static ResponseStatus[] RESPONSE_STATUSES = ResponseStatus.values();
+
+    private final PayloadEncoder payloadEncoder;
+
+    /**
+     * Pre-encoded status and payload of responses without payload or with {@link Mono#NO_VAL}, indexed by status ordinal + 1.
+     * Only the id is written for such responses. Null if the payload encoder does not support the payload.
+     */
+    private final byte[][] emptyPayloadTemplates = new byte[RESPONSE_STATUSES.length + 1][];
+    private final byte[][] noValueTemplates = new byte[RESPONSE_STATUSES.length + 1][];
+
+    public BinaryFrameTranslator(PayloadEncoder payloadEncoder) {
+        this.payloadEncoder = payloadEncoder;
+
+        for (int i = 0; i <= RESPONSE_STATUSES.length; ++i) {
+            emptyPayloadTemplates[i] = template(i, null);
+            noValueTemplates[i] = template(i, Mono.NO_VAL);
+        }
+    }
+
+    /**
+     * @return {@link Request} or {@link Response}
+     */
+    @Override
+    public Object translateToRequestOrResponse(byte[] frame) {
+        if (frame == null || frame.length == 0) {
+            throw new IllegalArgumentException("Failed to recognize frame: " + (frame == null ? null : "empty"));
+        }
+
+        try {
+            BinaryReader reader = new BinaryReader(frame);
+            Object result;
+
+            int kind = reader.readByte();
+            switch (kind) {
+                case REQUEST:
+                    long id = reader.readSignedVarLong();
+                    RequestMethod requestMethod = readEnum(reader, REQUEST_METHODS);
+                    RequestType requestType = readEnum(reader, REQUEST_TYPES);
+                    String route = readNullableString(reader);
+                    result = new Request(id, route, requestMethod, payloadEncoder.read(reader), requestType);
+                    break;
+                case RESPONSE:
+                    long responseId = reader.readSignedVarLong();
+                    ResponseStatus status = readEnum(reader, RESPONSE_STATUSES);
+                    result = new Response(responseId, status, payloadEncoder.read(reader));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown frame kind: " + kind);
+            }
+
+            if (reader.remaining() != 0) {
+                throw new IllegalArgumentException(reader.remaining() + " unexpected bytes at the end of frame");
+            }
+
+            return result;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Failed to recognize frame of " + frame.length + " bytes", e);
+        }
+    }
+
+    @Override
+    public byte[] translateFromRequest(Request request) {
+        BinaryWriter writer = new BinaryWriter();
+
+        writer.writeByte(REQUEST)
+                .writeSignedVarLong(request.getId())
+                .writeByte(ordinal(request.getRequestMethod()))
+                .writeByte(ordinal(request.getRequestType()));
+        writeNullableString(writer, request.getRoute());
+        payloadEncoder.write(request.getPayload(), writer);
+
+        return writer.toByteArray();
+    }
+
+    public byte[] translateFromResponse(Response response) {
+        byte[] template = response.getPayload() == null ? emptyPayloadTemplates[ordinal(response.getStatus())]
+                : response.getPayload() == Mono.NO_VAL ? noValueTemplates[ordinal(response.getStatus())] : null;
+
+        if (template != null) {
+            return new BinaryWriter(template.length + 11)
+                    .writeByte(RESPONSE)
+                    .writeSignedVarLong(response.getId())
+                    .write(template)
+                    .toByteArray();
+        }
+
+        BinaryWriter writer = new BinaryWriter();
+
+        writer.writeByte(RESPONSE)
+                .writeSignedVarLong(response.getId())
+                .writeByte(ordinal(response.getStatus()));
+        payloadEncoder.write(response.getPayload(), writer);
+
+        return writer.toByteArray();
+    }
+
+    private byte[] template(int status, Object payload) {
+        try {
+            BinaryWriter writer = new BinaryWriter(8).writeByte(status);
+            payloadEncoder.write(payload, writer);
+            return writer.toByteArray();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private int ordinal(Enum<?> value) {
+        return value == null ? 0 : value.ordinal() + 1;
+    }
+
+    private <T extends Enum<T>> T readEnum(BinaryReader reader, T[] values) {
+        int value = reader.readByte();
+        if (value > values.length) {
+            throw new IllegalArgumentException("Unknown " + values[0].getDeclaringClass().getSimpleName() + ": " + value);
+        }
+
+        return value == 0 ? null : values[value - 1];
+    }
+
+    private void writeNullableString(BinaryWriter writer, String value) {
+        writer.writeByte(value == null ? 0 : 1);
+        if (value != null) {
+            writer.writeString(value);
+        }
+    }
+
+    private String readNullableString(BinaryReader reader) {
+        return reader.readByte() == 0 ? null : reader.readString();
+    }
+}
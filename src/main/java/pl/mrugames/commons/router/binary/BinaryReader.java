@@ -0,0 +1,107 @@
+package pl.mrugames.commons.router.binary;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads primitives written by {@link BinaryWriter}.
+ * Malformed or truncated input results in {@link IllegalArgumentException}.
+ */
+public class BinaryReader {
+    private final byte[] buffer;
+    private final int limit;
+    private int position;
+
+    public BinaryReader(byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    public BinaryReader(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    public int readByte() {
+        require(1);
+        return buffer[position++] & 0xFF;
+    }
+
+    public long readVarLong() {
+        long result = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+
+        throw new IllegalArgumentException("Malformed varint at position " + position);
+    }
+
+    public long readSignedVarLong() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public long readFixedLong() {
+        require(8);
+
+        long result = 0;
+        for (int i = 0; i < 8; ++i) {
+            result |= (long) (buffer[position++] & 0xFF) << (i * 8);
+        }
+
+        return result;
+    }
+
+    public int readFixedInt() {
+        require(4);
+
+        int result = 0;
+        for (int i = 0; i < 4; ++i) {
+            result |= (buffer[position++] & 0xFF) << (i * 8);
+        }
+
+        return result;
+    }
+
+    public byte[] readBytes() {
+        int length = readLength();
+        byte[] result = new byte[length];
+        System.arraycopy(buffer, position, result, 0, length);
+        position += length;
+        return result;
+    }
+
+    public String readString() {
+        int length = readLength();
+        String result = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return result;
+    }
+
+    /**
+     * @return length prefix, validated against the remaining bytes
+     */
+    public int readLength() {
+        long length = readVarLong();
+        if (length < 0 || length > remaining()) {
+            throw new IllegalArgumentException("Invalid length " + length + " at position " + position);
+        }
+
+        return (int) length;
+    }
+
+    public int remaining() {
+        return limit - position;
+    }
+
+    private void require(int bytes) {
+        if (remaining() < bytes) {
+            throw new IllegalArgumentException("Unexpected end of frame at position " + position);
+        }
+    }
+}
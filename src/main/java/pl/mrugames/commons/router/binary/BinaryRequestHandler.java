@@ -0,0 +1,41 @@
+package pl.mrugames.commons.router.binary;
+
+import io.reactivex.Observable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import pl.mrugames.commons.router.Request;
+import pl.mrugames.commons.router.Response;
+import pl.mrugames.commons.router.ResponseStatus;
+import pl.mrugames.commons.router.request_handlers.ObjectRequestHandler;
+import pl.mrugames.commons.router.request_handlers.RequestHandler;
+
+/**
+ * Handles requests read by {@link BinaryFrameTranslator} and writes the responses in the same format.
+ */
+@Component
+public class BinaryRequestHandler implements RequestHandler<Request, byte[]> {
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ObjectRequestHandler objectRequestHandler;
+    private final BinaryFrameTranslator frameTranslator;
+
+    BinaryRequestHandler(ObjectRequestHandler objectRequestHandler, BinaryFrameTranslator frameTranslator) {
+        this.objectRequestHandler = objectRequestHandler;
+        this.frameTranslator = frameTranslator;
+    }
+
+    @Override
+    public Observable<byte[]> handleRequest(Request request) {
+        return objectRequestHandler.handleRequest(request).map(this::responseToBytes);
+    }
+
+    private byte[] responseToBytes(Response response) {
+        try {
+            return frameTranslator.translateFromResponse(response);
+        } catch (Exception e) {
+            logger.error("Failed to write response: {}", response, e);
+            return frameTranslator.translateFromResponse(new Response(response.getId(), ResponseStatus.INTERNAL_ERROR, "Binary mapping error: " + e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package pl.mrugames.commons.router.binary;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable buffer with the primitives of the binary frame format.
+ * Integers are written as little-endian base 128 varints, signed ones zig-zag encoded first.
+ */
+public class BinaryWriter {
+    private byte[] buffer;
+    private int size;
+
+    public BinaryWriter() {
+        this(64);
+    }
+
+    public BinaryWriter(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    public BinaryWriter writeByte(int value) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) value;
+        return this;
+    }
+
+    public BinaryWriter writeVarLong(long value) {
+        ensureCapacity(10);
+
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        buffer[size++] = (byte) value;
+        return this;
+    }
+
+    public BinaryWriter writeSignedVarLong(long value) {
+        return writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public BinaryWriter writeFixedLong(long value) {
+        ensureCapacity(8);
+
+        for (int i = 0; i < 8; ++i) {
+            buffer[size++] = (byte) (value >>> (i * 8));
+        }
+
+        return this;
+    }
+
+    public BinaryWriter writeFixedInt(int value) {
+        ensureCapacity(4);
+
+        for (int i = 0; i < 4; ++i) {
+            buffer[size++] = (byte) (value >>> (i * 8));
+        }
+
+        return this;
+    }
+
+    /**
+     * Raw bytes, without length
+     */
+    public BinaryWriter write(byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, buffer, size, value.length);
+        size += value.length;
+        return this;
+    }
+
+    /**
+     * Length prefixed bytes
+     */
+    public BinaryWriter writeBytes(byte[] value) {
+        writeVarLong(value.length);
+        return write(value);
+    }
+
+    /**
+     * Length prefixed UTF-8 bytes of the string
+     */
+    public BinaryWriter writeString(String value) {
+        return writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (size + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+        }
+    }
+}
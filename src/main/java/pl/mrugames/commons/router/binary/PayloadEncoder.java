@@ -0,0 +1,10 @@
+package pl.mrugames.commons.router.binary;
+
+/**
+ * Encodes payloads of binary frames. The payload is always the last part of the frame.
+ */
+public interface PayloadEncoder {
+    void write(Object payload, BinaryWriter writer);
+
+    Object read(BinaryReader reader);
+}
@@ -0,0 +1,207 @@
+package pl.mrugames.commons.router.binary;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import pl.mrugames.commons.router.Mono;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Default {@link PayloadEncoder}. Keeps Java types of simple values, so decoded payloads can be bound to the route arguments
+ * in the same way as payloads passed directly to {@link pl.mrugames.commons.router.request_handlers.ObjectRequestHandler}.
+ * <p>
+ * Nulls, {@link Mono#NO_VAL}, primitive wrappers, strings, byte arrays, lists and maps are written compactly.
+ * Other objects, e.g. DTOs returned by routes, are written as the lists, maps and values the {@link ObjectMapper}
+ * serializes them to, and are read back as such - route arguments of other types are converted from them
+ * by {@link pl.mrugames.commons.router.arg_resolvers.RequestPayloadArgumentResolver}.
+ * <p>
+ * Lists and maps may be nested up to {@link #MAX_DEPTH} levels, deeper frames are rejected while reading.
+ */
+@Component
+public class ValuePayloadEncoder implements PayloadEncoder {
+    private final static int NULL = 0;
+    private final static int TRUE = 1;
+    private final static int FALSE = 2;
+    private final static int INT = 3;
+    private final static int LONG = 4;
+    private final static int DOUBLE = 5;
+    private final static int FLOAT = 6;
+    private final static int SHORT = 7;
+    private final static int BYTE = 8;
+    private final static int CHAR = 9;
+    private final static int STRING = 10;
+    private final static int BYTES = 11;
+    private final static int LIST = 12;
+    private final static int MAP = 13;
+    private final static int NO_VALUE = 14;
+
+    public final static int MAX_DEPTH = 32;
+
+    private final ObjectMapper objectMapper;
+
+    public ValuePayloadEncoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void write(Object value, BinaryWriter writer) {
+        if (value == null) {
+            writer.writeByte(NULL);
+        } else if (value == Mono.NO_VAL) {
+            writer.writeByte(NO_VALUE);
+        } else if (value instanceof Boolean) {
+            writer.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer) {
+            writer.writeByte(INT).writeSignedVarLong((Integer) value);
+        } else if (value instanceof Long) {
+            writer.writeByte(LONG).writeSignedVarLong((Long) value);
+        } else if (value instanceof Double) {
+            writer.writeByte(DOUBLE).writeFixedLong(Double.doubleToLongBits((Double) value));
+        } else if (value instanceof Float) {
+            writer.writeByte(FLOAT).writeFixedInt(Float.floatToIntBits((Float) value));
+        } else if (value instanceof Short) {
+            writer.writeByte(SHORT).writeSignedVarLong((Short) value);
+        } else if (value instanceof Byte) {
+            writer.writeByte(BYTE).writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            writer.writeByte(CHAR).writeVarLong((Character) value);
+        } else if (value instanceof String) {
+            writer.writeByte(STRING).writeString((String) value);
+        } else if (value instanceof byte[]) {
+            writer.writeByte(BYTES).writeBytes((byte[]) value);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            writer.writeByte(LIST).writeVarLong(list.size());
+
+            for (Object element : list) {
+                write(element, writer);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            writer.writeByte(MAP).writeVarLong(map.size());
+
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                write(entry.getKey(), writer);
+                write(entry.getValue(), writer);
+            }
+        } else {
+            write(objectMapper.<JsonNode>valueToTree(value), writer);
+        }
+    }
+
+    private void write(JsonNode node, BinaryWriter writer) {
+        switch (node.getNodeType()) {
+            case OBJECT:
+                writer.writeByte(MAP).writeVarLong(node.size());
+
+                Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    writer.writeByte(STRING).writeString(field.getKey());
+                    write(field.getValue(), writer);
+                }
+                break;
+            case ARRAY:
+                writer.writeByte(LIST).writeVarLong(node.size());
+
+                for (JsonNode element : node) {
+                    write(element, writer);
+                }
+                break;
+            case NUMBER:
+                // BigInteger and BigDecimal are kept exact as strings, the argument resolver converts them back
+                write(node.isBigInteger() || node.isBigDecimal() ? node.asText() : node.numberValue(), writer);
+                break;
+            case BINARY:
+                try {
+                    write(node.binaryValue(), writer);
+                } catch (IOException e) {
+                    throw new IllegalArgumentException(e);
+                }
+                break;
+            case STRING:
+                write(node.textValue(), writer);
+                break;
+            case BOOLEAN:
+                write(node.booleanValue(), writer);
+                break;
+            case NULL:
+                write(null, writer);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported payload node: " + node.getNodeType());
+        }
+    }
+
+    @Override
+    public Object read(BinaryReader reader) {
+        return read(reader, 0);
+    }
+
+    private Object read(BinaryReader reader, int depth) {
+        int tag = reader.readByte();
+
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return true;
+            case FALSE:
+                return false;
+            case INT:
+                return (int) reader.readSignedVarLong();
+            case LONG:
+                return reader.readSignedVarLong();
+            case DOUBLE:
+                return Double.longBitsToDouble(reader.readFixedLong());
+            case FLOAT:
+                return Float.intBitsToFloat(reader.readFixedInt());
+            case SHORT:
+                return (short) reader.readSignedVarLong();
+            case BYTE:
+                return (byte) reader.readByte();
+            case CHAR:
+                return (char) reader.readVarLong();
+            case STRING:
+                return reader.readString();
+            case BYTES:
+                return reader.readBytes();
+            case LIST:
+                checkDepth(depth);
+                int size = reader.readLength();
+                List<Object> list = new ArrayList<>(size);
+
+                for (int i = 0; i < size; ++i) {
+                    list.add(read(reader, depth + 1));
+                }
+
+                return list;
+            case MAP:
+                checkDepth(depth);
+                int entries = reader.readLength();
+                Map<Object, Object> map = new LinkedHashMap<>();
+
+                for (int i = 0; i < entries; ++i) {
+                    map.put(read(reader, depth + 1), read(reader, depth + 1));
+                }
+
+                return map;
+            case NO_VALUE:
+                return Mono.NO_VAL;
+            default:
+                throw new IllegalArgumentException("Unknown value tag: " + tag);
+        }
+    }
+
+    private void checkDepth(int depth) {
+        if (depth >= MAX_DEPTH) {
+            throw new IllegalArgumentException("Payload is nested deeper than " + MAX_DEPTH + " levels");
+        }
+    }
+}
@@ -1,15 +1,22 @@
 package pl.mrugames.commons.router.client;
 
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
-import io.reactivex.subjects.ReplaySubject;
+import io.reactivex.Observer;
+import io.reactivex.exceptions.MissingBackpressureException;
+import io.reactivex.schedulers.Schedulers;
 import io.reactivex.subjects.Subject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import pl.mrugames.commons.router.MergePatch;
 import pl.mrugames.commons.router.RequestMethod;
 import pl.mrugames.commons.router.RequestType;
 import pl.mrugames.commons.router.Response;
 import pl.mrugames.commons.router.sessions.Session;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
@@ -20,15 +27,29 @@ public class Client {
     private final static Logger logger = LoggerFactory.getLogger(Client.class);
     private final static AtomicLong CLIENT_ID = new AtomicLong();
 
+    private final static int DEFAULT_MAX_EARLY_ARRIVALS = 1024;
+
     private final long defaultTimeout;
-    private final Map<Long, Subject<?>> buffer;
+    private final int maxEarlyArrivals;
+    private final OverflowPolicy overflowPolicy;
+    private final Map<Long, PendingRequest> buffer;
     private final AtomicLong id;
     private final Connector connector;
     private final long clientId;
     private final Session session;
 
     public Client(long defaultTimeout, Connector connector, Session session) {
+        this(defaultTimeout, connector, session, DEFAULT_MAX_EARLY_ARRIVALS, OverflowPolicy.ERROR);
+    }
+
+    /**
+     * @param maxEarlyArrivals - how many responses of a request are kept until its response is subscribed
+     * @param overflowPolicy   - what to do with responses which do not fit into that buffer
+     */
+    public Client(long defaultTimeout, Connector connector, Session session, int maxEarlyArrivals, OverflowPolicy overflowPolicy) {
         this.defaultTimeout = defaultTimeout;
+        this.maxEarlyArrivals = maxEarlyArrivals;
+        this.overflowPolicy = overflowPolicy;
         this.buffer = new ConcurrentHashMap<>();
         this.id = new AtomicLong();
         this.connector = connector;
@@ -42,7 +63,7 @@ public class Client {
     }
 
     public void closeStream(long id) {
-        _send(null, null, null, defaultTimeout, id, RequestType.CLOSE_STREAM);
+        _send(null, null, null, defaultTimeout, id, RequestType.CLOSE_STREAM, false);
     }
 
     public <T> ResponseHandle<T> send(String route) {
@@ -64,25 +85,73 @@ public class Client {
         return _send(route, payload, requestMethod, timeout);
     }
 
-    @SuppressWarnings("unchecked")
+    public <T> FlowableResponseHandle<T> sendFlowable(String route) {
+        return sendFlowable(route, null, RequestMethod.GET, defaultTimeout);
+    }
+
+    public <T> FlowableResponseHandle<T> sendFlowable(String route, Object payload) {
+        return sendFlowable(route, payload, RequestMethod.GET, defaultTimeout);
+    }
+
+    /**
+     * Sends request to a route which returns {@link org.reactivestreams.Publisher}.
+     * Cancelling the subscription closes the stream.
+     * <p>
+     * Timeout is counted only while the server has credits for more items, so the subscriber may pause between requests.
+     * Routes which return other streams ignore credits and send items as they come, which are then buffered.
+     *
+     * @param timeout [ms]
+     */
+    public <T> FlowableResponseHandle<T> sendFlowable(String route, Object payload, RequestMethod requestMethod, long timeout) {
+        ResponseHandle<T> handle = _send(route, payload, requestMethod, timeout, id.incrementAndGet(), RequestType.STANDARD, true);
+
+        Flowable<T> response = handle.response
+                .toFlowable(BackpressureStrategy.BUFFER)
+                .doOnRequest(credits -> grant(handle.id, credits))
+                .doOnCancel(() -> closeStream(handle.id));
+
+        return new FlowableResponseHandle<>(handle.id, response);
+    }
+
     void onFrameReceive(Response response) {
-        Subject subject = buffer.get(response.getId());
-        if (subject == null) {
+        PendingRequest request = buffer.get(response.getId());
+        if (request == null) {
             logger.warn("Unknown frame received: {}", response);
             return;
         }
 
         switch (response.getStatus()) {
             case OK:
-                if (response.getPayload() != null) {
-                    subject.onNext(response.getPayload());
-                }
+                request.keepResult(response.getPayload());
                 clear(response.getId());
                 break;
             case STREAM:
-                if (response.getPayload() != null) {
-                    subject.onNext(response.getPayload());
+                if (response.getPayload() != null && !emit(response.getId(), request, response.getPayload())) {
+                    return;
+                }
+                continueTimeout(response.getId(), request, 1);
+                break;
+            case STREAM_BATCH:
+                int items = 0;
+                if (response.getPayload() instanceof Collection) {
+                    for (Object item : (Collection<?>) response.getPayload()) {
+                        if (item != null && !emit(response.getId(), request, item)) {
+                            return;
+                        }
+                    }
+                    items = ((Collection<?>) response.getPayload()).size();
+                }
+                continueTimeout(response.getId(), request, items);
+                break;
+            case STREAM_DELTA:
+                Object state = MergePatch.apply(request.getDeltaState(), response.getPayload());
+                if (state != null) {
+                    request.setDeltaState(state);
+                    if (!emit(response.getId(), request, state)) {
+                        return;
+                    }
                 }
+                continueTimeout(response.getId(), request, 1);
                 break;
             case CLOSE:
                 clear(response.getId());
@@ -96,38 +165,39 @@ public class Client {
                     strPayload = "";
                 }
 
-                subject.onError(new ErrorResponseException(response.getStatus(), strPayload));
-                clear(response.getId());
+                fail(response.getId(), new ErrorResponseException(response.getStatus(), strPayload));
                 break;
         }
     }
 
     <T> ResponseHandle<T> _send(String route, Object payload, RequestMethod requestMethod, long timeout) {
         long id = this.id.incrementAndGet();
-        return _send(route, payload, requestMethod, timeout, id, RequestType.STANDARD);
+        return _send(route, payload, requestMethod, timeout, id, RequestType.STANDARD, false);
     }
 
+    /**
+     * @return subjects of the requests which are not completed yet
+     */
     Map<Long, Subject<?>> getBuffer() {
-        return buffer;
+        Map<Long, Subject<?>> subjects = new HashMap<>();
+        buffer.forEach((id, request) -> subjects.put(id, request.getSubject()));
+        return subjects;
     }
 
-    private <T> ResponseHandle<T> _send(String route, Object payload, RequestMethod requestMethod, long timeout, long id, RequestType requestType) {
+    /**
+     * @param credited - if true, the server sends items only for credits, see {@link #grant(long, long)}
+     */
+    @SuppressWarnings("unchecked")
+    private <T> ResponseHandle<T> _send(String route, Object payload, RequestMethod requestMethod, long timeout, long id, RequestType requestType, boolean credited) {
         Observable<T> result;
         if (requestType != RequestType.CLOSE_STREAM) {
-            Subject<T> subject = ReplaySubject.create();
-            buffer.put(id, subject);
+            PendingRequest request = new PendingRequest(maxEarlyArrivals, overflowPolicy, timeout, credited);
+            buffer.put(id, request);
+            if (!credited) {
+                scheduleTimeout(id, request);
+            }
 
-            Observable<T> observable = subject.timeout(timeout, TimeUnit.MILLISECONDS);
-
-            observable.subscribe(n -> {
-            }, e -> {
-                if (e instanceof TimeoutException) {
-                    subject.onError(e);
-                    clear(id);
-                }
-            });
-
-            result = subject.hide();
+            result = Observable.unsafeCreate(observer -> request.subscribe((Observer<Object>) observer));
         } else {
             result = Observable.empty();
         }
@@ -137,10 +207,72 @@ public class Client {
         return new ResponseHandle<>(id, result);
     }
 
+    /**
+     * @return false if the request is over, because the item did not fit into its early-arrival buffer
+     * or because its subscribers are gone
+     */
+    private boolean emit(long id, PendingRequest request, Object item) {
+        switch (request.emit(item)) {
+            case ACCEPTED:
+                return true;
+            case ABANDONED:
+                clear(id);
+                closeStream(id);
+                return false;
+        }
+
+        logger.warn("More than {} responses of request {} arrived before subscription", maxEarlyArrivals, id);
+        fail(id, new MissingBackpressureException("More than " + maxEarlyArrivals + " responses arrived before subscription"));
+        closeStream(id);
+        return false;
+    }
+
+    private void grant(long id, long credits) {
+        PendingRequest request = buffer.get(id);
+        if (request != null) {
+            request.grant(credits);
+            scheduleTimeout(id, request);
+        }
+
+        connector.send(id, null, credits, null, RequestType.CREDITS);
+    }
+
+    /**
+     * Restarts the timeout after items of a stream, unless they used up all credits granted to the server.
+     */
+    private void continueTimeout(long id, PendingRequest request, int items) {
+        if (request.consumeCredits(items)) {
+            scheduleTimeout(id, request);
+        } else {
+            request.cancelTimeout();
+        }
+    }
+
+    /**
+     * Timeout is counted from the request or from the last item of the stream.
+     */
+    private void scheduleTimeout(long id, PendingRequest request) {
+        request.setTimeoutTask(Schedulers.computation().scheduleDirect(
+                () -> fail(id, new TimeoutException("No response for request " + id + " within " + request.getTimeout() + " ms")),
+                request.getTimeout(), TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Removes the request before the error is emitted, so subscribers observe the buffer already cleared.
+     */
+    private void fail(long id, Throwable error) {
+        PendingRequest request = buffer.remove(id);
+        if (request != null) {
+            request.cancelTimeout();
+            request.getSubject().onError(error);
+        }
+    }
+
     private void clear(long id) {
-        Subject<?> subject = buffer.remove(id);
-        if (subject != null) {
-            subject.onComplete();
+        PendingRequest request = buffer.remove(id);
+        if (request != null) {
+            request.cancelTimeout();
+            request.getSubject().onComplete();
         }
     }
 
@@ -0,0 +1,17 @@
+package pl.mrugames.commons.router.client;
+
+import io.reactivex.Flowable;
+
+/**
+ * Handle of a stream with backpressure: requests of the subscriber are sent to the server as credits,
+ * so the server emits no more items than the subscriber asked for.
+ */
+public class FlowableResponseHandle<T> {
+    public final long id;
+    public final Flowable<T> response;
+
+    public FlowableResponseHandle(long id, Flowable<T> response) {
+        this.id = id;
+        this.response = response;
+    }
+}
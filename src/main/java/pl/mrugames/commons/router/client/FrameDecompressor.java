@@ -0,0 +1,61 @@
+package pl.mrugames.commons.router.client;
+
+import pl.mrugames.commons.router.exceptions.FrameLimitExceededException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decompresses byte frames compressed by {@link pl.mrugames.commons.router.request_handlers.FrameCompressor}.
+ * Compressed frames are recognized by the GZIP header, which can not be the start of a JSON, Smile or CBOR frame.
+ */
+public final class FrameDecompressor {
+    private final static int GZIP_MAGIC_FIRST = 0x1f;
+    private final static int GZIP_MAGIC_SECOND = 0x8b;
+
+    private FrameDecompressor() {
+    }
+
+    public static boolean isCompressed(byte[] frame) {
+        return frame != null && frame.length > 2
+                && (frame[0] & 0xff) == GZIP_MAGIC_FIRST
+                && (frame[1] & 0xff) == GZIP_MAGIC_SECOND;
+    }
+
+    /**
+     * Position of the buffer is not changed.
+     */
+    public static boolean isCompressed(ByteBuffer frame) {
+        return frame != null && frame.remaining() > 2
+                && (frame.get(frame.position()) & 0xff) == GZIP_MAGIC_FIRST
+                && (frame.get(frame.position() + 1) & 0xff) == GZIP_MAGIC_SECOND;
+    }
+
+    /**
+     * @param maxBytes - maximum size of the decompressed frame, 0 if unlimited
+     * @throws FrameLimitExceededException if the decompressed frame is larger than maxBytes, it is not decompressed further
+     * @throws IllegalArgumentException    if the frame is not a valid GZIP stream
+     */
+    public static byte[] decompress(byte[] frame, int maxBytes) {
+        byte[] chunk = new byte[8192];
+        ByteArrayOutputStream out = new ByteArrayOutputStream(frame.length * 4);
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(frame), chunk.length)) {
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+
+                if (maxBytes > 0 && out.size() > maxBytes) {
+                    throw new FrameLimitExceededException("Decompressed frame exceeds the limit of " + maxBytes + " bytes");
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to decompress frame of " + frame.length + " bytes", e);
+        }
+
+        return out.toByteArray();
+    }
+}
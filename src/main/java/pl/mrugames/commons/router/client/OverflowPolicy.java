@@ -0,0 +1,14 @@
+package pl.mrugames.commons.router.client;
+
+/**
+ * What the {@link Client} does with a response which arrives when the early-arrival buffer of its request is full,
+ * i.e. nobody subscribed to the response yet.
+ */
+public enum OverflowPolicy {
+    /**
+     * Terminates the response with {@link io.reactivex.exceptions.MissingBackpressureException} and closes the stream
+     */
+    ERROR,
+    DROP_OLDEST,
+    DROP_LATEST
+}
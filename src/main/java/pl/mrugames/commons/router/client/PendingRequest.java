@@ -0,0 +1,186 @@
+package pl.mrugames.commons.router.client;
+
+import io.reactivex.Observable;
+import io.reactivex.Observer;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Responses of a request which is not completed yet.
+ * Items which arrive before anyone subscribes are kept in a bounded buffer and replayed to the first subscriber,
+ * after that items go straight to the subscribers and no history is kept - a subscriber which would miss already
+ * delivered items gets {@link IllegalStateException} instead, and items which arrive when all subscribers are gone
+ * are dropped.
+ * The result of a one-shot request is kept, so it is delivered to every subscriber.
+ */
+class PendingRequest {
+    enum Emission {
+        ACCEPTED,
+        /**
+         * Item did not fit into the early-arrival buffer and the policy is {@link OverflowPolicy#ERROR}
+         */
+        OVERFLOW,
+        /**
+         * Item was dropped, because items were already delivered and all subscribers are gone
+         */
+        ABANDONED
+    }
+
+    private final Subject<Object> subject = PublishSubject.create();
+    private final Queue<Object> earlyArrivals = new ArrayDeque<>();
+    private final int maxEarlyArrivals;
+    private final OverflowPolicy overflowPolicy;
+    private final long timeout;
+    private final boolean credited;
+    private final AtomicLong credits = new AtomicLong();
+
+    private volatile Disposable timeoutTask;
+    private volatile Object deltaState;
+
+    private boolean delivered;
+    private boolean resultKept;
+    private Object result;
+
+    /**
+     * @param credited - if true, the server sends items only for credits granted by {@link #grant(long)}
+     */
+    PendingRequest(int maxEarlyArrivals, OverflowPolicy overflowPolicy, long timeout, boolean credited) {
+        this.maxEarlyArrivals = maxEarlyArrivals;
+        this.overflowPolicy = overflowPolicy;
+        this.timeout = timeout;
+        this.credited = credited;
+    }
+
+    Subject<Object> getSubject() {
+        return subject;
+    }
+
+    long getTimeout() {
+        return timeout;
+    }
+
+    Emission emit(Object item) {
+        synchronized (earlyArrivals) {
+            if (!subject.hasObservers()) {
+                // no one subscribes anymore, as later subscribers get an error
+                if (delivered) {
+                    return Emission.ABANDONED;
+                }
+
+                if (earlyArrivals.size() < maxEarlyArrivals) {
+                    earlyArrivals.add(item);
+                    return Emission.ACCEPTED;
+                }
+
+                switch (overflowPolicy) {
+                    case DROP_OLDEST:
+                        earlyArrivals.poll();
+                        earlyArrivals.add(item);
+                        return Emission.ACCEPTED;
+                    case DROP_LATEST:
+                        return Emission.ACCEPTED;
+                    default:
+                        return Emission.OVERFLOW;
+                }
+            }
+
+            delivered = true;
+        }
+
+        subject.onNext(item);
+        return Emission.ACCEPTED;
+    }
+
+    /**
+     * Keeps the result of a one-shot request for subscribers which come after it arrived.
+     */
+    void keepResult(Object result) {
+        synchronized (earlyArrivals) {
+            this.result = result;
+            resultKept = true;
+
+            if (result == null) {
+                return;
+            }
+
+            if (!subject.hasObservers()) {
+                earlyArrivals.add(result);
+                return;
+            }
+
+            delivered = true;
+        }
+
+        subject.onNext(result);
+    }
+
+    void subscribe(Observer<Object> observer) {
+        // under the lock, so no item is buffered between draining the buffer and subscribing to the subject
+        synchronized (earlyArrivals) {
+            if (resultKept) {
+                List<Object> items = delivered ? resultAsList() : new ArrayList<>(earlyArrivals);
+                Observable.fromIterable(items).subscribe(observer);
+                return;
+            }
+
+            if (delivered) {
+                Observable.error(new IllegalStateException("Responses were already delivered to another subscriber and are not kept"))
+                        .subscribe(observer);
+                return;
+            }
+
+            List<Object> items = new ArrayList<>(earlyArrivals);
+            earlyArrivals.clear();
+            delivered = !items.isEmpty();
+
+            Observable.fromIterable(items).concatWith(subject).subscribe(observer);
+        }
+    }
+
+    private List<Object> resultAsList() {
+        return result == null ? Collections.emptyList() : Collections.singletonList(result);
+    }
+
+    void grant(long credits) {
+        this.credits.accumulateAndGet(credits, (current, granted) -> current + granted < 0 ? Long.MAX_VALUE : current + granted);
+    }
+
+    /**
+     * @return true if the server still has credits for more items, always true if the request is not credited
+     */
+    boolean consumeCredits(int items) {
+        if (!credited) {
+            return true;
+        }
+
+        return credits.accumulateAndGet(items, (current, consumed) -> current == Long.MAX_VALUE ? current : Math.max(0, current - consumed)) > 0;
+    }
+
+    void setTimeoutTask(Disposable timeoutTask) {
+        Disposable previous = this.timeoutTask;
+        this.timeoutTask = timeoutTask;
+        if (previous != null) {
+            previous.dispose();
+        }
+    }
+
+    void cancelTimeout() {
+        setTimeoutTask(null);
+    }
+
+    Object getDeltaState() {
+        return deltaState;
+    }
+
+    void setDeltaState(Object deltaState) {
+        this.deltaState = deltaState;
+    }
+}
@@ -4,6 +4,13 @@ import io.reactivex.Observable;
 
 public class ResponseHandle<T> {
     public final long id;
+
+    /**
+     * Result of a one-shot request is delivered to every subscriber, also after it arrived.
+     * Stream items are delivered only to the subscribers present when they arrive (items which arrived before
+     * the first subscription are replayed to it), a later subscriber which would miss some of them
+     * fails with {@link IllegalStateException}. Items which arrive after the subscribers which received items are gone close the stream.
+     */
     public final Observable<T> response;
 
     public ResponseHandle(long id, Observable<T> response) {
@@ -0,0 +1,7 @@
+package pl.mrugames.commons.router.exceptions;
+
+public class FrameLimitExceededException extends RouterException {
+    public FrameLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -4,4 +4,8 @@ public class PathParameterNotFoundException extends RouterException {
     public PathParameterNotFoundException(String path, String pattern, Throwable cause) {
         super("Invalid path: " + path + " for pattern: " + pattern, cause);
     }
+
+    public PathParameterNotFoundException(String missingParameter) {
+        super("Could not find '" + missingParameter + "' path variable in the route");
+    }
 }
@@ -0,0 +1,39 @@
+package pl.mrugames.commons.router.request_handlers;
+
+import io.reactivex.subjects.Subject;
+import io.reactivex.subscribers.ResourceSubscriber;
+
+/**
+ * Requests items of a stream only when the client grants credits for them, see {@link pl.mrugames.commons.router.RequestType#CREDITS}.
+ * Nothing is requested until the first credits arrive.
+ */
+class CreditedSubscriber extends ResourceSubscriber<Object> {
+    private final Subject<Object> subject;
+
+    CreditedSubscriber(Subject<Object> subject) {
+        this.subject = subject;
+    }
+
+    @Override
+    protected void onStart() {
+    }
+
+    void grant(long credits) {
+        request(credits);
+    }
+
+    @Override
+    public void onNext(Object next) {
+        subject.onNext(next);
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        subject.onError(error);
+    }
+
+    @Override
+    public void onComplete() {
+        subject.onComplete();
+    }
+}
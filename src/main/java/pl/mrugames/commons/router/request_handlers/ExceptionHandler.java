@@ -11,6 +11,7 @@ import pl.mrugames.commons.router.ResponseStatus;
 import pl.mrugames.commons.router.RouteExceptionWrapper;
 import pl.mrugames.commons.router.RouterProperties;
 import pl.mrugames.commons.router.exceptions.ApplicationException;
+import pl.mrugames.commons.router.exceptions.FrameLimitExceededException;
 import pl.mrugames.commons.router.exceptions.IncompatibleParameterException;
 import pl.mrugames.commons.router.exceptions.ParameterNotFoundException;
 import pl.mrugames.commons.router.exceptions.RouteConstraintViolationException;
@@ -27,6 +28,9 @@ import java.util.function.Function;
 
 @Service
 public class ExceptionHandler {
+    final static String SESSION_EXPIRED = "Session expired";
+    final static String SESSION_DOES_NOT_EXIST = "Session does not exist";
+
     private class Handler<T extends Throwable> {
         final Class<T> supportedType;
         final Function<T, Response> handler;
@@ -53,9 +57,10 @@ public class ExceptionHandler {
         registerHandler(ParameterNotFoundException.class, e -> new Response(-1, ResponseStatus.BAD_REQUEST, e.getMessage()));
         registerHandler(IllegalArgumentException.class, e -> new Response(-1, ResponseStatus.BAD_REQUEST, e.getMessage()));
         registerHandler(IncompatibleParameterException.class, e -> new Response(-1, ResponseStatus.BAD_REQUEST, e.getMessage()));
+        registerHandler(FrameLimitExceededException.class, e -> new Response(-1, ResponseStatus.BAD_REQUEST, e.getMessage()));
         registerHandler(RouteConstraintViolationException.class, e -> new Response(-1, ResponseStatus.BAD_PARAMETERS, e.getMessages()));
-        registerHandler(SessionExpiredException.class, e -> new Response(-1, ResponseStatus.BAD_REQUEST, "Session expired"));
-        registerHandler(SessionDoesNotExistException.class, e -> new Response(-1, ResponseStatus.BAD_REQUEST, "Session does not exist"));
+        registerHandler(SessionExpiredException.class, e -> new Response(-1, ResponseStatus.BAD_REQUEST, SESSION_EXPIRED));
+        registerHandler(SessionDoesNotExistException.class, e -> new Response(-1, ResponseStatus.BAD_REQUEST, SESSION_DOES_NOT_EXIST));
         registerHandler(ApplicationException.class, e -> new Response(-1, e.getResponseStatus(), e.getMessage()));
         registerHandler(AuthenticationException.class, e -> new Response(-1, ResponseStatus.PERMISSION_DENIED, e.getMessage()));
         registerHandler(AccessDeniedException.class, e -> new Response(-1, ResponseStatus.PERMISSION_DENIED, e.getMessage()));
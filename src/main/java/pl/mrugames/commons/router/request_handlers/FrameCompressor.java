@@ -0,0 +1,82 @@
+package pl.mrugames.commons.router.request_handlers;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pl.mrugames.commons.router.RouterProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses byte frames of the clients which accept it (see {@link JsonRequest#isCompressionAccepted()}) with GZIP,
+ * if they are not smaller than the threshold. Frames which would not get smaller are sent as they are.
+ * Clients decompress them with {@link pl.mrugames.commons.router.client.FrameDecompressor}.
+ * <p>
+ * Compression trades CPU for bytes, the trade-off of the actual payloads can be watched in the metrics:
+ * time of the compression and amount of bytes before and after it.
+ */
+@Component
+public class FrameCompressor {
+    private final int threshold;
+
+    private final Timer compressionTime;
+    private final Counter compressedFrames;
+    private final Counter bytesBefore;
+    private final Counter bytesAfter;
+
+    /**
+     * @param threshold - minimum size of the frame to be compressed, 0 disables compression
+     */
+    FrameCompressor(MetricRegistry metricRegistry,
+                    @Value("${" + RouterProperties.COMPRESSION_THRESHOLD + ":1024}") int threshold) {
+        this.threshold = threshold;
+
+        compressionTime = metricRegistry.timer(MetricRegistry.name(FrameCompressor.class, "compression_time"));
+        compressedFrames = metricRegistry.counter(MetricRegistry.name(FrameCompressor.class, "compressed_frames"));
+        bytesBefore = metricRegistry.counter(MetricRegistry.name(FrameCompressor.class, "bytes_before_compression"));
+        bytesAfter = metricRegistry.counter(MetricRegistry.name(FrameCompressor.class, "bytes_after_compression"));
+    }
+
+    /**
+     * @return compressed frame or the same frame if it is not worth to compress it
+     */
+    public byte[] compress(byte[] frame) {
+        if (threshold <= 0 || frame.length < threshold) {
+            return frame;
+        }
+
+        byte[] compressed;
+        try (Timer.Context ignored = compressionTime.time()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(frame.length / 4);
+
+            // frames are small and sent once, speed matters more than ratio
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            }) {
+                gzip.write(frame);
+            }
+
+            compressed = out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (compressed.length >= frame.length) {
+            return frame;
+        }
+
+        compressedFrames.inc();
+        bytesBefore.inc(frame.length);
+        bytesAfter.inc(compressed.length);
+
+        return compressed;
+    }
+}
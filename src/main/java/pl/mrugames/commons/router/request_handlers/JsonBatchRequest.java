@@ -0,0 +1,47 @@
+package pl.mrugames.commons.router.request_handlers;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Frame with several requests, e.g.
+ * <pre>
+ * [{"id":1,"route":"app/a","requestMethod":"GET"}, {"id":2,"route":"app/b","requestMethod":"GET"}]
+ * </pre>
+ * or, with options:
+ * <pre>
+ * {"batch":[...], "concurrent":true, "separateResponses":true}
+ * </pre>
+ * Each request is handled as if it was sent in its own frame, so it is answered with its own id and errors of one request
+ * do not affect the others. By default requests are executed one after another and the responses are sent back
+ * as an array frame, in order of the requests. Array frame is sent when every request has answered, items of streams
+ * are not part of it - they are sent in their own frames, as with separate responses.
+ */
+public class JsonBatchRequest extends JsonRequest {
+    private final List<JsonRequest> requests;
+    private final boolean concurrent;
+    private final boolean separateResponses;
+
+    /**
+     * @param concurrent        - if true, requests are executed concurrently, on the threads of {@link io.reactivex.schedulers.Schedulers#io()}
+     * @param separateResponses - if true, each response is sent in its own frame, as soon as it is ready
+     */
+    public JsonBatchRequest(List<JsonRequest> requests, boolean concurrent, boolean separateResponses) {
+        super(null, null, null, null);
+        this.requests = Collections.unmodifiableList(requests);
+        this.concurrent = concurrent;
+        this.separateResponses = separateResponses;
+    }
+
+    public List<JsonRequest> getRequests() {
+        return requests;
+    }
+
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    public boolean isSeparateResponses() {
+        return separateResponses;
+    }
+}
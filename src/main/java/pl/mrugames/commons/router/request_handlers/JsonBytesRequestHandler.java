@@ -0,0 +1,82 @@
+package pl.mrugames.commons.router.request_handlers;
+
+import io.reactivex.Observable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import pl.mrugames.commons.router.FrameFormat;
+import pl.mrugames.commons.router.Response;
+import pl.mrugames.commons.router.ResponseStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Same as {@link JsonRequestHandler}, but responses are written directly to bytes,
+ * in the {@link FrameFormat} the request was read in. Batches are answered the same way, see {@link JsonBatchRequest}.
+ * Large responses are compressed if the client accepts it, see {@link FrameCompressor}.
+ * To be used together with {@link pl.mrugames.commons.router.JsonBytesFrameTranslator}.
+ */
+@Component
+public class JsonBytesRequestHandler implements RequestHandler<JsonRequest, byte[]> {
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ResponseWriter responseWriter;
+    private final JsonRequestHandler jsonRequestHandler;
+    private final FrameCompressor frameCompressor;
+
+    JsonBytesRequestHandler(ResponseWriter responseWriter, JsonRequestHandler jsonRequestHandler, FrameCompressor frameCompressor) {
+        this.responseWriter = responseWriter;
+        this.jsonRequestHandler = jsonRequestHandler;
+        this.frameCompressor = frameCompressor;
+    }
+
+    @Override
+    public Observable<byte[]> handleRequest(JsonRequest jsonRequest) {
+        if (jsonRequest instanceof JsonBatchRequest) {
+            JsonBatchRequest batch = (JsonBatchRequest) jsonRequest;
+            return jsonRequestHandler.processBatch(batch, r -> responseToBytes(r, batch), r -> responsesToBytes(r, batch));
+        }
+
+        return jsonRequestHandler.process(jsonRequest).map(r -> responseToBytes(r, jsonRequest));
+    }
+
+    private byte[] responseToBytes(Response response, JsonRequest jsonRequest) {
+        FrameFormat format = jsonRequest.getFormat();
+
+        try {
+            return compress(responseWriter.writeBytes(response, format), jsonRequest);
+        } catch (Exception e) {
+            logger.error("Failed to write to {}: {}, {}", format, jsonRequest.getRawJson(), response, e);
+            return errorResponse(format, e, response.getId());
+        }
+    }
+
+    private byte[] responsesToBytes(List<Response> responses, JsonBatchRequest batch) {
+        FrameFormat format = batch.getFormat();
+
+        try {
+            return compress(responseWriter.writeBatchBytes(responses, format), batch);
+        } catch (Exception e) {
+            logger.error("Failed to write to {}: {}, {}", format, batch.getRawJson(), responses, e);
+            return errorResponse(format, e, -1);
+        }
+    }
+
+    private byte[] compress(byte[] frame, JsonRequest jsonRequest) {
+        return jsonRequest.isCompressionAccepted() ? frameCompressor.compress(frame) : frame;
+    }
+
+    private byte[] errorResponse(FrameFormat format, Exception e, long requestId) {
+        if (format != FrameFormat.JSON) {
+            try {
+                String message = String.format("JSON mapping error: %s, %s", e.getMessage(), ErrorUtil.exceptionStackTraceToString(e));
+                return responseWriter.writeBytes(new Response(requestId, ResponseStatus.INTERNAL_ERROR, message), format);
+            } catch (Exception e1) {
+                logger.error("Failed to write error response to {}", format, e1);
+            }
+        }
+
+        return ErrorUtil.getErrorResponse(JsonRequestHandler.JSON_MAPPING_ERROR_RESPONSE, e, requestId).getBytes(StandardCharsets.UTF_8);
+    }
+}
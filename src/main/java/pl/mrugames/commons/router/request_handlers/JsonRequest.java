@@ -1,11 +1,17 @@
 package pl.mrugames.commons.router.request_handlers;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import pl.mrugames.commons.router.FrameFormat;
 import pl.mrugames.commons.router.Request;
 import pl.mrugames.commons.router.RequestMethod;
 import pl.mrugames.commons.router.RequestType;
+import pl.mrugames.commons.router.exceptions.FrameLimitExceededException;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 /**
@@ -13,6 +19,12 @@ import java.util.Map;
  */
 public class JsonRequest extends Request {
     private volatile String rawJson;
+    private volatile byte[] rawFrame;
+    private volatile FrameFormat format = FrameFormat.JSON;
+    private volatile TokenBuffer payloadTokens;
+    private volatile FrameLimitExceededException limitViolation;
+    private volatile IllegalArgumentException readError;
+    private volatile boolean compressionAccepted;
 
     @JsonCreator
     public JsonRequest(@JsonProperty("id") Long id,
@@ -32,10 +44,86 @@ public class JsonRequest extends Request {
     }
 
     public String getRawJson() {
+        byte[] rawFrame = this.rawFrame;
+        if (rawJson == null && rawFrame != null) {
+            return new String(rawFrame, StandardCharsets.UTF_8);
+        }
+
         return rawJson;
     }
 
     public void setRawJson(String rawJson) {
         this.rawJson = rawJson;
     }
+
+    /**
+     * @param rawFrame - UTF-8 encoded frame, decoded only if {@link #getRawJson()} is called
+     */
+    public void setRawFrame(byte[] rawFrame) {
+        this.rawFrame = rawFrame;
+    }
+
+    /**
+     * @return format the request was read in, responses should be written in the same one
+     */
+    @JsonIgnore
+    public FrameFormat getFormat() {
+        return format;
+    }
+
+    public void setFormat(FrameFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * @return true if the client sent "acceptCompression": true, so responses may be compressed by {@link FrameCompressor}
+     */
+    @JsonIgnore
+    public boolean isCompressionAccepted() {
+        return compressionAccepted;
+    }
+
+    public void setCompressionAccepted(boolean compressionAccepted) {
+        this.compressionAccepted = compressionAccepted;
+    }
+
+    /**
+     * @return violation of the limits found while the payload was read, null if the payload is within the limits
+     */
+    @JsonIgnore
+    public FrameLimitExceededException getLimitViolation() {
+        return limitViolation;
+    }
+
+    public void setLimitViolation(FrameLimitExceededException limitViolation) {
+        this.limitViolation = limitViolation;
+    }
+
+    /**
+     * @return invalid value of the envelope, e.g. unknown request method, null if the envelope was read correctly
+     */
+    @JsonIgnore
+    public IllegalArgumentException getReadError() {
+        return readError;
+    }
+
+    public void setReadError(IllegalArgumentException readError) {
+        this.readError = readError;
+    }
+
+    /**
+     * @param payloadTokens - payload captured while the frame was read, null if the frame has no payload
+     */
+    public void setPayloadTokens(TokenBuffer payloadTokens) {
+        this.payloadTokens = payloadTokens;
+    }
+
+    /**
+     * @return new parser over the payload or null if the frame has no payload
+     */
+    @JsonIgnore
+    public JsonParser getPayloadParser() {
+        TokenBuffer payloadTokens = this.payloadTokens;
+        return payloadTokens != null ? payloadTokens.asParser() : null;
+    }
 }
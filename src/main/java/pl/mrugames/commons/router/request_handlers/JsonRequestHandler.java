@@ -1,66 +1,243 @@
 package pl.mrugames.commons.router.request_handlers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import io.reactivex.Observable;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import pl.mrugames.commons.router.Response;
-import pl.mrugames.commons.router.RouteInfo;
+import pl.mrugames.commons.router.ResponseStatus;
+import pl.mrugames.commons.router.RouteMatch;
 import pl.mrugames.commons.router.Router;
 import pl.mrugames.commons.router.arg_resolvers.JsonPayloadArgumentResolver;
+import pl.mrugames.commons.router.sessions.Session;
+import pl.mrugames.commons.router.sessions.SessionManager;
 
-import java.util.Map;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 public class JsonRequestHandler implements RequestHandler<JsonRequest, String> {
     public static final String JSON_READ_ERROR_RESPONSE = "{\"id\":%d,\"status\":\"INTERNAL_ERROR\",\"payload\":\"JSON read error: %s, %s\"}"; //todo: build json using json mapper
     public static final String JSON_MAPPING_ERROR_RESPONSE = "{\"id\":%d,\"status\":\"INTERNAL_ERROR\",\"payload\":\"JSON mapping error: %s, %s\"}";
 
+    /**
+     * Statuses of the responses which answer a request of a batch in the array frame, other statuses are stream items
+     */
+    private final static Set<ResponseStatus> ANSWER_STATUSES = Collections.unmodifiableSet(EnumSet.of(
+            ResponseStatus.OK,
+            ResponseStatus.INTERNAL_ERROR,
+            ResponseStatus.ERROR,
+            ResponseStatus.PERMISSION_DENIED,
+            ResponseStatus.BAD_REQUEST,
+            ResponseStatus.BAD_PARAMETERS
+    ));
+
+    /**
+     * Emitted first by requests of a batch which open a stream, so the array frame does not wait for them
+     */
+    private final static Response STREAM_OPENED = new Response(-1, null, null);
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private final ObjectMapper mapper;
+    private final ResponseWriter responseWriter;
     private final Router router;
     private final RequestProcessor requestProcessor;
     private final JsonPayloadArgumentResolver argResolver;
     private final ExceptionHandler exceptionHandler;
+    private final SessionManager sessionManager;
 
-    JsonRequestHandler(ObjectMapper mapper,
+    JsonRequestHandler(ResponseWriter responseWriter,
                        Router router,
                        RequestProcessor requestProcessor,
                        JsonPayloadArgumentResolver argResolver,
-                       ExceptionHandler exceptionHandler) {
-        this.mapper = mapper;
+                       ExceptionHandler exceptionHandler,
+                       SessionManager sessionManager) {
+        this.responseWriter = responseWriter;
         this.router = router;
         this.requestProcessor = requestProcessor;
         this.argResolver = argResolver;
         this.exceptionHandler = exceptionHandler;
+        this.sessionManager = sessionManager;
     }
 
     @Override
     public Observable<String> handleRequest(JsonRequest jsonRequest) {
+        if (jsonRequest instanceof JsonBatchRequest) {
+            JsonBatchRequest batch = (JsonBatchRequest) jsonRequest;
+
+            return processBatch(batch,
+                    r -> responseToString(r, batch.getRawJson(), r.getId()),
+                    r -> responsesToString(r, batch.getRawJson()));
+        }
+
+        return process(jsonRequest).map(r -> responseToString(r, jsonRequest.getRawJson(), jsonRequest.getId()));
+    }
+
+    /**
+     * Each request of the batch is processed as a single request, so errors are isolated the same way.
+     * <p>
+     * Unless responses are sent separately, the first response of each request goes into the array frame, in order
+     * of the requests, and the array is sent once every request has answered. Streams are not part of the array:
+     * a route declared to return a stream counts as answered once it is invoked, and stream items are sent
+     * in their own frames as soon as they are ready.
+     *
+     * @param toFrame      - writes a response sent in its own frame
+     * @param toArrayFrame - writes responses sent together as an array frame
+     * @return frames of the batch, Observable never emits errors
+     */
+    <T> Observable<T> processBatch(JsonBatchRequest batch, Function<Response, T> toFrame, Function<List<Response>, T> toArrayFrame) {
+        List<Observable<Response>> responses = new ArrayList<>(batch.getRequests().size());
+
+        if (batch.isConcurrent()) {
+            // worker threads do not inherit the context of the connection
+            Session session = Session.getLocalSession().orElse(null);
+            SecurityContext securityContext = SecurityContextHolder.getContext();
+
+            for (JsonRequest request : batch.getRequests()) {
+                responses.add(Observable.defer(() -> sessionManager.callWithSession(session, () -> processWithin(securityContext, request, !batch.isSeparateResponses())))
+                        .subscribeOn(Schedulers.io()));
+            }
+        } else {
+            for (JsonRequest request : batch.getRequests()) {
+                responses.add(process(request, !batch.isSeparateResponses()));
+            }
+        }
+
+        if (batch.isSeparateResponses()) {
+            return Observable.merge(responses).map(toFrame);
+        }
+
+        if (responses.isEmpty()) {
+            return Observable.fromCallable(() -> toArrayFrame.apply(Collections.emptyList()));
+        }
+
+        return Observable.defer(() -> {
+            Response[] answers = new Response[responses.size()];
+            AtomicInteger unanswered = new AtomicInteger(responses.size());
+            List<Observable<T>> frames = new ArrayList<>(responses.size());
+
+            for (int i = 0; i < responses.size(); ++i) {
+                int index = i;
+                boolean[] answered = new boolean[1];
+
+                frames.add(responses.get(i).flatMap(
+                        response -> {
+                            if (answered[0]) {
+                                return Observable.just(toFrame.apply(response));
+                            }
+
+                            answered[0] = true;
+                            if (response == STREAM_OPENED) {
+                                return answer(answers, unanswered, toArrayFrame);
+                            }
+
+                            // stream returned by a route which is not declared as such
+                            if (!ANSWER_STATUSES.contains(response.getStatus())) {
+                                return Observable.just(toFrame.apply(response)).concatWith(answer(answers, unanswered, toArrayFrame));
+                            }
+
+                            answers[index] = response;
+                            return answer(answers, unanswered, toArrayFrame);
+                        },
+                        Observable::error,
+                        () -> answered[0] ? Observable.empty() : answer(answers, unanswered, toArrayFrame)
+                ));
+            }
+
+            return Observable.merge(frames);
+        });
+    }
+
+    /**
+     * @return the array frame if it was the last request of the batch to answer
+     */
+    private <T> Observable<T> answer(Response[] answers, AtomicInteger unanswered, Function<List<Response>, T> toArrayFrame) {
+        if (unanswered.decrementAndGet() != 0) {
+            return Observable.empty();
+        }
+
+        List<Response> array = new ArrayList<>(answers.length);
+        for (Response answer : answers) {
+            if (answer != null) {
+                array.add(answer);
+            }
+        }
+
+        return Observable.fromCallable(() -> toArrayFrame.apply(array));
+    }
+
+    private Observable<Response> processWithin(SecurityContext securityContext, JsonRequest request, boolean markStreams) {
+        SecurityContext previous = SecurityContextHolder.getContext();
+        SecurityContextHolder.setContext(securityContext);
+
+        try {
+            return process(request, markStreams);
+        } finally {
+            SecurityContextHolder.setContext(previous);
+        }
+    }
+
+    /**
+     * @return response observable, which never emits errors
+     */
+    Observable<Response> process(JsonRequest jsonRequest) {
+        return process(jsonRequest, false);
+    }
+
+    /**
+     * @param markStreams - if true, responses of a stream route start with {@link #STREAM_OPENED}
+     */
+    private Observable<Response> process(JsonRequest jsonRequest, boolean markStreams) {
         Observable<Response> response;
         try {
+            if (jsonRequest.getReadError() != null) {
+                throw jsonRequest.getReadError();
+            }
+
             if (jsonRequest.getId() == -1) {
+                if (jsonRequest.getLimitViolation() != null) {
+                    // the frame was rejected before its id was read
+                    throw jsonRequest.getLimitViolation();
+                }
+
                 throw new IllegalArgumentException("'id' is missing in the request");
             }
 
             switch (jsonRequest.getRequestType()) {
                 case STANDARD:
-                    RouteInfo routeInfo = router.findRoute(jsonRequest.getRoute(), jsonRequest.getRequestMethod());
+                    if (jsonRequest.getLimitViolation() != null) {
+                        throw jsonRequest.getLimitViolation();
+                    }
 
-                    String payloadJson = mapper.readTree(jsonRequest.getRawJson()).get("payload").toString();
+                    RouteMatch routeMatch = router.match(jsonRequest.getRoute(), jsonRequest.getRequestMethod());
 
-                    Map<String, Object> payload = argResolver.resolve(payloadJson, routeInfo.getParameters());
-                    response = requestProcessor.standardRequest(routeInfo,
+                    Object[] args = routeMatch.getRouteInfo().newArguments();
+                    argResolver.resolve(jsonRequest.getPayloadParser(), routeMatch.getRouteInfo(), args);
+                    response = requestProcessor.invoke(routeMatch,
                             jsonRequest.getId(),
-                            jsonRequest.getRoute(),
-                            jsonRequest.getRequestMethod(),
-                            payload);
+                            args);
+
+                    if (markStreams && routeMatch.getRouteInfo().isStream()) {
+                        response = response.startWith(STREAM_OPENED);
+                    }
                     break;
                 case CLOSE_STREAM:
                     response = requestProcessor.closeStreamRequest(jsonRequest.getId());
                     break;
+                case CREDITS:
+                    response = requestProcessor.creditsRequest(jsonRequest.getId(), readCredits(jsonRequest));
+                    break;
                 default:
                     throw new IllegalStateException("Unknown request type: " + jsonRequest.getRequestType());
             }
@@ -68,12 +245,30 @@ public class JsonRequestHandler implements RequestHandler<JsonRequest, String> {
             response = Observable.just(exceptionHandler.handle(jsonRequest.getId(), e));
         }
 
-        return response.map(r -> responseToString(r, jsonRequest.getRawJson(), jsonRequest.getId()));
+        return response;
+    }
+
+    private long readCredits(JsonRequest jsonRequest) throws IOException {
+        JsonParser parser = jsonRequest.getPayloadParser();
+        if (parser == null || parser.nextToken() != JsonToken.VALUE_NUMBER_INT) {
+            throw new IllegalArgumentException("Payload of credits must be a number");
+        }
+
+        return parser.getLongValue();
+    }
+
+    private String responsesToString(List<Response> responses, String json) {
+        try {
+            return responseWriter.writeBatchString(responses);
+        } catch (Exception e) {
+            logger.error("Failed to write to JSON: {}, {}", json, responses, e);
+            return ErrorUtil.getErrorResponse(JSON_MAPPING_ERROR_RESPONSE, e, -1);
+        }
     }
 
     private String responseToString(Response response, String json, long requestId) {
         try {
-            return mapper.writeValueAsString(response);
+            return responseWriter.writeString(response);
         } catch (Exception e) {
             logger.error("Failed to write to JSON: {}, {}", json, response, e);
             return ErrorUtil.getErrorResponse(JSON_MAPPING_ERROR_RESPONSE, e, requestId);
@@ -4,7 +4,7 @@ import io.reactivex.Observable;
 import org.springframework.stereotype.Component;
 import pl.mrugames.commons.router.Request;
 import pl.mrugames.commons.router.Response;
-import pl.mrugames.commons.router.RouteInfo;
+import pl.mrugames.commons.router.RouteMatch;
 import pl.mrugames.commons.router.Router;
 
 @Component
@@ -31,14 +31,18 @@ public class ObjectRequestHandler implements RequestHandler<Request, Response> {
     Observable<Response> next(Request request) throws Exception {
         switch (request.getRequestType()) {
             case STANDARD:
-                RouteInfo routeInfo = router.findRoute(request.getRoute(), request.getRequestMethod());
-                return requestProcessor.standardRequest(routeInfo,
+                RouteMatch routeMatch = router.match(request.getRoute(), request.getRequestMethod());
+                return requestProcessor.standardRequest(routeMatch,
                         request.getId(),
-                        request.getRoute(),
-                        request.getRequestMethod(),
                         request.getPayload());
             case CLOSE_STREAM:
                 return requestProcessor.closeStreamRequest(request.getId());
+            case CREDITS:
+                if (!(request.getPayload() instanceof Number)) {
+                    throw new IllegalArgumentException("Payload of credits must be a number");
+                }
+
+                return requestProcessor.creditsRequest(request.getId(), ((Number) request.getPayload()).longValue());
             default:
                 throw new IllegalStateException("Unknown request type: " + request.getRequestType());
         }
@@ -1,18 +1,30 @@
 package pl.mrugames.commons.router.request_handlers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
+import io.reactivex.Single;
 import io.reactivex.disposables.Disposable;
-import io.reactivex.subjects.ReplaySubject;
+import io.reactivex.subjects.PublishSubject;
 import io.reactivex.subjects.Subject;
+import io.reactivex.subjects.UnicastSubject;
+import org.reactivestreams.Publisher;
 import org.springframework.stereotype.Component;
 import pl.mrugames.commons.router.*;
+import pl.mrugames.commons.router.annotations.StreamCoalescing;
 import pl.mrugames.commons.router.arg_resolvers.PathArgumentResolver;
 import pl.mrugames.commons.router.arg_resolvers.RequestPayloadArgumentResolver;
 import pl.mrugames.commons.router.arg_resolvers.SessionArgumentResolver;
 import pl.mrugames.commons.router.sessions.Session;
 import pl.mrugames.commons.router.sessions.SessionManager;
 
-import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class RequestProcessor {
@@ -23,19 +35,22 @@ public class RequestProcessor {
     private final RequestPayloadArgumentResolver requestPayloadArgumentResolver;
     private final SessionArgumentResolver sessionArgumentResolver;
     private final ExceptionHandler exceptionHandler;
+    private final ObjectMapper objectMapper;
 
     private RequestProcessor(SessionManager sessionManager,
                              Router router,
                              PathArgumentResolver pathArgumentResolver,
                              RequestPayloadArgumentResolver requestPayloadArgumentResolver,
                              SessionArgumentResolver sessionArgumentResolver,
-                             ExceptionHandler exceptionHandler) {
+                             ExceptionHandler exceptionHandler,
+                             ObjectMapper objectMapper) {
         this.sessionManager = sessionManager;
         this.router = router;
         this.pathArgumentResolver = pathArgumentResolver;
         this.requestPayloadArgumentResolver = requestPayloadArgumentResolver;
         this.sessionArgumentResolver = sessionArgumentResolver;
         this.exceptionHandler = exceptionHandler;
+        this.objectMapper = objectMapper;
     }
 
     Observable<Response> closeStreamRequest(long requestId) {
@@ -46,26 +61,54 @@ public class RequestProcessor {
         return Observable.empty();
     }
 
-    Observable<Response> standardRequest(RouteInfo routeInfo,
+    /**
+     * Grants more items to a stream returned as {@link Publisher}.
+     * Credits of streams which are already closed are ignored, as the client may grant them before it receives CLOSE.
+     * So are credits of streams which are not Publishers, e.g. Observables: they send items without waiting for credits.
+     */
+    Observable<Response> creditsRequest(long requestId, long credits) {
+        if (credits <= 0) {
+            throw new IllegalArgumentException("Credits must be positive, but was " + credits);
+        }
+
+        Disposable subscription = sessionManager.getSession().getSubscription(requestId);
+        if (subscription instanceof CreditedSubscriber) {
+            ((CreditedSubscriber) subscription).grant(credits);
+        }
+
+        return Observable.empty();
+    }
+
+    Observable<Response> standardRequest(RouteMatch routeMatch,
                                          long requestId,
-                                         String route,
-                                         RequestMethod requestMethod,
-                                         Object requestPayload) throws InvocationTargetException, IllegalAccessException {
+                                         Object requestPayload) throws IllegalAccessException {
 
+        Object[] args = routeMatch.getRouteInfo().newArguments();
+        requestPayloadArgumentResolver.resolve(requestPayload, routeMatch.getRouteInfo(), args);
+
+        return invoke(routeMatch, requestId, args);
+    }
+
+    /**
+     * @param args - arguments of the route with payload arguments already bound,
+     *             path and session arguments are bound here
+     */
+    Observable<Response> invoke(RouteMatch routeMatch, long requestId, Object[] args) throws IllegalAccessException {
         Session session = sessionManager.getSession();
+        RouteInfo routeInfo = routeMatch.getRouteInfo();
 
-        Object returnValue = router.navigate(routeInfo,
-                pathArgumentResolver.resolve(requestMethod + ":" + route, routeInfo.getRoutePattern(), routeInfo.getParameters()),
-                requestPayloadArgumentResolver.resolve(requestPayload, routeInfo.getParameters()),
-                sessionArgumentResolver.resolve(session, routeInfo.getParameters())
-        );
+        pathArgumentResolver.resolve(routeMatch, args);
+        sessionArgumentResolver.resolve(session, routeInfo, args);
 
-        if (returnValue instanceof Mono) {
-            Mono<?> mono = (Mono) returnValue;
+        Object returnValue = router.navigate(routeInfo, args);
 
-            Object payload = mono.getResponseStatus() == ResponseStatus.OK ? mono.getPayload() : mono.getError();
+        if (returnValue instanceof Mono) {
+            return Observable.just(toResponse(requestId, returnValue));
+        }
 
-            return Observable.just(new Response(requestId, mono.getResponseStatus(), payload));
+        Maybe<?> result = toMaybe(returnValue);
+        if (result != null) {
+            return onMaybe(result, requestId);
         }
 
         if (returnValue instanceof Subject) {
@@ -76,28 +119,97 @@ public class RequestProcessor {
                 throw e;
             }
 
-            return onObservable((Subject<?>) returnValue, ReplaySubject.create(), requestId);
+            return encode(onObservable((Subject<?>) returnValue, UnicastSubject.create(), requestId), routeInfo);
         }
 
-        if (returnValue instanceof Observable) {
-            Subject<Object> subject = ReplaySubject.create();
-            Disposable disposable = ((Observable<?>) returnValue).subscribe(subject::onNext, subject::onError, subject::onComplete);
+        if (returnValue instanceof Observable || returnValue instanceof Publisher) {
+            // the source is subscribed after the subject is wired, so items emitted during the subscription are not lost
+            Subject<Object> subject = PublishSubject.create();
+            session.registerEmitter(requestId, subject);
+            Observable<Response> responses = onObservable(subject, UnicastSubject.create(), requestId);
+
+            Disposable disposable;
+            if (returnValue instanceof Observable) {
+                disposable = ((Observable<?>) returnValue).subscribe(subject::onNext, subject::onError, subject::onComplete);
+            } else {
+                disposable = Flowable.fromPublisher((Publisher<?>) returnValue).subscribeWith(new CreditedSubscriber(subject));
+            }
 
             try {
-                session.registerEmitter(requestId, subject);
                 session.registerSubscription(requestId, disposable);
             } catch (RuntimeException e) {
-                subject.onComplete();
                 disposable.dispose();
+                subject.onComplete();
                 throw e;
             }
 
-            return onObservable(subject, ReplaySubject.create(), requestId);
+            return encode(responses, routeInfo);
         }
 
         return Observable.just(new Response(requestId, ResponseStatus.OK, returnValue));
     }
 
+    private Response toResponse(long requestId, Object value) {
+        if (value instanceof Mono) {
+            Mono<?> mono = (Mono) value;
+
+            Object payload = mono.getResponseStatus() == ResponseStatus.OK ? mono.getPayload() : mono.getError();
+
+            return new Response(requestId, mono.getResponseStatus(), payload);
+        }
+
+        return new Response(requestId, ResponseStatus.OK, value);
+    }
+
+    /**
+     * @return asynchronous result of the route or null if the route returned a value
+     */
+    private Maybe<?> toMaybe(Object returnValue) {
+        if (returnValue instanceof CompletionStage) {
+            CompletionStage<?> stage = (CompletionStage<?>) returnValue;
+
+            return Maybe.create(emitter -> stage.whenComplete((value, error) -> {
+                if (error instanceof CompletionException && error.getCause() != null) {
+                    emitter.onError(error.getCause());
+                } else if (error != null) {
+                    emitter.onError(error);
+                } else if (value != null) {
+                    emitter.onSuccess(value);
+                } else {
+                    emitter.onComplete();
+                }
+            }));
+        }
+
+        if (returnValue instanceof Single) {
+            return ((Single<?>) returnValue).toMaybe();
+        }
+
+        if (returnValue instanceof Maybe) {
+            return (Maybe<?>) returnValue;
+        }
+
+        if (returnValue instanceof Completable) {
+            return ((Completable) returnValue).toMaybe();
+        }
+
+        return null;
+    }
+
+    /**
+     * Completes into a single OK or error response, the thread which invoked the route is not blocked.
+     */
+    Observable<Response> onMaybe(Maybe<?> result, long requestId) {
+        return result
+                .map(value -> toResponse(requestId, value))
+                .toSingle(new Response(requestId, ResponseStatus.OK, null))
+                .onErrorReturn(error -> exceptionHandler.handle(requestId, error))
+                .toObservable();
+    }
+
+    /**
+     * @param responseSubject - buffers responses only until the transport subscribes, e.g. {@link UnicastSubject}
+     */
     Observable<Response> onObservable(Subject<?> sourceSubject, Subject<Response> responseSubject, long requestId) {
         sourceSubject.subscribe(
                 next -> {
@@ -126,4 +238,81 @@ public class RequestProcessor {
         return responseSubject.hide();
     }
 
+    private Observable<Response> encode(Observable<Response> responses, RouteInfo routeInfo) {
+        if (routeInfo.isDelta()) {
+            responses = deltas(responses);
+        }
+
+        return coalesce(responses, routeInfo.getCoalescing());
+    }
+
+    /**
+     * @return responses with STREAM items replaced by STREAM_DELTA patches against the previous item
+     */
+    Observable<Response> deltas(Observable<Response> responses) {
+        return Observable.defer(() -> {
+            Object[] previous = new Object[1];
+
+            return responses.map(response -> {
+                if (response.getStatus() != ResponseStatus.STREAM) {
+                    return response;
+                }
+
+                Object current = objectMapper.convertValue(response.getPayload(), Object.class);
+                Object patch = MergePatch.diff(previous[0], current);
+                previous[0] = current;
+
+                return new Response(response.getId(), ResponseStatus.STREAM_DELTA, patch);
+            });
+        });
+    }
+
+    /**
+     * @return responses with consecutive STREAM items of each window merged into a single STREAM_BATCH response
+     */
+    Observable<Response> coalesce(Observable<Response> responses, StreamCoalescing coalescing) {
+        if (coalescing == null) {
+            return responses;
+        }
+
+        Observable<List<Response>> windows;
+        if (coalescing.window() <= 0) {
+            windows = responses.buffer(coalescing.maxItems());
+        } else if (coalescing.maxItems() <= 0) {
+            windows = responses.buffer(coalescing.window(), TimeUnit.MILLISECONDS);
+        } else {
+            windows = responses.buffer(coalescing.window(), TimeUnit.MILLISECONDS, coalescing.maxItems());
+        }
+
+        return windows.concatMapIterable(this::mergeStreamItems);
+    }
+
+    private List<Response> mergeStreamItems(List<Response> window) {
+        List<Response> merged = new ArrayList<>(2);
+        List<Object> items = new ArrayList<>(window.size());
+        long requestId = 0;
+
+        for (Response response : window) {
+            if (response.getStatus() == ResponseStatus.STREAM) {
+                requestId = response.getId();
+                items.add(response.getPayload());
+                continue;
+            }
+
+            addStreamItems(merged, items, requestId);
+            items = new ArrayList<>();
+            merged.add(response);
+        }
+
+        addStreamItems(merged, items, requestId);
+        return merged;
+    }
+
+    private void addStreamItems(List<Response> merged, List<Object> items, long requestId) {
+        if (items.size() == 1) {
+            merged.add(new Response(requestId, ResponseStatus.STREAM, items.get(0)));
+        } else if (items.size() > 1) {
+            merged.add(new Response(requestId, ResponseStatus.STREAM_BATCH, items));
+        }
+    }
 }
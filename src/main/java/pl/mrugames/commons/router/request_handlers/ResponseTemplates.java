@@ -0,0 +1,128 @@
+package pl.mrugames.commons.router.request_handlers;
+
+import pl.mrugames.commons.router.Mono;
+import pl.mrugames.commons.router.Response;
+import pl.mrugames.commons.router.ResponseStatus;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pre-encoded JSON of responses which differ only by the id: responses without payload (CLOSE, void routes, {@link Mono#OK}),
+ * {@link Mono#NO_VAL} and the constant error messages of {@link ExceptionHandler}, e.g. "Session expired".
+ * <p>
+ * Id is the first field of the response, so a template is the JSON written after it and only the id is spliced in.
+ * All templates are built upfront. {@link Mono#NO_VAL} is written as an empty object.
+ */
+class ResponseTemplates {
+    private final static String ID_PREFIX = "{\"id\":";
+    private final static byte[] ID_PREFIX_BYTES = ID_PREFIX.getBytes(StandardCharsets.UTF_8);
+
+    @FunctionalInterface
+    interface Encoder {
+        String encode(Response response) throws IOException;
+    }
+
+    static class Template {
+        private final String suffix;
+        private final byte[] suffixBytes;
+
+        private Template(String suffix) {
+            this.suffix = suffix;
+            this.suffixBytes = suffix.getBytes(StandardCharsets.UTF_8);
+        }
+
+        String toString(long id) {
+            return new StringBuilder(ID_PREFIX.length() + 20 + suffix.length())
+                    .append(ID_PREFIX)
+                    .append(id)
+                    .append(suffix)
+                    .toString();
+        }
+
+        byte[] toBytes(long id) {
+            if (id < 0) {
+                byte[] digits = Long.toString(id).getBytes(StandardCharsets.US_ASCII);
+                return concat(digits, digits.length);
+            }
+
+            int length = digits(id);
+            byte[] digits = new byte[length];
+            for (int i = length - 1; i >= 0; --i) {
+                digits[i] = (byte) ('0' + id % 10);
+                id /= 10;
+            }
+
+            return concat(digits, length);
+        }
+
+        private byte[] concat(byte[] digits, int length) {
+            byte[] result = new byte[ID_PREFIX_BYTES.length + length + suffixBytes.length];
+            System.arraycopy(ID_PREFIX_BYTES, 0, result, 0, ID_PREFIX_BYTES.length);
+            System.arraycopy(digits, 0, result, ID_PREFIX_BYTES.length, length);
+            System.arraycopy(suffixBytes, 0, result, ID_PREFIX_BYTES.length + length, suffixBytes.length);
+            return result;
+        }
+
+        private static int digits(long value) {
+            int digits = 1;
+            while (value >= 10) {
+                value /= 10;
+                ++digits;
+            }
+
+            return digits;
+        }
+    }
+
+    private final Map<ResponseStatus, Template> emptyPayloads = new EnumMap<>(ResponseStatus.class);
+    private final Map<ResponseStatus, Template> noValuePayloads = new EnumMap<>(ResponseStatus.class);
+    private final Map<String, Template> badRequestMessages = new HashMap<>();
+
+    ResponseTemplates(Encoder encoder) throws IOException {
+        for (ResponseStatus status : ResponseStatus.values()) {
+            emptyPayloads.put(status, fromJson(encoder.encode(new Response(0, status, null)), 0));
+            noValuePayloads.put(status, fromJson(encoder.encode(new Response(0, status, Collections.emptyMap())), 0));
+        }
+
+        for (String message : new String[]{ExceptionHandler.SESSION_EXPIRED, ExceptionHandler.SESSION_DOES_NOT_EXIST}) {
+            badRequestMessages.put(message, fromJson(encoder.encode(new Response(0, ResponseStatus.BAD_REQUEST, message)), 0));
+        }
+    }
+
+    /**
+     * @return template of the response or null if there is none
+     */
+    Template find(Response response) {
+        Object payload = response.getPayload();
+        if (payload == null) {
+            return response.getStatus() != null ? emptyPayloads.get(response.getStatus()) : null;
+        }
+
+        if (payload == Mono.NO_VAL) {
+            return response.getStatus() != null ? noValuePayloads.get(response.getStatus()) : null;
+        }
+
+        if (response.getStatus() == ResponseStatus.BAD_REQUEST && payload instanceof String) {
+            return badRequestMessages.get(payload);
+        }
+
+        return null;
+    }
+
+    /**
+     * @return template or null if the id is not the first field of the response, e.g. because of mapper configuration
+     */
+    private static Template fromJson(String json, long id) {
+        String prefix = ID_PREFIX + id;
+        if (!json.startsWith(prefix) || json.length() == prefix.length() || Character.isDigit(json.charAt(prefix.length()))) {
+            return null;
+        }
+
+        return new Template(json.substring(prefix.length()));
+    }
+}
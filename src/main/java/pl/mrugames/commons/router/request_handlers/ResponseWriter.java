@@ -0,0 +1,213 @@
+package pl.mrugames.commons.router.request_handlers;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Component;
+import pl.mrugames.commons.router.FrameFormat;
+import pl.mrugames.commons.router.Mono;
+import pl.mrugames.commons.router.Response;
+import pl.mrugames.commons.router.ResponseStatus;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes responses without going through {@link ObjectMapper#writeValueAsString(Object)}:
+ * the envelope is written field by field and the payload with an {@link ObjectWriter} cached per payload class,
+ * so serializers are not looked up again for every frame of a stream.
+ * <p>
+ * Text and bytes are written into buffers reused by the thread, only the result is allocated.
+ * Constant responses of JSON frames are not serialized at all, see {@link ResponseTemplates}.
+ */
+@Component
+public class ResponseWriter {
+    /**
+     * Buffers which grew above this size are not reused, so a single large response does not pin memory of the thread
+     */
+    private final static int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private final ObjectMapper mapper;
+    private final Map<FrameFormat, JsonFactory> factories = new EnumMap<>(FrameFormat.class);
+    private final ObjectWriter statusWriter;
+    private final ResponseTemplates templates;
+
+    private final ClassValue<ObjectWriter> writers = new ClassValue<ObjectWriter>() {
+        @Override
+        protected ObjectWriter computeValue(Class<?> type) {
+            return mapper.writerFor(type);
+        }
+    };
+
+    private final ThreadLocal<ByteArrayBuilder> byteBuffers = ThreadLocal.withInitial(ByteArrayBuilder::new);
+    private final ThreadLocal<StringWriter> textBuffers = ThreadLocal.withInitial(StringWriter::new);
+
+    ResponseWriter(ObjectMapper mapper) {
+        this.mapper = mapper;
+        this.statusWriter = mapper.writerFor(ResponseStatus.class);
+
+        for (FrameFormat format : FrameFormat.values()) {
+            factories.put(format, format.createFactory(mapper));
+        }
+
+        try {
+            this.templates = new ResponseTemplates(this::writeWithoutTemplate);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode response templates", e);
+        }
+    }
+
+    public String writeString(Response response) throws IOException {
+        ResponseTemplates.Template template = findTemplate(response);
+        if (template != null) {
+            return template.toString(response.getId());
+        }
+
+        return writeWithoutTemplate(response);
+    }
+
+    private String writeWithoutTemplate(Response response) throws IOException {
+        StringWriter buffer = textBuffers.get();
+
+        try {
+            try (JsonGenerator generator = factories.get(FrameFormat.JSON).createGenerator(buffer)) {
+                write(response, generator);
+            }
+
+            return buffer.toString();
+        } finally {
+            if (buffer.getBuffer().capacity() > MAX_RETAINED_BUFFER) {
+                textBuffers.remove();
+            } else {
+                buffer.getBuffer().setLength(0);
+            }
+        }
+    }
+
+    public byte[] writeBytes(Response response) throws IOException {
+        return writeBytes(response, FrameFormat.JSON);
+    }
+
+    public byte[] writeBytes(Response response, FrameFormat format) throws IOException {
+        ResponseTemplates.Template template = format == FrameFormat.JSON ? findTemplate(response) : null;
+        if (template != null) {
+            return template.toBytes(response.getId());
+        }
+
+        ByteArrayBuilder buffer = byteBuffers.get();
+
+        try {
+            write(response, buffer, format);
+            return buffer.toByteArray();
+        } finally {
+            if (buffer.size() > MAX_RETAINED_BUFFER) {
+                byteBuffers.remove();
+            } else {
+                buffer.reset();
+            }
+        }
+    }
+
+    /**
+     * Writes directly into the buffer of the transport. The stream is not closed.
+     */
+    public void write(Response response, OutputStream out, FrameFormat format) throws IOException {
+        ResponseTemplates.Template template = format == FrameFormat.JSON ? findTemplate(response) : null;
+        if (template != null) {
+            out.write(template.toBytes(response.getId()));
+            return;
+        }
+
+        try (JsonGenerator generator = factories.get(format).createGenerator(out)) {
+            write(response, generator);
+        }
+    }
+
+    /**
+     * @see #write(Response, OutputStream, FrameFormat)
+     */
+    public void write(Response response, Writer out) throws IOException {
+        try (JsonGenerator generator = factories.get(FrameFormat.JSON).createGenerator(out)) {
+            write(response, generator);
+        }
+    }
+
+    /**
+     * Writes responses of a {@link JsonBatchRequest} as a single array frame.
+     */
+    public String writeBatchString(List<Response> responses) throws IOException {
+        StringWriter buffer = new StringWriter();
+
+        try (JsonGenerator generator = factories.get(FrameFormat.JSON).createGenerator(buffer)) {
+            write(responses, generator);
+        }
+
+        return buffer.toString();
+    }
+
+    /**
+     * @see #writeBatchString(List)
+     */
+    public byte[] writeBatchBytes(List<Response> responses, FrameFormat format) throws IOException {
+        ByteArrayBuilder buffer = new ByteArrayBuilder();
+
+        try (JsonGenerator generator = factories.get(format).createGenerator(buffer)) {
+            write(responses, generator);
+        }
+
+        return buffer.toByteArray();
+    }
+
+    private void write(List<Response> responses, JsonGenerator generator) throws IOException {
+        generator.writeStartArray();
+        for (Response response : responses) {
+            write(response, generator);
+        }
+        generator.writeEndArray();
+    }
+
+    private ResponseTemplates.Template findTemplate(Response response) {
+        return isEnvelope(response) ? templates.find(response) : null;
+    }
+
+    private boolean isEnvelope(Response response) {
+        return response.getClass() == Response.class || response.getClass() == JsonResponse.class;
+    }
+
+    private void write(Response response, JsonGenerator generator) throws IOException {
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        // subclasses may have more properties
+        if (!isEnvelope(response)) {
+            writers.get(response.getClass()).writeValue(generator, response);
+            return;
+        }
+
+        generator.writeStartObject();
+        generator.writeNumberField("id", response.getId());
+
+        generator.writeFieldName("status");
+        statusWriter.writeValue(generator, response.getStatus());
+
+        generator.writeFieldName("payload");
+        Object payload = response.getPayload();
+        if (payload == null) {
+            generator.writeNull();
+        } else if (payload == Mono.NO_VAL) {
+            // same as the template, see ResponseTemplates
+            generator.writeStartObject();
+            generator.writeEndObject();
+        } else {
+            writers.get(payload.getClass()).writeValue(generator, payload);
+        }
+
+        generator.writeEndObject();
+    }
+}
@@ -44,6 +44,23 @@ public class Session {
         }
     }
 
+    /**
+     * Binds the session to the current thread without destroying the previous one.
+     *
+     * @return session previously bound to the thread, or null
+     */
+    static Session bindLocalSession(Session session) {
+        Session previous = localSession.get();
+
+        if (session == null) {
+            localSession.remove();
+        } else {
+            localSession.set(session);
+        }
+
+        return previous;
+    }
+
     static synchronized void setLocalSession(Session session) {
         Session current = localSession.get();
         if (current != null && current != session) {
@@ -103,6 +120,19 @@ public class Session {
         return Optional.ofNullable((T) map.get(type));
     }
 
+    /**
+     * Same as {@link #get(Class)}, but without wrapping the result.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T getOrDefault(Class<T> type, T defaultValue) {
+        if (isDestroyed) {
+            throw new SessionExpiredException();
+        }
+
+        T object = (T) map.get(type);
+        return object != null ? object : defaultValue;
+    }
+
     /**
      * Call it only if you are 100% sure that parameter exists.
      */
@@ -210,6 +240,13 @@ public class Session {
         });
     }
 
+    /**
+     * @return subscription registered for the request or null if there is none
+     */
+    public synchronized Disposable getSubscription(long requestId) {
+        return subscriptions.get(requestId);
+    }
+
     public synchronized void unregisterSubscription(long requestId) {
         Disposable disposable = subscriptions.remove(requestId);
         if (disposable != null) {
@@ -5,6 +5,8 @@ import com.codahale.metrics.MetricRegistry;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.stereotype.Component;
 
+import java.util.function.Supplier;
+
 @Component
 @EnableScheduling
 public class SessionManager {
@@ -30,6 +32,22 @@ public class SessionManager {
         sessionCounter.dec();
     }
 
+    /**
+     * Runs the task with given session bound to the current thread, e.g. on a worker thread which handles a request of the session.
+     * Previous session of the thread is restored afterwards and it is not destroyed.
+     *
+     * @param session - session to be bound, null if there is none
+     */
+    public <T> T callWithSession(Session session, Supplier<T> task) {
+        Session previous = Session.bindLocalSession(session);
+
+        try {
+            return task.get();
+        } finally {
+            Session.bindLocalSession(previous);
+        }
+    }
+
     /**
      * If session needs to be reused! Does not remove the session from memory!
      * Call destroySession() when you want to finish!
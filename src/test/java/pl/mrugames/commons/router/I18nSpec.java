@@ -9,7 +9,6 @@ import org.springframework.test.context.support.AnnotationConfigContextLoader;
 import pl.mrugames.commons.router.controllers.ModelToTranslate;
 import pl.mrugames.commons.router.controllers.NestedModelToTranslate;
 
-import java.util.Collections;
 import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -26,7 +25,7 @@ public class I18nSpec {
     @Test
     public void givenRouterReturnsStringPlaceholder_thenReplaceItWithTranslation() throws IllegalAccessException {
         RouteInfo routeInfo = router.findRoute("i18n/return-string", RequestMethod.GET);
-        String result = (String) router.navigate(routeInfo, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+        String result = (String) router.navigate(routeInfo, new Object[0]);
 
         assertThat(result).isEqualTo("Prosty ciąg znaków");
     }
@@ -34,7 +33,7 @@ public class I18nSpec {
     @Test
     public void givenRouterReturnsSimpleModel_thenReplaceString() throws IllegalAccessException {
         RouteInfo routeInfo = router.findRoute("i18n/model", RequestMethod.GET);
-        ModelToTranslate result = (ModelToTranslate) router.navigate(routeInfo, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+        ModelToTranslate result = (ModelToTranslate) router.navigate(routeInfo, new Object[0]);
 
         assertThat(result.getValue()).isEqualTo("raz");
     }
@@ -42,7 +41,7 @@ public class I18nSpec {
     @Test
     public void translateNestedObjectsSpec() throws IllegalAccessException {
         RouteInfo routeInfo = router.findRoute("i18n/model", RequestMethod.GET);
-        ModelToTranslate result = (ModelToTranslate) router.navigate(routeInfo, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+        ModelToTranslate result = (ModelToTranslate) router.navigate(routeInfo, new Object[0]);
 
         assertThat(result.getNestedModelToTranslate().getValue()).isEqualTo("dwa");
     }
@@ -50,7 +49,7 @@ public class I18nSpec {
     @Test
     public void translateCollections() throws IllegalAccessException {
         RouteInfo routeInfo = router.findRoute("i18n/model", RequestMethod.GET);
-        ModelToTranslate result = (ModelToTranslate) router.navigate(routeInfo, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+        ModelToTranslate result = (ModelToTranslate) router.navigate(routeInfo, new Object[0]);
 
         assertThat(result.getList().stream().map(NestedModelToTranslate::getValue).collect(Collectors.toList())).containsExactly("dwa", "dwa");
     }
@@ -0,0 +1,181 @@
+package pl.mrugames.commons.router;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import pl.mrugames.commons.router.exceptions.FrameLimitExceededException;
+import pl.mrugames.commons.router.request_handlers.JsonRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class JsonBytesFrameTranslatorSpec {
+    private final static String REQUEST = "{\"payload\":{\"a\":[1,2],\"b\":\"ąę\"},\"id\":5,\"route\":\"app/route\",\"requestMethod\":\"POST\"}";
+
+    private ObjectMapper objectMapper;
+    private JsonBytesFrameTranslator translator;
+
+    @Rule
+    public final ExpectedException expectedException = ExpectedException.none();
+
+    @Before
+    public void before() {
+        objectMapper = new ObjectMapper();
+        translator = new JsonBytesFrameTranslator(objectMapper, new FrameLimits(new MetricRegistry(), 200, 0, 0), mock(Router.class, invocation -> null));
+    }
+
+    private void assertRequest(Object result) throws IOException {
+        JsonRequest request = (JsonRequest) result;
+
+        assertThat(request.getId()).isEqualTo(5);
+        assertThat(request.getRoute()).isEqualTo("app/route");
+        assertThat(request.getRequestMethod()).isEqualTo(RequestMethod.POST);
+        assertThat(objectMapper.readTree(request.getPayloadParser()).toString()).isEqualTo("{\"a\":[1,2],\"b\":\"ąę\"}");
+    }
+
+    @Test
+    public void whenFrameIsNull_thenException() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Failed to recognize frame: null");
+        translator.recognize(null);
+    }
+
+    @Test
+    public void whenTranslateBytes_thenReadRequestAndKeepRawFrame() throws IOException {
+        Object result = translator.translateToRequestOrResponse(REQUEST.getBytes(StandardCharsets.UTF_8));
+
+        assertRequest(result);
+        assertThat(((JsonRequest) result).getRawJson()).isEqualTo(REQUEST);
+    }
+
+    @Test
+    public void whenTranslateSliceOfHeapBuffer_thenReadOnlyRemainingBytesAndKeepPosition() throws IOException {
+        byte[] frame = REQUEST.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(frame.length + 10);
+        buffer.put(new byte[]{'x', 'x', 'x'}).put(frame).flip();
+        buffer.position(3);
+
+        assertRequest(translator.translateToRequestOrResponse(buffer));
+        assertThat(buffer.position()).isEqualTo(3);
+    }
+
+    @Test
+    public void whenTranslateDirectBuffer_thenReadRequest() throws IOException {
+        byte[] frame = REQUEST.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(frame.length);
+        buffer.put(frame).flip();
+
+        assertRequest(translator.translateToRequestOrResponse(buffer));
+        assertThat(buffer.remaining()).isEqualTo(frame.length);
+    }
+
+    @Test
+    public void whenTranslateResponse_thenReadPayload() throws JsonProcessingException {
+        Response response = new Response(3, ResponseStatus.STREAM, Collections.singletonMap("key", "value"));
+
+        Object result = translator.translateToRequestOrResponse(objectMapper.writeValueAsBytes(response));
+
+        assertThat(result).isEqualTo(response);
+    }
+
+    @Test
+    public void whenTranslateFromRequest_thenSameBytesAsWrittenByMapper() throws JsonProcessingException {
+        Request request = new Request(1, "route", RequestMethod.POST, Collections.singletonMap("key", "ąę"));
+
+        assertThat(translator.translateFromRequest(request)).isEqualTo(objectMapper.writeValueAsBytes(request));
+    }
+
+    @Test
+    public void whenBufferIsNotObject_thenExceptionWithDecodedFrame() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Failed to recognize frame: \"ą\"");
+        translator.translateToRequestOrResponse(ByteBuffer.wrap("\"ą\"".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void givenBinaryFormats_whenTranslateRequest_thenSameAsJson() throws IOException {
+        Request request = new Request(5, "app/route", RequestMethod.POST, objectMapper.readValue("{\"a\":[1,2],\"b\":\"ąę\"}", Map.class));
+
+        for (FrameFormat format : new FrameFormat[]{FrameFormat.SMILE, FrameFormat.CBOR}) {
+            FrameTranslator<byte[]> formatTranslator = translator.forFormat(format);
+            byte[] frame = formatTranslator.translateFromRequest(request);
+
+            assertThat(frame).isNotEqualTo(objectMapper.writeValueAsBytes(request));
+
+            JsonRequest result = (JsonRequest) formatTranslator.translateToRequestOrResponse(frame);
+            assertRequest(result);
+            assertThat(result.getFormat()).isEqualTo(format);
+            assertThat(result.getRawJson()).isNull();
+        }
+    }
+
+    @Test
+    public void givenSmileBuffer_whenTranslate_thenReadRequest() throws IOException {
+        Request request = new Request(5, "app/route", RequestMethod.POST, objectMapper.readValue("{\"a\":[1,2],\"b\":\"ąę\"}", Map.class));
+
+        ByteBuffer buffer = ByteBuffer.wrap(translator.translateFromRequest(request, FrameFormat.SMILE));
+
+        assertRequest(translator.translateToRequestOrResponse(buffer, FrameFormat.SMILE));
+    }
+
+    @Test
+    public void givenCborResponse_whenTranslate_thenReadPayload() throws JsonProcessingException {
+        Response response = new Response(3, ResponseStatus.STREAM, Collections.singletonMap("key", "value"));
+        byte[] frame = objectMapper.writer().with(FrameFormat.CBOR.createFactory(objectMapper)).writeValueAsBytes(response);
+
+        assertThat(translator.translateToRequestOrResponse(frame, FrameFormat.CBOR)).isEqualTo(response);
+    }
+
+    @Test
+    public void givenJsonFrame_whenTranslateAsSmile_thenException() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Failed to recognize frame: ");
+        translator.translateToRequestOrResponse(REQUEST.getBytes(StandardCharsets.UTF_8), FrameFormat.SMILE);
+    }
+
+    @Test
+    public void whenBufferExceedsSize_thenRejectedRequest() {
+        JsonRequest request = (JsonRequest) translator.translateToRequestOrResponse(ByteBuffer.allocate(201));
+
+        assertThat(request.getId()).isEqualTo(-1);
+        assertThat(request.getLimitViolation()).isInstanceOf(FrameLimitExceededException.class);
+    }
+
+    @Test
+    public void whenFrameIsCompressed_thenDecompressBeforeReading() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(REQUEST.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertRequest(translator.translateToRequestOrResponse(ByteBuffer.wrap(out.toByteArray())));
+    }
+
+    @Test
+    public void whenDecompressedFrameExceedsSize_thenException() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(new byte[10000]);
+        }
+
+        JsonRequest request = (JsonRequest) translator.translateToRequestOrResponse(out.toByteArray());
+
+        assertThat(request.getId()).isEqualTo(-1);
+        assertThat(request.getLimitViolation()).hasMessageContaining("Decompressed frame exceeds the limit");
+    }
+}
@@ -1,5 +1,6 @@
 package pl.mrugames.commons.router;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Before;
@@ -8,13 +9,25 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.junit.runners.BlockJUnit4ClassRunner;
+import pl.mrugames.commons.router.exceptions.FrameLimitExceededException;
+import pl.mrugames.commons.router.request_handlers.JsonBatchRequest;
+import pl.mrugames.commons.router.request_handlers.JsonRequest;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 
 @RunWith(BlockJUnit4ClassRunner.class)
 public class JsonFrameTranslatorSpec {
     private ObjectMapper objectMapper;
+    private MetricRegistry metricRegistry;
     private JsonFrameTranslator jsonFrameTranslator;
+    private Router router;
 
     @Rule
     public final ExpectedException expectedException = ExpectedException.none();
@@ -22,7 +35,9 @@ public class JsonFrameTranslatorSpec {
     @Before
     public void before() {
         objectMapper = new ObjectMapper();
-        jsonFrameTranslator = new JsonFrameTranslator(objectMapper);
+        metricRegistry = new MetricRegistry();
+        router = mock(Router.class, invocation -> null);
+        jsonFrameTranslator = new JsonFrameTranslator(objectMapper, new FrameLimits(metricRegistry, 1000, 3, 4), router);
     }
 
     @Test
@@ -52,4 +67,201 @@ public class JsonFrameTranslatorSpec {
         assertThat(jsonFrameTranslator.recognize(str)).isEqualTo(Request.class);
     }
 
+    @Test
+    public void whenTranslateRequest_thenReadEnvelopeAndKeepPayloadTokens() throws IOException {
+        String str = "{\"payload\":{\"a\":[1,2],\"b\":\"x\"},\"unknown\":{\"c\":1},\"id\":5,\"route\":\"app/route\",\"requestMethod\":\"POST\"}";
+
+        JsonRequest request = (JsonRequest) jsonFrameTranslator.translateToRequestOrResponse(str);
+
+        assertThat(request.getId()).isEqualTo(5);
+        assertThat(request.getRoute()).isEqualTo("app/route");
+        assertThat(request.getRequestMethod()).isEqualTo(RequestMethod.POST);
+        assertThat(request.getRequestType()).isEqualTo(RequestType.STANDARD);
+        assertThat(request.getRawJson()).isEqualTo(str);
+        assertThat(objectMapper.readTree(request.getPayloadParser()).toString()).isEqualTo("{\"a\":[1,2],\"b\":\"x\"}");
+    }
+
+    @Test
+    public void whenTranslateCloseStream_thenRequestWithoutPayload() {
+        String str = "{\"id\":700,\"requestType\":\"CLOSE_STREAM\"}";
+
+        JsonRequest request = (JsonRequest) jsonFrameTranslator.translateToRequestOrResponse(str);
+
+        assertThat(request.getRequestType()).isEqualTo(RequestType.CLOSE_STREAM);
+        assertThat(request.getPayloadParser()).isNull();
+    }
+
+    @Test
+    public void whenTranslateResponse_thenReadPayload() throws JsonProcessingException {
+        Response response = new Response(3, ResponseStatus.STREAM, Collections.singletonMap("key", "value"));
+
+        Object result = jsonFrameTranslator.translateToRequestOrResponse(objectMapper.writeValueAsString(response));
+
+        assertThat(result).isEqualTo(response);
+    }
+
+    @Test
+    public void whenFrameIsNotObject_thenException() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Failed to recognize frame: 1");
+        jsonFrameTranslator.translateToRequestOrResponse("1");
+    }
+
+    @Test
+    public void whenFrameExceedsSize_thenRejectBeforeParsing() {
+        StringBuilder frame = new StringBuilder("{\"id\":1,\"route\":\"app/route\",\"requestMethod\":\"GET\",\"payload\":\"");
+        for (int i = 0; i < 1000; ++i) {
+            frame.append('x');
+        }
+
+        JsonRequest request = (JsonRequest) jsonFrameTranslator.translateToRequestOrResponse(frame.append("\"}").toString());
+
+        assertThat(request.getId()).isEqualTo(-1);
+        assertThat(request.getLimitViolation()).hasMessageContaining("exceeds the limit of 1000 bytes");
+        assertThat(metricRegistry.counter(MetricRegistry.name(FrameLimits.class, "frames_too_large")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void whenTextFrameExceedsSizeInUtf8Bytes_thenReject() {
+        StringBuilder frame = new StringBuilder("{\"id\":1,\"route\":\"app/route\",\"requestMethod\":\"GET\",\"payload\":\"");
+        for (int i = 0; i < 470; ++i) {
+            frame.append('ą');
+        }
+        frame.append("\"}");
+
+        assertThat(frame.length()).isLessThan(1000);
+        assertThat(((JsonRequest) jsonFrameTranslator.translateToRequestOrResponse(frame.toString())).getLimitViolation())
+                .hasMessage("Frame of 1003 bytes exceeds the limit of 1000 bytes");
+    }
+
+    @Test
+    public void whenPayloadIsTooDeep_thenRequestWithoutPayloadButWithViolation() {
+        String str = "{\"payload\":{\"a\":[{\"b\":[1]}]},\"id\":5,\"route\":\"app/route\",\"requestMethod\":\"POST\"}";
+
+        JsonRequest request = (JsonRequest) jsonFrameTranslator.translateToRequestOrResponse(str);
+
+        assertThat(request.getId()).isEqualTo(5);
+        assertThat(request.getRoute()).isEqualTo("app/route");
+        assertThat(request.getPayloadParser()).isNull();
+        assertThat(request.getLimitViolation()).hasMessage("Payload exceeds the nesting limit of 3");
+        assertThat(metricRegistry.counter(MetricRegistry.name(FrameLimits.class, "payloads_too_deep")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void whenArrayIsTooLong_thenRequestWithViolation() {
+        String str = "{\"id\":5,\"payload\":{\"a\":[[1,2],{},3,4,5,6]},\"route\":\"app/route\",\"requestMethod\":\"POST\"}";
+
+        JsonRequest request = (JsonRequest) jsonFrameTranslator.translateToRequestOrResponse(str);
+
+        assertThat(request.getRequestMethod()).isEqualTo(RequestMethod.POST);
+        assertThat(request.getLimitViolation()).hasMessage("Array of the payload exceeds the limit of 4 elements");
+        assertThat(metricRegistry.counter(MetricRegistry.name(FrameLimits.class, "arrays_too_long")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void whenPayloadIsWithinLimits_thenNoViolation() throws IOException {
+        String str = "{\"id\":5,\"payload\":{\"a\":[[1,2],{},3,4]},\"route\":\"app/route\",\"requestMethod\":\"POST\"}";
+
+        JsonRequest request = (JsonRequest) jsonFrameTranslator.translateToRequestOrResponse(str);
+
+        assertThat(request.getLimitViolation()).isNull();
+        assertThat(objectMapper.readTree(request.getPayloadParser()).toString()).isEqualTo("{\"a\":[[1,2],{},3,4]}");
+    }
+
+    @Test
+    public void whenResponsePayloadExceedsLimits_thenException() {
+        expectedException.expect(FrameLimitExceededException.class);
+        jsonFrameTranslator.translateToRequestOrResponse("{\"id\":1,\"status\":\"OK\",\"payload\":[[[[1]]]]}");
+    }
+
+    @Test
+    public void whenArrayFrame_thenBatchOfRequests() throws IOException {
+        String str = "[{\"id\":1,\"route\":\"a\",\"requestMethod\":\"GET\",\"payload\":{\"x\":1}},{\"id\":2,\"requestType\":\"CLOSE_STREAM\"},3]";
+
+        JsonBatchRequest batch = (JsonBatchRequest) jsonFrameTranslator.translateToRequestOrResponse(str);
+
+        assertThat(batch.isConcurrent()).isFalse();
+        assertThat(batch.isSeparateResponses()).isFalse();
+        assertThat(batch.getRequests()).hasSize(3);
+        assertThat(batch.getRequests().get(0).getRoute()).isEqualTo("a");
+        assertThat(objectMapper.readTree(batch.getRequests().get(0).getPayloadParser()).toString()).isEqualTo("{\"x\":1}");
+        assertThat(batch.getRequests().get(1).getRequestType()).isEqualTo(RequestType.CLOSE_STREAM);
+        assertThat(batch.getRequests().get(2).getId()).isEqualTo(-1);
+    }
+
+    @Test
+    public void whenBatchObject_thenReadOptions() {
+        String str = "{\"separateResponses\":true,\"batch\":[{\"id\":1,\"route\":\"a\",\"requestMethod\":\"GET\",\"batch\":[{\"id\":2}]}],\"concurrent\":true}";
+
+        JsonBatchRequest batch = (JsonBatchRequest) jsonFrameTranslator.translateToRequestOrResponse(str);
+
+        assertThat(batch.isConcurrent()).isTrue();
+        assertThat(batch.isSeparateResponses()).isTrue();
+        assertThat(batch.getRequests()).hasSize(1);
+        assertThat(batch.getRequests().get(0)).isNotInstanceOf(JsonBatchRequest.class);
+    }
+
+    @Test
+    public void whenBatchExceedsArrayLimit_thenRejectedRequest() {
+        JsonRequest request = (JsonRequest) jsonFrameTranslator.translateToRequestOrResponse("[{},{},{},{},{}]");
+
+        assertThat(request).isNotInstanceOf(JsonBatchRequest.class);
+        assertThat(request.getId()).isEqualTo(-1);
+        assertThat(request.getLimitViolation()).hasMessage("Array of the payload exceeds the limit of 4 elements");
+    }
+
+    @Test
+    public void givenRouteBeforePayload_thenSkipFieldsWhichAreNotBound() throws IOException {
+        doReturn(new HashSet<>(Arrays.asList("a", "c"))).when(router).getPayloadFields("app/test", RequestMethod.GET);
+        String str = "{\"id\":1,\"route\":\"app/test\",\"requestMethod\":\"GET\",\"payload\":{\"a\":{\"x\":1},\"b\":[[[[1]]]],\"c\":2}}";
+
+        JsonRequest request = (JsonRequest) jsonFrameTranslator.translateToRequestOrResponse(str);
+
+        assertThat(request.getLimitViolation()).isNull();
+        assertThat(objectMapper.readTree(request.getPayloadParser()).toString()).isEqualTo("{\"a\":{\"x\":1},\"c\":2}");
+    }
+
+    @Test
+    public void givenRouteAfterPayload_thenCaptureWholePayload() throws IOException {
+        doReturn(Collections.singleton("a")).when(router).getPayloadFields("app/test", RequestMethod.GET);
+        String str = "{\"id\":1,\"payload\":{\"a\":1,\"b\":2},\"route\":\"app/test\",\"requestMethod\":\"GET\"}";
+
+        JsonRequest request = (JsonRequest) jsonFrameTranslator.translateToRequestOrResponse(str);
+
+        assertThat(objectMapper.readTree(request.getPayloadParser()).toString()).isEqualTo("{\"a\":1,\"b\":2}");
+    }
+
+    @Test
+    public void givenBoundFieldExceedsLimits_thenViolationAndRestOfEnvelopeIsRead() {
+        doReturn(Collections.singleton("a")).when(router).getPayloadFields("app/test", RequestMethod.GET);
+        String str = "{\"route\":\"app/test\",\"requestMethod\":\"GET\",\"payload\":{\"a\":[[[1]]],\"b\":2},\"id\":7}";
+
+        JsonRequest request = (JsonRequest) jsonFrameTranslator.translateToRequestOrResponse(str);
+
+        assertThat(request.getId()).isEqualTo(7);
+        assertThat(request.getLimitViolation()).isNotNull();
+        assertThat(request.getPayloadParser()).isNull();
+    }
+
+    @Test
+    public void givenBatchWithInvalidEntry_thenErrorIsKeptInThatEntry() {
+        String str = "[{\"id\":{\"x\":1},\"route\":\"a\",\"requestMethod\":\"GET\"},{\"id\":2,\"route\":\"b\",\"requestMethod\":\"GET\"}]";
+
+        JsonBatchRequest batch = (JsonBatchRequest) jsonFrameTranslator.translateToRequestOrResponse(str);
+
+        assertThat(batch.getRequests().get(0).getReadError()).hasMessage("Unexpected token of 'id': START_OBJECT");
+        assertThat(batch.getRequests().get(0).getRoute()).isEqualTo("a");
+        assertThat(batch.getRequests().get(1).getReadError()).isNull();
+        assertThat(batch.getRequests().get(1).getId()).isEqualTo(2);
+    }
+
+    @Test
+    public void whenTranslateCredits_thenRequestWithPayload() throws IOException {
+        String str = "{\"id\":700,\"requestType\":\"CREDITS\",\"payload\":16}";
+
+        JsonRequest request = (JsonRequest) jsonFrameTranslator.translateToRequestOrResponse(str);
+
+        assertThat(request.getRequestType()).isEqualTo(RequestType.CREDITS);
+        assertThat(objectMapper.readTree(request.getPayloadParser()).toString()).isEqualTo("16");
+    }
 }
@@ -0,0 +1,66 @@
+package pl.mrugames.commons.router;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class MergePatchSpec {
+    private Map<String, Object> map(Object... keysAndValues) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            map.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+
+        return map;
+    }
+
+    @Test
+    public void givenNoSource_thenPatchIsTargetWithoutNulls() {
+        Object patch = MergePatch.diff(null, map("a", 1, "b", null, "c", map("d", null)));
+
+        assertThat(patch).isEqualTo(map("a", 1, "c", Collections.emptyMap()));
+    }
+
+    @Test
+    public void givenChangedFields_thenPatchContainsOnlyThem() {
+        Map<String, Object> source = map("hp", 100, "name", "orc", "position", map("x", 1, "y", 2), "items", Arrays.asList(1, 2), "target", "player");
+        Map<String, Object> target = map("hp", 90, "name", "orc", "position", map("x", 1, "y", 3), "items", Arrays.asList(1, 2, 3), "target", null);
+
+        Object patch = MergePatch.diff(source, target);
+
+        assertThat(patch).isEqualTo(map("hp", 90, "position", map("y", 3), "items", Arrays.asList(1, 2, 3), "target", null));
+        assertThat(MergePatch.apply(source, patch)).isEqualTo(map("hp", 90, "name", "orc", "position", map("x", 1, "y", 3), "items", Arrays.asList(1, 2, 3)));
+    }
+
+    @Test
+    public void givenRemovedField_thenPatchRemovesIt() {
+        Object patch = MergePatch.diff(map("a", 1, "b", 2), map("a", 1));
+
+        assertThat(patch).isEqualTo(map("b", null));
+        assertThat(MergePatch.apply(map("a", 1, "b", 2), patch)).isEqualTo(map("a", 1));
+    }
+
+    @Test
+    public void givenValuesWhichAreNotObjects_thenReplacedWhole() {
+        assertThat(MergePatch.diff(map("a", 1), 5)).isEqualTo(5);
+        assertThat(MergePatch.apply(map("a", 1), 5)).isEqualTo(5);
+        assertThat(MergePatch.apply(5, map("a", 1))).isEqualTo(map("a", 1));
+    }
+
+    @Test
+    public void whenApply_thenTargetIsNotModified() {
+        Map<String, Object> target = map("a", map("b", 1));
+
+        MergePatch.apply(target, map("a", map("b", 2)));
+
+        assertThat(target).isEqualTo(map("a", map("b", 1)));
+    }
+}
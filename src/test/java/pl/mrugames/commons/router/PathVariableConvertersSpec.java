@@ -0,0 +1,59 @@
+package pl.mrugames.commons.router;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class PathVariableConvertersSpec {
+    @Rule
+    public final ExpectedException expectedException = ExpectedException.none();
+
+    private Object convert(Class<?> type, String value) {
+        return PathVariableConverters.forType(type).convert(value);
+    }
+
+    @Test
+    public void givenPrimitiveTypes_whenConvert_thenReturnBoxedValues() {
+        assertThat(convert(int.class, "12")).isEqualTo(12);
+        assertThat(convert(long.class, "12")).isEqualTo(12L);
+        assertThat(convert(double.class, "1.5")).isEqualTo(1.5);
+        assertThat(convert(boolean.class, "true")).isEqualTo(true);
+        assertThat(convert(Integer.class, "-3")).isEqualTo(-3);
+    }
+
+    @Test
+    public void givenUuid_whenConvert_thenParseIt() {
+        UUID uuid = UUID.randomUUID();
+        assertThat(convert(UUID.class, uuid.toString())).isEqualTo(uuid);
+    }
+
+    @Test
+    public void givenEnum_whenConvert_thenReturnConstant() {
+        assertThat(convert(RequestMethod.class, "POST")).isEqualTo(RequestMethod.POST);
+    }
+
+    @Test
+    public void givenTypeWithStringConstructor_whenConvert_thenUseIt() {
+        assertThat(convert(BigDecimal.class, "1.25")).isEqualTo(new BigDecimal("1.25"));
+    }
+
+    @Test
+    public void givenIncompatibleValue_whenConvert_thenException() {
+        expectedException.expect(NumberFormatException.class);
+        convert(long.class, "abc");
+    }
+
+    @Test
+    public void givenTypeWithoutStringConstructor_thenNoConverter() {
+        assertThat(PathVariableConverters.forType(Object.class)).isNull();
+        assertThat(PathVariableConverters.forType(char.class)).isNull();
+    }
+}
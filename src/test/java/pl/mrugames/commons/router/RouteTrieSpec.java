@@ -0,0 +1,159 @@
+package pl.mrugames.commons.router;
+
+import org.assertj.core.data.MapEntry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class RouteTrieSpec {
+    private RouteTrie trie;
+
+    @Rule
+    public final ExpectedException expectedException = ExpectedException.none();
+
+    @Before
+    public void before() {
+        trie = new RouteTrie(new AntPathMatcher());
+    }
+
+    private RouteInfo add(String pattern) {
+        RouteInfo routeInfo = new RouteInfo(null, null, Collections.emptyList(), "GET:" + pattern, null);
+        trie.add(pattern, routeInfo);
+        return routeInfo;
+    }
+
+    private RouteInfo find(String route) {
+        RouteMatch routeMatch = trie.find(route);
+        return routeMatch != null ? routeMatch.getRouteInfo() : null;
+    }
+
+    @Test
+    public void givenLiteralRoute_whenFind_thenReturnIt() {
+        RouteInfo routeInfo = add("app/test/route1");
+        add("app/test/route2");
+
+        assertThat(find("app/test/route1")).isSameAs(routeInfo);
+    }
+
+    @Test
+    public void givenNoMatchingRoute_whenFind_thenNull() {
+        add("app/test/route1");
+
+        assertThat(trie.find("app/test")).isNull();
+        assertThat(trie.find("app/test/route1/more")).isNull();
+        assertThat(trie.find("xxx")).isNull();
+    }
+
+    @Test
+    public void givenLiteralAndVariable_whenFind_thenLiteralWins() {
+        RouteInfo variable = add("player/{playerId}");
+        RouteInfo literal = add("player/me");
+
+        assertThat(find("player/me")).isSameAs(literal);
+        assertThat(find("player/10")).isSameAs(variable);
+    }
+
+    @Test
+    public void givenVariableAndWildcards_whenFind_thenMostSpecificWins() {
+        RouteInfo deepWildcard = add("player/**");
+        add("player/*");
+        RouteInfo variable = add("player/{playerId}");
+
+        assertThat(find("player/10")).isSameAs(variable);
+        assertThat(find("player/10/exp")).isSameAs(deepWildcard);
+    }
+
+    @Test
+    public void givenSegmentPattern_whenFind_thenItIsPreferredOverVariable() {
+        RouteInfo variable = add("player/{playerId}");
+        RouteInfo pattern = add("player/{playerId:[0-9]+}");
+
+        assertThat(find("player/10")).isSameAs(pattern);
+        assertThat(find("player/abc")).isSameAs(variable);
+    }
+
+    @Test
+    public void givenDeadEndInMoreSpecificBranch_whenFind_thenBacktrack() {
+        add("player/me/settings");
+        RouteInfo variable = add("player/{playerId}/state");
+
+        assertThat(find("player/me/state")).isSameAs(variable);
+    }
+
+    @Test
+    public void givenDeepWildcard_whenFind_thenMatchesZeroOrMoreSegments() {
+        RouteInfo routeInfo = add("files/**/content");
+
+        assertThat(find("files/content")).isSameAs(routeInfo);
+        assertThat(find("files/a/b/c/content")).isSameAs(routeInfo);
+        assertThat(trie.find("files/a/b/c")).isNull();
+    }
+
+    @Test
+    public void givenEmptyPattern_whenFindEmptyRoute_thenReturnIt() {
+        RouteInfo routeInfo = add("");
+
+        assertThat(find("")).isSameAs(routeInfo);
+    }
+
+    @Test
+    public void givenVariables_whenFind_thenCaptureThem() {
+        add("player/{playerId}/add/{exp}");
+
+        assertThat(trie.find("player/10/add/15").getPathVariables()).containsOnly(
+                MapEntry.entry("playerId", "10"),
+                MapEntry.entry("exp", "15")
+        );
+    }
+
+    @Test
+    public void givenVariables_whenGetPathVariable_thenReturnMatchedSegment() {
+        add("player/{playerId}/file/{name}.{extension}");
+
+        RouteMatch routeMatch = trie.find("player/10/file/report.pdf");
+
+        assertThat(routeMatch.getPathVariable("playerId")).isEqualTo("10");
+        assertThat(routeMatch.getPathVariable("extension")).isEqualTo("pdf");
+        assertThat(routeMatch.getPathVariable("unknown")).isNull();
+    }
+
+    @Test
+    public void givenVariablesAfterDeepWildcard_whenFind_thenCaptureThem() {
+        add("files/**/{name}.{extension}");
+
+        assertThat(trie.find("files/a/b/report.pdf").getPathVariables()).containsOnly(
+                MapEntry.entry("name", "report"),
+                MapEntry.entry("extension", "pdf")
+        );
+    }
+
+    @Test
+    public void givenBacktracking_whenFind_thenCaptureOnlyValuesOfMatchedBranch() {
+        add("player/{playerId}/settings");
+        add("{group}/{id}/state");
+
+        assertThat(trie.find("player/me/state").getPathVariables()).containsOnly(
+                MapEntry.entry("group", "player"),
+                MapEntry.entry("id", "me")
+        );
+    }
+
+    @Test
+    public void givenVariablesWithDifferentNames_whenAddSamePath_thenException() {
+        add("player/{playerId}");
+
+        expectedException.expect(IllegalStateException.class);
+        expectedException.expectMessage("Route GET:player/{id} collides with GET:player/{playerId}");
+
+        add("player/{id}");
+    }
+}
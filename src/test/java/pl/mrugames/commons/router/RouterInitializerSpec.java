@@ -1,12 +1,16 @@
 package pl.mrugames.commons.router;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.support.AnnotationConfigContextLoader;
 import pl.mrugames.commons.router.annotations.ArgDefaultValue;
+import pl.mrugames.commons.router.annotations.StreamCoalescing;
+import pl.mrugames.commons.router.annotations.StreamDelta;
 import pl.mrugames.commons.router.controllers.TestController;
 
 import java.lang.reflect.InvocationTargetException;
@@ -19,6 +23,9 @@ import static org.assertj.core.api.Assertions.assertThat;
         TestConfiguration.class
 })
 public class RouterInitializerSpec {
+    @Rule
+    public final ExpectedException expectedException = ExpectedException.none();
+
     @Autowired
     private RouterInitializer initializer;
 
@@ -134,4 +141,28 @@ public class RouterInitializerSpec {
         List<RouteParameter> parameters = routeInfo.getParameters();
         assertThat(parameters.get(0).getParameterType()).isEqualTo(RouteParameter.ParameterType.PATH_VAR);
     }
+
+    @Test
+    public void givenBodyParameter_thenItIsRequiredBodyWithReader() {
+        RouteInfo routeInfo = initializer.getRoutes().get("GET:app/test/body");
+        RouteParameter body = routeInfo.getBodyParameter();
+
+        assertThat(body.getParameterType()).isEqualTo(RouteParameter.ParameterType.BODY);
+        assertThat(body.getDefaultValue()).isEqualTo(ArgDefaultValue.ARG_NULL_DEFAULT_VALUE);
+        assertThat(body.getReader()).isNotNull();
+        assertThat(routeInfo.getArgParameters()).isEmpty();
+    }
+
+    @StreamDelta
+    @StreamCoalescing
+    private void coalescedDeltas() {
+    }
+
+    @Test
+    public void givenStreamDeltaWithCoalescing_thenException() throws NoSuchMethodException {
+        expectedException.expect(IllegalStateException.class);
+        expectedException.expectMessage("StreamCoalescing is not allowed together with StreamDelta");
+
+        initializer.checkStreamAnnotations(this, getClass().getDeclaredMethod("coalescedDeltas"));
+    }
 }
@@ -1,5 +1,8 @@
 package pl.mrugames.commons.router;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import org.assertj.core.data.MapEntry;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -10,14 +13,15 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import pl.mrugames.commons.router.arg_resolvers.RequestPayloadArgumentResolver;
+import pl.mrugames.commons.router.arg_resolvers.SessionArgumentResolver;
 import pl.mrugames.commons.router.controllers.UserModel;
+import pl.mrugames.commons.router.controllers.TestController;
 import pl.mrugames.commons.router.exceptions.RouteConstraintViolationException;
+import pl.mrugames.commons.router.sessions.Session;
 
-import java.lang.reflect.InvocationTargetException;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Optional;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 
@@ -29,9 +33,24 @@ public class RouterSpec {
     @Autowired
     private Router router;
 
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    @Autowired
+    private RequestPayloadArgumentResolver requestPayloadArgumentResolver;
+
+    @Autowired
+    private SessionArgumentResolver sessionArgumentResolver;
+
     @Rule
     public final ExpectedException expectedException = ExpectedException.none();
 
+    private Object[] resolveSession(Session session, RouteInfo routeInfo) {
+        Object[] args = routeInfo.newArguments();
+        sessionArgumentResolver.resolve(session, routeInfo, args);
+        return args;
+    }
+
     @Test
     public void whenFindRoute_thenReturnProperRouteInfo() {
         RouteInfo routeInfo = router.findRoute("app/test/route1", RequestMethod.GET);
@@ -39,6 +58,65 @@ public class RouterSpec {
         assertThat(routeInfo.getRoutePattern()).isEqualTo("GET:app/test/route1");
     }
 
+    @Test
+    public void whenMatch_thenReturnCapturedPathVariables() {
+        RouteMatch routeMatch = router.match("app/test/player/10/add/5", RequestMethod.GET);
+        assertThat(routeMatch.getRouteInfo().getRoutePattern()).isEqualTo("GET:app/test/player/{playerId}/add/{exp}");
+        assertThat(routeMatch.getPathVariables()).containsOnly(
+                MapEntry.entry("playerId", "10"),
+                MapEntry.entry("exp", "5")
+        );
+    }
+
+    @Test
+    public void givenRouteCacheEnabled_whenMatchSameRouteTwice_thenSecondMatchIsCached() {
+        Counter hits = metricRegistry.counter(MetricRegistry.name(Router.class, "route_cache_hits"));
+        Counter misses = metricRegistry.counter(MetricRegistry.name(Router.class, "route_cache_misses"));
+        long hitsBefore = hits.getCount();
+        long missesBefore = misses.getCount();
+
+        RouteMatch first = router.match("app/test/player/987654/add/1", RequestMethod.GET);
+        RouteMatch second = router.match("app/test/player/987654/add/1", RequestMethod.GET);
+
+        assertThat(second).isSameAs(first);
+        assertThat(misses.getCount() - missesBefore).isEqualTo(1);
+        assertThat(hits.getCount() - hitsBefore).isEqualTo(1);
+    }
+
+    @Test
+    public void givenRouteCacheEnabled_whenMatchSameRouteWithDifferentMethod_thenDoNotMixThem() {
+        assertThat(router.match("app/test/route1", RequestMethod.GET).getRouteInfo().getRoutePattern()).isEqualTo("GET:app/test/route1");
+        assertThat(router.match("app/test/route1", RequestMethod.POST).getRouteInfo().getRoutePattern()).isEqualTo("POST:app/test/route1");
+    }
+
+    @Test
+    public void givenRouteCacheEnabled_whenMatchManyDistinctRoutes_thenEvictOldEntries() {
+        Counter evictions = metricRegistry.counter(MetricRegistry.name(Router.class, "route_cache_evictions"));
+        long evictionsBefore = evictions.getCount();
+
+        for (int i = 0; i < 250; ++i) {
+            router.match("app/test/player/" + i, RequestMethod.GET);
+        }
+
+        assertThat(evictions.getCount() - evictionsBefore).isGreaterThanOrEqualTo(150);
+    }
+
+    @Test
+    public void givenNoRoute_whenMatch_thenExceptionAndNothingIsCached() {
+        Counter misses = metricRegistry.counter(MetricRegistry.name(Router.class, "route_cache_misses"));
+        long missesBefore = misses.getCount();
+
+        for (int i = 0; i < 2; ++i) {
+            try {
+                router.match("xxx", RequestMethod.DELETE);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+        assertThat(misses.getCount() - missesBefore).isEqualTo(2);
+    }
+
     @Test
     public void givenNoRoute_whenFindRoute_thenException() {
         expectedException.expect(IllegalArgumentException.class);
@@ -48,116 +126,130 @@ public class RouterSpec {
     }
 
     @Test
-    public void givenRouteWithoutArguments_whenNavigate_thenReturnValueFromController() throws InvocationTargetException, IllegalAccessException {
+    public void givenRouteWithoutArguments_whenNavigate_thenReturnValueFromController() throws IllegalAccessException {
         RouteInfo routeInfo = router.findRoute("app/test/route1", RequestMethod.GET);
 
-        Object result = router.navigate(routeInfo, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+        Object result = router.navigate(routeInfo, new Object[0]);
         assertThat(result).isEqualTo("route1");
     }
 
     @Test
-    public void givenRouteWithPathArgs_whenNavigate_thenExtractParameters() throws InvocationTargetException, IllegalAccessException {
+    public void givenRouteWithPathArgs_whenNavigate_thenExtractParameters() throws IllegalAccessException {
         RouteInfo routeInfo = router.findRoute("app/test/player/10", RequestMethod.GET);
 
-        Object result = router.navigate(routeInfo, Collections.singletonMap("playerId", 10), Collections.emptyMap(), Collections.emptyMap());
+        Object result = router.navigate(routeInfo, new Object[]{10});
         assertThat(result).isEqualTo(11);
     }
 
     @Test
-    public void givenRouteWithPathArg_whenNavigateWithMissingParameter_thenException() throws InvocationTargetException, IllegalAccessException {
+    public void givenRouteWithPathArg_whenNavigateWithMissingParameter_thenException() throws IllegalAccessException {
         RouteInfo routeInfo = router.findRoute("app/test/player/10", RequestMethod.GET);
 
         expectedException.expect(IllegalArgumentException.class);
-        router.navigate(routeInfo, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+        router.navigate(routeInfo, routeInfo.newArguments());
     }
 
     @Test
-    public void givenRouteWithArgs_whenRequest_thenResolveArgs() throws InvocationTargetException, IllegalAccessException {
+    public void givenRouteWithArgs_whenRequest_thenResolveArgs() throws IllegalAccessException {
         RouteInfo routeInfo = router.findRoute("app/test/concat", RequestMethod.GET);
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("a", 6);
-        payload.put("b", "a string");
-        payload.put("c", 0.2);
-        payload.put("d", "end");
 
-        Object result = router.navigate(routeInfo, Collections.emptyMap(), payload, Collections.emptyMap());
+        Object result = router.navigate(routeInfo, new Object[]{6, "a string", 0.2, "end"});
 
         assertThat(result).isEqualTo("6a string0.2end");
     }
 
     @Test
-    public void givenRouteWithArgsAndDefaultValue_whenRequestWithoutDefaultArguments_thenResolveDefaults() throws InvocationTargetException, IllegalAccessException {
+    public void givenRouteWithArgsAndDefaultValue_whenRequestWithoutDefaultArguments_thenResolveDefaults() throws IllegalAccessException {
         RouteInfo routeInfo = router.findRoute("app/test/concat", RequestMethod.GET);
         Map<String, Object> payload = new HashMap<>();
         payload.put("a", 6);
         payload.put("b", "a string");
         payload.put("c", 0.2);
 
-        Object result = router.navigate(routeInfo, Collections.emptyMap(), payload, Collections.emptyMap());
+        Object[] args = routeInfo.newArguments();
+        requestPayloadArgumentResolver.resolve(payload, routeInfo, args);
+
+        Object result = router.navigate(routeInfo, args);
 
         assertThat(result).isEqualTo("6a string0.2last");
     }
 
     @Test
-    public void givenRouteWithArgs_whenRequestWithoutArgs_thenException() throws InvocationTargetException, IllegalAccessException {
+    public void givenRouteWithArgs_whenNavigateWithWrongNumberOfArgs_thenException() throws IllegalAccessException {
         RouteInfo routeInfo = router.findRoute("app/test/concat", RequestMethod.GET);
 
         expectedException.expect(IllegalArgumentException.class);
-        expectedException.expectMessage("Missing argument: a");
+        expectedException.expectMessage("wrong number of arguments");
+
+        router.navigate(routeInfo, new Object[]{6, "a string"});
+    }
+
+    @Test
+    public void givenRouteWithArgs_whenRequestWithArgOfWrongType_thenException() throws IllegalAccessException {
+        RouteInfo routeInfo = router.findRoute("app/test/player/10", RequestMethod.GET);
+
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("argument type mismatch");
 
-        router.navigate(routeInfo, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+        router.navigate(routeInfo, new Object[]{"10"});
     }
 
     @Test
-    public void givenRouteWithSessionArgs_whenRequest_thenArgumentsAreResolved() throws InvocationTargetException, IllegalAccessException {
+    public void givenControllerThrowsCheckedException_whenNavigate_thenWrapIt() throws IllegalAccessException {
+        RouteInfo routeInfo = router.findRoute("app/test/checked-exception", RequestMethod.GET);
+
+        expectedException.expect(RouteExceptionWrapper.class);
+
+        try {
+            router.navigate(routeInfo, new Object[0]);
+        } catch (RouteExceptionWrapper e) {
+            assertThat(e.getCause()).hasMessage("checked");
+            throw e;
+        }
+    }
+
+    @Test
+    public void givenRouteWithSessionArgs_whenRequest_thenArgumentsAreResolved() throws IllegalAccessException {
         RouteInfo routeInfo = router.findRoute("app/test/account/username", RequestMethod.GET);
-        Map<Class<?>, Optional<Object>> session = new HashMap<>();
-        session.put(UserModel.class, Optional.of(new UserModel("Mariusz", 1)));
+        Session session = new Session();
+        session.add(new UserModel("Mariusz", 1));
 
-        Object result = router.navigate(routeInfo, Collections.emptyMap(), Collections.emptyMap(), session);
+        Object result = router.navigate(routeInfo, resolveSession(session, routeInfo));
 
         assertThat(result).isEqualTo("Mariusz");
     }
 
     @Test
-    public void givenRouteWithSessionArgs_whenSessionDoesNotHaveObject_thenResolveWithNull() throws InvocationTargetException, IllegalAccessException {
+    public void givenRouteWithSessionArgs_whenSessionDoesNotHaveObject_thenResolveWithNull() throws IllegalAccessException {
         RouteInfo routeInfo = router.findRoute("app/test/re-return-obj", RequestMethod.GET);
-        Map<Class<?>, Optional<Object>> session = new HashMap<>();
-        session.put(UserModel.class, Optional.empty());
 
-        Object result = router.navigate(routeInfo, Collections.emptyMap(), Collections.emptyMap(), session);
+        Object result = router.navigate(routeInfo, resolveSession(new Session(), routeInfo));
 
         assertThat(result).isSameAs(Mono.NO_VAL);
     }
 
     @Test
-    public void givenRouteWithSessionArgs_whenSessionDoesNotHavePrimitive_thenResolveWithDefault() throws InvocationTargetException, IllegalAccessException {
+    public void givenRouteWithSessionArgs_whenSessionDoesNotHavePrimitive_thenResolveWithDefault() throws IllegalAccessException {
         RouteInfo routeInfo = router.findRoute("app/test/re-return-int", RequestMethod.GET);
-        Map<Class<?>, Optional<Object>> session = new HashMap<>();
-        session.put(int.class, Optional.empty());
-        session.put(boolean.class, Optional.empty());
+        Session session = new Session();
 
-        Object result = router.navigate(routeInfo, Collections.emptyMap(), Collections.emptyMap(), session);
+        Object result = router.navigate(routeInfo, resolveSession(session, routeInfo));
 
         assertThat(result).isEqualTo(0);
 
         routeInfo = router.findRoute("app/test/re-return-bool", RequestMethod.GET);
-        result = router.navigate(routeInfo, Collections.emptyMap(), Collections.emptyMap(), session);
+        result = router.navigate(routeInfo, resolveSession(session, routeInfo));
         assertThat(result).isEqualTo(false);
     }
 
     @Test
-    public void validationTest() throws InvocationTargetException, IllegalAccessException {
-        Map<String, Object> pathParams = new HashMap<>();
-        pathParams.put("a", -1);
-        pathParams.put("b", 3);
-
+    public void validationTest() throws IllegalAccessException {
         RouteInfo routeInfo = router.findRoute("app/test/validation/-1/3", RequestMethod.GET);
 
         expectedException.expect(RouteConstraintViolationException.class);
 
         try {
-            router.navigate(routeInfo, pathParams, Collections.emptyMap(), Collections.emptyMap());
+            router.navigate(routeInfo, new Object[]{-1, 3});
         } catch (RouteConstraintViolationException e) {
             assertThat(e.getMessages()).containsExactlyInAnyOrder(
                     "a: must be greater than or equal to 0",
@@ -175,20 +267,17 @@ public class RouterSpec {
 
         expectedException.expect(AccessDeniedException.class);
 
-        router.navigate(routeInfo, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+        router.navigate(routeInfo, new Object[0]);
     }
 
     @Test
     public void givenControllerIsNotValidated_butServiceIs_whenPassWrongArgs_thenExceptionWithProperMessage() throws IllegalAccessException {
-        Map<String, Object> pathParams = new HashMap<>();
-        pathParams.put("a", -1);
-
         RouteInfo routeInfo = router.findRoute("app/test/validate-deeper/-1", RequestMethod.GET);
 
         expectedException.expect(RouteConstraintViolationException.class);
 
         try {
-            router.navigate(routeInfo, pathParams, Collections.emptyMap(), Collections.emptyMap());
+            router.navigate(routeInfo, new Object[]{-1});
         } catch (RouteConstraintViolationException e) {
             assertThat(e.getMessages()).containsExactly(
                     "value '-1' must be greater than or equal to 0"
@@ -200,16 +289,12 @@ public class RouterSpec {
 
     @Test
     public void givenNestedServiceIsValidated_whenPassWrongArguments_thenException() throws IllegalAccessException {
-        Map<String, Object> pathParams = new HashMap<>();
-        pathParams.put("a", 1);
-        pathParams.put("b", -1);
-
         RouteInfo routeInfo = router.findRoute("app/test/validate-deeper2/1/-1", RequestMethod.GET);
 
         expectedException.expect(RouteConstraintViolationException.class);
 
         try {
-            router.navigate(routeInfo, pathParams, Collections.emptyMap(), Collections.emptyMap());
+            router.navigate(routeInfo, new Object[]{1, -1});
         } catch (RouteConstraintViolationException e) {
             assertThat(e.getMessages()).containsExactlyInAnyOrder(
                     "value '1' must be less than or equal to 0",
@@ -219,4 +304,33 @@ public class RouterSpec {
             throw e;
         }
     }
+
+    @Test
+    public void givenInvalidBody_thenMessagesWithPropertyPaths() throws IllegalAccessException {
+        RouteInfo routeInfo = router.findRoute("app/test/body", RequestMethod.GET);
+
+        TestController.BodyDTO body = new TestController.BodyDTO();
+        body.setCount(-1);
+
+        expectedException.expect(RouteConstraintViolationException.class);
+
+        try {
+            router.navigate(routeInfo, new Object[]{body});
+        } catch (RouteConstraintViolationException e) {
+            assertThat(e.getMessages()).containsExactlyInAnyOrder(
+                    "count: must be greater than or equal to 0",
+                    "name: may not be null"
+            );
+
+            throw e;
+        }
+    }
+
+    @Test
+    public void whenGetPayloadFields_thenNamesOfArgsOrNullForBodyAndUnknownRoutes() {
+        assertThat(router.getPayloadFields("app/test/concat", RequestMethod.GET)).containsOnly("a", "b", "c", "d");
+        assertThat(router.getPayloadFields("app/test/route1", RequestMethod.GET)).isEmpty();
+        assertThat(router.getPayloadFields("app/test/body", RequestMethod.GET)).isNull();
+        assertThat(router.getPayloadFields("app/test/unknown", RequestMethod.GET)).isNull();
+    }
 }
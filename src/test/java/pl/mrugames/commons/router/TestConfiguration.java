@@ -17,6 +17,7 @@ import pl.mrugames.commons.router.arg_resolvers.SessionArgumentResolver;
 import pl.mrugames.commons.router.auth.AnonymousUserFactory;
 import pl.mrugames.commons.router.request_handlers.ObjectRequestHandler;
 import pl.mrugames.commons.router.request_handlers.RequestProcessor;
+import pl.mrugames.commons.router.request_handlers.ResponseWriter;
 import pl.mrugames.commons.router.sessions.SessionManager;
 
 import java.io.IOException;
@@ -95,6 +96,12 @@ public class TestConfiguration {
         return spy(requestProcessor);
     }
 
+    @Bean
+    @Primary
+    public ResponseWriter responseWriterSpy(ResponseWriter responseWriter) {
+        return spy(responseWriter);
+    }
+
     @Bean
     public AnonymousUserFactory<?> anonymousUserFactory() {
         return mock(AnonymousUserFactory.class);
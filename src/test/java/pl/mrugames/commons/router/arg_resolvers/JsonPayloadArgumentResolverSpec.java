@@ -3,7 +3,6 @@ package pl.mrugames.commons.router.arg_resolvers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import org.assertj.core.data.MapEntry;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -13,14 +12,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import pl.mrugames.commons.router.LazyArg;
 import pl.mrugames.commons.router.RouteInfo;
 import pl.mrugames.commons.router.RouterInitializer;
 import pl.mrugames.commons.router.TestConfiguration;
+import pl.mrugames.commons.router.controllers.TestController;
 import pl.mrugames.commons.router.controllers.UserModel;
 import pl.mrugames.commons.router.exceptions.IncompatibleParameterException;
 import pl.mrugames.commons.router.exceptions.ParameterNotFoundException;
 import pl.mrugames.commons.router.exceptions.RouterException;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -52,20 +55,27 @@ public class JsonPayloadArgumentResolverSpec {
         routes = initializer.getRoutes();
     }
 
+    private Object[] resolve(String json, RouteInfo routeInfo) {
+        Object[] args = routeInfo.newArguments();
+
+        try {
+            resolver.resolve(mapper.getFactory().createParser(json), routeInfo, args);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return args;
+    }
+
     @Test
     public void givenMethodWithArgAnnotations_thenResolveValuesProperly() {
         String json = "{\"a\": 1, \"b\": \"str\", \"c\": 12.2, \"d\": \"xyz\"}";
 
         RouteInfo routeInfo = routes.get("GET:app/test/concat");
 
-        Map<String, Object> result = resolver.resolve(json, routeInfo.getParameters());
+        Object[] result = resolve(json, routeInfo);
 
-        assertThat(result).containsExactly(
-                MapEntry.entry("a", 1),
-                MapEntry.entry("b", "str"),
-                MapEntry.entry("c", 12.2),
-                MapEntry.entry("d", "xyz")
-        );
+        assertThat(result).containsExactly(1, "str", 12.2, "xyz");
     }
 
     @Test
@@ -73,9 +83,9 @@ public class JsonPayloadArgumentResolverSpec {
         RouteInfo routeInfo = routes.get("POST:app/test/player/{playerId}");
         String json = "{\"description\": \"Test\"}";
 
-        Map<String, Object> result = resolver.resolve(json, routeInfo.getParameters());
+        Object[] result = resolve(json, routeInfo);
 
-        assertThat(result).containsExactly(MapEntry.entry("description", "Test"));
+        assertThat(result).containsExactly(null, "Test");
     }
 
     @Test
@@ -86,7 +96,7 @@ public class JsonPayloadArgumentResolverSpec {
         expectedException.expect(ParameterNotFoundException.class);
         expectedException.expectMessage("Could not find 'description' parameter in the request");
 
-        resolver.resolve(json, routeInfo.getParameters());
+        resolve(json, routeInfo);
     }
 
     @Test
@@ -97,7 +107,7 @@ public class JsonPayloadArgumentResolverSpec {
         expectedException.expect(IncompatibleParameterException.class);
         expectedException.expectMessage("Could not convert 'a' into 'int'");
 
-        resolver.resolve(json, routeInfo.getParameters());
+        resolve(json, routeInfo);
     }
 
     @Test
@@ -106,25 +116,20 @@ public class JsonPayloadArgumentResolverSpec {
 
         RouteInfo routeInfo = routes.get("GET:app/test/concat");
 
-        Map<String, Object> result = resolver.resolve(json, routeInfo.getParameters());
+        Object[] result = resolve(json, routeInfo);
 
-        assertThat(result).containsExactly(
-                MapEntry.entry("a", 1),
-                MapEntry.entry("b", "str"),
-                MapEntry.entry("c", 12.2),
-                MapEntry.entry("d", "last")
-        );
+        assertThat(result).containsExactly(1, "str", 12.2, "last");
     }
 
     @Test
-    public void givenMethodHasNoArgAnnotations_thenReturnEmptyMap() {
+    public void givenMethodHasNoArgAnnotations_thenArgumentsAreUntouched() {
         String pattern = "GET:app/test/player/{playerId}";
         RouteInfo routeInfo = routes.get(pattern);
 
         String json = "";
-        Map<String, Object> result = resolver.resolve(json, routeInfo.getParameters());
+        Object[] result = resolve(json, routeInfo);
 
-        assertThat(result).isEmpty();
+        assertThat(result[0]).isNull();
     }
 
     @Test
@@ -136,7 +141,7 @@ public class JsonPayloadArgumentResolverSpec {
 
         expectedException.expect(RouterException.class);
 
-        resolver.resolve(json, routeInfo.getParameters());
+        resolve(json, routeInfo);
     }
 
     @Test
@@ -145,9 +150,9 @@ public class JsonPayloadArgumentResolverSpec {
         RouteInfo routeInfo = routes.get(pattern);
         String json = "{\"user\": { \"name\": \"Mariusz\", \"id\": 12 } }";
 
-        Map<String, Object> result = resolver.resolve(json, routeInfo.getParameters());
+        Object[] result = resolve(json, routeInfo);
 
-        assertThat(result).containsExactly(MapEntry.entry("user", new UserModel("Mariusz", 12)));
+        assertThat(result).containsExactly(new UserModel("Mariusz", 12));
     }
 
     @Test
@@ -160,8 +165,8 @@ public class JsonPayloadArgumentResolverSpec {
 
         String json = node.toString();
 
-        Map<String, Object> result = resolver.resolve(json, routeInfo.getParameters());
-        assertThat(result).containsExactly(MapEntry.entry("user", null));
+        Object[] result = resolve(json, routeInfo);
+        assertThat(result[0]).isNull();
     }
 
     @Test
@@ -178,13 +183,11 @@ public class JsonPayloadArgumentResolverSpec {
         String pattern = "GET:app/test/generic-list";
         RouteInfo routeInfo = routes.get(pattern);
 
-        Map<String, Object> result = resolver.resolve(json, routeInfo.getParameters());
+        Object[] result = resolve(json, routeInfo);
 
-        assertThat(result).containsKeys("list");
+        assertThat(result[0]).isInstanceOf(List.class);
 
-        assertThat(result.get("list")).isInstanceOf(List.class);
-
-        List<?> list = (List<?>) result.get("list");
+        List<?> list = (List<?>) result[0];
 
         list.forEach(a -> assertThat(a).isInstanceOf(ExampleType.class));
     }
@@ -197,8 +200,115 @@ public class JsonPayloadArgumentResolverSpec {
         ObjectNode node = mapper.createObjectNode();
         String json = node.toString();
 
-        Map<String, Object> result = resolver.resolve(json, routeInfo.getParameters());
-        assertThat(result).containsExactly(MapEntry.entry("data", null));
+        Object[] result = resolve(json, routeInfo);
+        assertThat(result[0]).isNull();
+    }
+
+    @Test
+    public void givenPayloadWithNestedUnknownFields_thenSkipThem() {
+        String json = "{\"x\": {\"y\": [1, {\"a\": 5}]}, \"a\": 1, \"z\": [[]], \"b\": \"str\", \"c\": 12.2}";
+
+        Object[] result = resolve(json, routes.get("GET:app/test/concat"));
+
+        assertThat(result).containsExactly(1, "str", 12.2, "last");
+    }
+
+    @Test
+    public void givenNoPayload_thenUseDefaults() {
+        RouteInfo routeInfo = routes.get("GET:app/test/one-optional");
+        Object[] args = routeInfo.newArguments();
+
+        resolver.resolve(null, routeInfo, args);
+
+        assertThat(args).containsExactly("");
     }
 
+    @Test
+    public void shouldResolveNestedGenerics() throws JsonProcessingException {
+        List<List<ExampleType>> arg = Arrays.asList(
+                Collections.singletonList(new ExampleType(1, 2)),
+                Arrays.asList(new ExampleType(2, 2), new ExampleType(1, 3))
+        );
+
+        String json = mapper.writeValueAsString(Collections.singletonMap("matrix", arg));
+
+        Object[] result = resolve(json, routes.get("GET:app/test/nested-generics"));
+
+        List<?> matrix = (List<?>) result[0];
+        assertThat(matrix).hasSize(2);
+        assertThat((List<?>) matrix.get(1)).hasSize(2);
+        assertThat(((List<?>) matrix.get(1)).get(1)).isInstanceOf(ExampleType.class);
+    }
+
+    @Test
+    public void givenDefaultOfPrimitiveType_whenArgumentIsMissing_thenUseParsedDefault() {
+        Object[] result = resolve("{}", routes.get("GET:app/test/int-default"));
+        assertThat(result).containsExactly(5);
+    }
+
+    @Test
+    public void givenAllArgumentsBound_thenStopReadingPayload() {
+        String json = "{\"a\": 1, \"b\": \"str\", \"c\": 12.2, \"d\": \"xyz\", \"rest\": [not json";
+
+        Object[] result = resolve(json, routes.get("GET:app/test/concat"));
+
+        assertThat(result).containsExactly(1, "str", 12.2, "xyz");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void givenLazyArgument_thenDeserializeOnlyOnGet() {
+        String json = "{\"list\": [{\"x\": 1, \"y\": 2}, {\"x\": \"not a number\"}], \"count\": 7}";
+
+        Object[] result = resolve(json, routes.get("GET:app/test/lazy"));
+
+        LazyArg<Integer> count = (LazyArg<Integer>) result[0];
+        LazyArg<List<ExampleType>> list = (LazyArg<List<ExampleType>>) result[1];
+
+        assertThat(count.isResolved()).isFalse();
+        assertThat(count.get()).isEqualTo(7);
+        assertThat(list.isResolved()).isFalse();
+        assertThat(list.getTree().get(0).get("y").asInt()).isEqualTo(2);
+
+        expectedException.expect(IncompatibleParameterException.class);
+        list.get();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void givenMissingLazyArgument_thenWrapDefaultValue() {
+        Object[] result = resolve("{}", routes.get("GET:app/test/lazy"));
+
+        assertThat(((LazyArg<Integer>) result[0]).get()).isEqualTo(3);
+        assertThat(((LazyArg<Integer>) result[1]).get()).isNull();
+    }
+
+    @Test
+    public void givenBodyParameter_thenBindWholePayload() {
+        Object[] result = resolve("{\"name\": \"x\", \"count\": 2, \"unknown\": [1, 2]}", routes.get("GET:app/test/body"));
+
+        TestController.BodyDTO body = (TestController.BodyDTO) result[0];
+        assertThat(body.getName()).isEqualTo("x");
+        assertThat(body.getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void givenRequiredBodyIsMissing_thenParameterNotFound() {
+        expectedException.expect(ParameterNotFoundException.class);
+        resolve("null", routes.get("GET:app/test/body"));
+    }
+
+    @Test
+    public void givenOptionalBodyIsMissing_thenNull() {
+        Object[] args = routes.get("GET:app/test/optional-body").newArguments();
+        resolver.resolve(null, routes.get("GET:app/test/optional-body"), args);
+
+        assertThat(args[0]).isNull();
+    }
+
+    @Test
+    public void givenBodyOfIncompatibleType_thenException() {
+        expectedException.expect(IncompatibleParameterException.class);
+        resolve("{\"count\": \"not a number\"}", routes.get("GET:app/test/body"));
+    }
 }
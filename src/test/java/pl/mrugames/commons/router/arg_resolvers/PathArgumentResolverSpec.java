@@ -1,6 +1,5 @@
 package pl.mrugames.commons.router.arg_resolvers;
 
-import org.assertj.core.data.MapEntry;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -10,12 +9,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.support.AnnotationConfigContextLoader;
-import pl.mrugames.commons.router.RouteInfo;
-import pl.mrugames.commons.router.RouterInitializer;
-import pl.mrugames.commons.router.TestConfiguration;
+import pl.mrugames.commons.router.*;
 import pl.mrugames.commons.router.exceptions.IncompatibleParameterException;
 import pl.mrugames.commons.router.exceptions.PathParameterNotFoundException;
 
+import java.util.Collections;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -31,6 +29,9 @@ public class PathArgumentResolverSpec {
     @Autowired
     private RouterInitializer initializer;
 
+    @Autowired
+    private Router router;
+
     private Map<String, RouteInfo> routes;
 
     @Rule
@@ -41,57 +42,66 @@ public class PathArgumentResolverSpec {
         routes = initializer.getRoutes();
     }
 
+    private Object[] resolve(Map<String, String> pathVariables, RouteInfo routeInfo) {
+        Object[] args = routeInfo.newArguments();
+        resolver.resolve(new RouteMatch(routeInfo, pathVariables), args);
+        return args;
+    }
+
     @Test
-    public void givenMethodWithoutPathVarAnnotations_thenReturnEmptyMap() {
-        String path = "GET:app/test/concat";
-        RouteInfo route = routes.get(path);
+    public void givenMethodWithoutPathVarAnnotations_thenArgumentsAreUntouched() {
+        RouteInfo route = routes.get("GET:app/test/concat");
         assertThat(route).isNotNull();
 
-        assertThat(resolver.resolve(path, path, route.getParameters())).isEmpty();
+        assertThat(resolve(Collections.emptyMap(), route)).containsExactly(null, null, null, null);
     }
 
     @Test
     public void givenMethodWithOnePathVar_thenResolveWithValueFromPath() {
-        String pattern = "GET:app/test/player/{playerId}";
-        RouteInfo route = routes.get(pattern);
+        RouteInfo route = routes.get("GET:app/test/player/{playerId}");
         assertThat(route).isNotNull();
 
-        assertThat(resolver.resolve("GET:app/test/player/345", pattern, route.getParameters()))
-                .containsExactly(MapEntry.entry("playerId", 345));
+        assertThat(resolve(Collections.singletonMap("playerId", "345"), route)).containsExactly(345);
     }
 
     @Test
     public void givenMethodWithMixedParameters_thenResolveOnlyPathVar() {
-        String pattern = "POST:app/test/player/{playerId}";
-        RouteInfo route = routes.get(pattern);
+        RouteInfo route = routes.get("POST:app/test/player/{playerId}");
         assertThat(route).isNotNull();
 
-        assertThat(resolver.resolve("POST:app/test/player/345", pattern, route.getParameters()))
-                .containsExactly(MapEntry.entry("playerId", 345));
+        assertThat(resolve(Collections.singletonMap("playerId", "345"), route)).containsExactly(345, null);
     }
 
     @Test
     public void givenIncompatibleTypes_thenThrowException() {
-        String pattern = "POST:app/test/player/{playerId}";
-        RouteInfo route = routes.get(pattern);
+        RouteInfo route = routes.get("POST:app/test/player/{playerId}");
         assertThat(route).isNotNull();
 
         expectedException.expect(IncompatibleParameterException.class);
         expectedException.expectMessage("Could not convert 'playerId' into '" + int.class + "'");
 
-        resolver.resolve("POST:app/test/player/incompatible", pattern, route.getParameters());
+        resolve(Collections.singletonMap("playerId", "incompatible"), route);
     }
 
     @Test
     public void givenKeyNotPresentInPath_thenException() {
-        String pattern = "POST:app/test/player/{playerId}";
-        RouteInfo route = routes.get(pattern);
+        RouteInfo route = routes.get("POST:app/test/player/{playerId}");
         assertThat(route).isNotNull();
 
         expectedException.expect(PathParameterNotFoundException.class);
-        expectedException.expectMessage("Invalid path: POST:app/test/player for pattern: " + pattern);
+        expectedException.expectMessage("Could not find 'playerId' path variable in the route");
+
+        resolve(Collections.emptyMap(), route);
+    }
+
+    @Test
+    public void givenRouteMatchedByRouter_thenResolveCapturedVariables() {
+        RouteMatch routeMatch = router.match("app/test/player/10/add/2.5", RequestMethod.GET);
+
+        Object[] args = routeMatch.getRouteInfo().newArguments();
+        resolver.resolve(routeMatch, args);
 
-        resolver.resolve("POST:app/test/player", pattern, route.getParameters());
+        assertThat(args).containsExactly(10, 2.5);
     }
 
 }
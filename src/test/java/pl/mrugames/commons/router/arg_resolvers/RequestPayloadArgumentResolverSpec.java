@@ -1,6 +1,5 @@
 package pl.mrugames.commons.router.arg_resolvers;
 
-import org.assertj.core.data.MapEntry;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -10,6 +9,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import pl.mrugames.commons.router.LazyArg;
 import pl.mrugames.commons.router.RouteInfo;
 import pl.mrugames.commons.router.RouterInitializer;
 import pl.mrugames.commons.router.TestConfiguration;
@@ -45,6 +45,18 @@ public class RequestPayloadArgumentResolverSpec {
         routes = initializer.getRoutes();
     }
 
+    public static class ThrowingDTO {
+        public String getOne() {
+            throw new IllegalStateException("broken getter");
+        }
+    }
+
+    private Object[] resolve(Object payload, RouteInfo routeInfo) {
+        Object[] args = routeInfo.newArguments();
+        resolver.resolve(payload, routeInfo, args);
+        return args;
+    }
+
     @Test
     public void givenMethodWithOneArgAnnotation_thenReturnValueFromPayload() {
         Map<String, Object> payload = new HashMap<>();
@@ -55,14 +67,9 @@ public class RequestPayloadArgumentResolverSpec {
 
         RouteInfo routeInfo = routes.get("GET:app/test/concat");
 
-        Map<String, Object> result = resolver.resolve(payload, routeInfo.getParameters());
+        Object[] result = resolve(payload, routeInfo);
 
-        assertThat(result).containsExactly(
-                MapEntry.entry("a", 1),
-                MapEntry.entry("b", "str"),
-                MapEntry.entry("c", 12.1),
-                MapEntry.entry("d", "xxx")
-        );
+        assertThat(result).containsExactly(1, "str", 12.1, "xxx");
     }
 
     @Test
@@ -75,14 +82,9 @@ public class RequestPayloadArgumentResolverSpec {
 
         RouteInfo routeInfo = routes.get("GET:app/test/concat");
 
-        Map<String, Object> result = resolver.resolve(payload, routeInfo.getParameters());
+        Object[] result = resolve(payload, routeInfo);
 
-        assertThat(result).containsExactly(
-                MapEntry.entry("a", 1),
-                MapEntry.entry("b", null),
-                MapEntry.entry("c", 12.1),
-                MapEntry.entry("d", "xxx")
-        );
+        assertThat(result).containsExactly(1, null, 12.1, "xxx");
     }
 
     @Test
@@ -96,14 +98,9 @@ public class RequestPayloadArgumentResolverSpec {
 
         RouteInfo routeInfo = routes.get("GET:app/test/concat");
 
-        Map<String, Object> result = resolver.resolve(payload, routeInfo.getParameters());
+        Object[] result = resolve(payload, routeInfo);
 
-        assertThat(result).containsExactly(
-                MapEntry.entry("a", 1),
-                MapEntry.entry("b", "str"),
-                MapEntry.entry("c", 12.1),
-                MapEntry.entry("d", "xxx")
-        );
+        assertThat(result).containsExactly(1, "str", 12.1, "xxx");
     }
 
     @Test
@@ -115,14 +112,9 @@ public class RequestPayloadArgumentResolverSpec {
 
         RouteInfo routeInfo = routes.get("GET:app/test/concat");
 
-        Map<String, Object> result = resolver.resolve(payload, routeInfo.getParameters());
+        Object[] result = resolve(payload, routeInfo);
 
-        assertThat(result).containsExactly(
-                MapEntry.entry("a", 1),
-                MapEntry.entry("b", "str"),
-                MapEntry.entry("c", 12.1),
-                MapEntry.entry("d", "last")
-        );
+        assertThat(result).containsExactly(1, "str", 12.1, "last");
     }
 
     @Test
@@ -135,17 +127,17 @@ public class RequestPayloadArgumentResolverSpec {
         expectedException.expect(ParameterNotFoundException.class);
         expectedException.expectMessage("Could not find 'b' parameter in the request");
 
-        resolver.resolve(payload, routeInfo.getParameters());
+        resolve(payload, routeInfo);
     }
 
     @Test
-    public void givenMethodHasNoArgAnnotations_thenReturnEmptyMap() {
+    public void givenMethodHasNoArgAnnotations_thenArgumentsAreUntouched() {
         String pattern = "GET:app/test/player/{playerId}";
         RouteInfo routeInfo = routes.get(pattern);
 
-        Map<String, Object> result = resolver.resolve(Collections.emptyMap(), routeInfo.getParameters());
+        Object[] result = resolve(Collections.emptyMap(), routeInfo);
 
-        assertThat(result).isEmpty();
+        assertThat(result[0]).isNull();
     }
 
     @Test
@@ -153,9 +145,9 @@ public class RequestPayloadArgumentResolverSpec {
         String pattern = "POST:app/test/player/{playerId}";
         RouteInfo routeInfo = routes.get(pattern);
 
-        Map<String, Object> result = resolver.resolve(Collections.singletonMap("description", "Test"), routeInfo.getParameters());
+        Object[] result = resolve(Collections.singletonMap("description", "Test"), routeInfo);
 
-        assertThat(result).containsExactly(MapEntry.entry("description", "Test"));
+        assertThat(result).containsExactly(null, "Test");
     }
 
     @Test
@@ -166,7 +158,7 @@ public class RequestPayloadArgumentResolverSpec {
         expectedException.expect(IncompatibleParameterException.class);
         expectedException.expectMessage("Incompatible parameter: 'description'. Expected: '" + String.class + "', but actual was: '" + UserModel.class + "'");
 
-        resolver.resolve(Collections.singletonMap("description", new UserModel("name", 1)), routeInfo.getParameters());
+        resolve(Collections.singletonMap("description", new UserModel("name", 1)), routeInfo);
     }
 
     @Test
@@ -175,14 +167,9 @@ public class RequestPayloadArgumentResolverSpec {
 
         RouteInfo routeInfo = routes.get("GET:app/test/concat");
 
-        Map<String, Object> result = resolver.resolve(dto, routeInfo.getParameters());
+        Object[] result = resolve(dto, routeInfo);
 
-        assertThat(result).containsExactly(
-                MapEntry.entry("a", 1),
-                MapEntry.entry("b", "str"),
-                MapEntry.entry("c", 12.1),
-                MapEntry.entry("d", "xxx")
-        );
+        assertThat(result).containsExactly(1, "str", 12.1, "xxx");
     }
 
     @Test
@@ -191,14 +178,9 @@ public class RequestPayloadArgumentResolverSpec {
 
         RouteInfo routeInfo = routes.get("GET:app/test/concat");
 
-        Map<String, Object> result = resolver.resolve(dto, routeInfo.getParameters());
+        Object[] result = resolve(dto, routeInfo);
 
-        assertThat(result).containsExactly(
-                MapEntry.entry("a", 1),
-                MapEntry.entry("b", "str"),
-                MapEntry.entry("c", 12.1),
-                MapEntry.entry("d", "last")
-        );
+        assertThat(result).containsExactly(1, "str", 12.1, "last");
     }
 
     @Test
@@ -210,13 +192,77 @@ public class RequestPayloadArgumentResolverSpec {
         expectedException.expect(ParameterNotFoundException.class);
         expectedException.expectMessage("Could not find 'c' parameter in the request");
 
-        resolver.resolve(dto, routeInfo.getParameters());
+        resolve(dto, routeInfo);
     }
 
     @Test
     public void givenOneOptionalParameter_whenPayloadIsNull_thenUseDefault() {
         RouteInfo routeInfo = routes.get("GET:app/test/one-optional");
-        Map<String, Object> result = resolver.resolve(null, routeInfo.getParameters());
-        assertThat(result).containsExactly(MapEntry.entry("one", ""));
+        Object[] result = resolve(null, routeInfo);
+        assertThat(result).containsExactly("");
+    }
+
+    @Test
+    public void givenDifferentPayloadClasses_whenResolveSameRoute_thenUseGettersOfEachClass() {
+        RouteInfo routeInfo = routes.get("GET:app/test/concat");
+
+        assertThat(resolve(new TestController.ConcatRouteDTO(1, "str", 12.1, "xxx"), routeInfo))
+                .containsExactly(1, "str", 12.1, "xxx");
+        assertThat(resolve(new TestController.ConcatRouteWithOptionalDTO(2, "abc", 1.0), routeInfo))
+                .containsExactly(2, "abc", 1.0, "last");
+        assertThat(resolve(new TestController.ConcatRouteDTO(3, "def", 2.0, "yyy"), routeInfo))
+                .containsExactly(3, "def", 2.0, "yyy");
+    }
+
+    @Test
+    public void givenGetterThrowsException_thenParameterNotFound() {
+        RouteInfo routeInfo = routes.get("GET:app/test/one-optional");
+
+        expectedException.expect(ParameterNotFoundException.class);
+        expectedException.expectMessage("Could not find 'one' parameter in the request");
+
+        resolve(new ThrowingDTO(), routeInfo);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void givenLazyArgument_thenWrapValue() {
+        Object[] result = resolve(Collections.singletonMap("count", 9), routes.get("GET:app/test/lazy"));
+
+        assertThat(((LazyArg<Integer>) result[0]).get()).isEqualTo(9);
+        assertThat(((LazyArg<?>) result[1]).get()).isNull();
+    }
+
+    @Test
+    public void givenBodyParameter_thenPassPayload() {
+        TestController.BodyDTO body = new TestController.BodyDTO();
+
+        Object[] result = resolve(body, routes.get("GET:app/test/body"));
+
+        assertThat(result[0]).isSameAs(body);
+    }
+
+    @Test
+    public void givenBodyAsMap_thenConvertToParameterType() {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("name", "x");
+        payload.put("count", 2);
+
+        TestController.BodyDTO body = (TestController.BodyDTO) resolve(payload, routes.get("GET:app/test/body"))[0];
+
+        assertThat(body.getName()).isEqualTo("x");
+        assertThat(body.getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void givenBodyOfIncompatibleType_thenException() {
+        expectedException.expect(IncompatibleParameterException.class);
+        resolve("x", routes.get("GET:app/test/body"));
+    }
+
+    @Test
+    public void givenRequiredBodyIsMissing_thenParameterNotFound() {
+        expectedException.expect(ParameterNotFoundException.class);
+        resolve(null, routes.get("GET:app/test/body"));
     }
 }
@@ -1,6 +1,5 @@
 package pl.mrugames.commons.router.arg_resolvers;
 
-import org.assertj.core.data.MapEntry;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -17,7 +16,6 @@ import pl.mrugames.commons.router.controllers.UserModel;
 import pl.mrugames.commons.router.sessions.Session;
 
 import java.util.Map;
-import java.util.Optional;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 
@@ -47,31 +45,28 @@ public class SessionArgumentResolverSpec {
         session.add("bla bla");
     }
 
+    private Object[] resolve(RouteInfo routeInfo) {
+        Object[] args = routeInfo.newArguments();
+        resolver.resolve(session, routeInfo, args);
+        return args;
+    }
+
     @Test
-    public void givenRouteWithoutSessionArguments_thenReturnEmptyMap() {
-        Map<Class<?>, Optional<Object>> result = resolver.resolve(session, routes.get("GET:app/test/concat").getParameters());
-        assertThat(result).isEmpty();
+    public void givenRouteWithoutSessionArguments_thenArgumentsAreUntouched() {
+        Object[] result = resolve(routes.get("GET:app/test/concat"));
+        assertThat(result).containsExactly(null, null, null, null);
     }
 
     @Test
     public void givenOneArgumentInSession_whenRequest_thenResolveArgumentsWithoutAnnotations() {
-        Map<Class<?>, Optional<Object>> result = resolver.resolve(session, routes.get("GET:app/test/account/username").getParameters());
-        assertThat(result).containsOnlyKeys(UserModel.class);
-        assertThat(result.get(UserModel.class).get()).isEqualTo(new UserModel("Mruczek", 123));
+        Object[] result = resolve(routes.get("GET:app/test/account/username"));
+        assertThat(result).containsExactly(new UserModel("Mruczek", 123));
     }
 
     @Test
-    public void givenSessionDoesNotHaveArguments_thenEmptyOptionals() {
-        Map<Class<?>, Optional<Object>> result = resolver.resolve(session, routes.get("GET:app/test/session/defaults").getParameters());
-        assertThat(result).contains(
-                MapEntry.entry(Object.class, Optional.empty()),
-                MapEntry.entry(long.class, Optional.empty()),
-                MapEntry.entry(int.class, Optional.empty()),
-                MapEntry.entry(double.class, Optional.empty()),
-                MapEntry.entry(short.class, Optional.empty()),
-                MapEntry.entry(byte.class, Optional.empty()),
-                MapEntry.entry(boolean.class, Optional.empty())
-        );
+    public void givenSessionDoesNotHaveArguments_thenDefaultValuesOfTypes() {
+        Object[] result = resolve(routes.get("GET:app/test/session/defaults"));
+        assertThat(result).containsExactly(0L, 0.0, 0.0f, 0, (short) 0, (byte) 0, false, null);
     }
 
 }
@@ -0,0 +1,266 @@
+package pl.mrugames.commons.router.binary;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import pl.mrugames.commons.router.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class BinaryFrameTranslatorSpec {
+    private BinaryFrameTranslator translator;
+
+    @Rule
+    public final ExpectedException expectedException = ExpectedException.none();
+
+    @Before
+    public void before() {
+        translator = new BinaryFrameTranslator(new ValuePayloadEncoder(new ObjectMapper()));
+    }
+
+    private Map<String, Object> payload() {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("int", -5);
+        payload.put("long", 1L << 40);
+        payload.put("double", 2.5);
+        payload.put("float", 1.5f);
+        payload.put("short", (short) 7);
+        payload.put("byte", (byte) -1);
+        payload.put("char", 'ą');
+        payload.put("bool", true);
+        payload.put("string", "zażółć");
+        payload.put("null", null);
+        payload.put("list", Arrays.asList(1, "a", null, Collections.singletonMap("k", false)));
+        return payload;
+    }
+
+    private byte[] javaSerialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void givenRequest_whenRoundTrip_thenEqualRequestWithSameValueTypes() {
+        Request request = new Request(Long.MAX_VALUE, "app/test/zażółć", RequestMethod.PATCH, payload());
+
+        Object result = translator.translateToRequestOrResponse(translator.translateFromRequest(request));
+
+        assertThat(result).isEqualTo(request);
+        assertThat(((Map<?, ?>) ((Request) result).getPayload()).get("short")).isInstanceOf(Short.class);
+    }
+
+    @Test
+    public void givenResponse_whenRoundTrip_thenEqualResponse() {
+        Response response = new Response(-3, ResponseStatus.BAD_PARAMETERS, payload());
+
+        assertThat(translator.translateToRequestOrResponse(translator.translateFromResponse(response))).isEqualTo(response);
+    }
+
+    @Test
+    public void givenCloseStreamWithNulls_whenRoundTrip_thenEqualRequest() {
+        Request request = new Request(700, null, null, null, RequestType.CLOSE_STREAM);
+
+        assertThat(translator.translateToRequestOrResponse(translator.translateFromRequest(request))).isEqualTo(request);
+    }
+
+    @Test
+    public void givenPojo_whenRoundTrip_thenMapOfItsProperties() {
+        Response response = new Response(1, ResponseStatus.OK, Collections.singletonList(new Pojo("value", new BigDecimal("0.1"))));
+
+        Response result = (Response) translator.translateToRequestOrResponse(translator.translateFromResponse(response));
+
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("value", "value");
+        expected.put("amount", "0.1");
+        assertThat(result.getPayload()).isEqualTo(Collections.singletonList(expected));
+    }
+
+    @Test
+    public void givenNotSerializablePayload_whenWrite_thenException() {
+        Request request = new Request(1, "app/test", RequestMethod.GET, new Object());
+
+        expectedException.expect(IllegalArgumentException.class);
+        translator.translateFromRequest(request);
+    }
+
+    @Test
+    public void givenUnknownValueTag_whenRead_thenException() {
+        BinaryWriter writer = new BinaryWriter()
+                .writeByte(2)
+                .writeSignedVarLong(1)
+                .writeByte(0)
+                .writeByte(15);
+
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Failed to recognize frame");
+        translator.translateToRequestOrResponse(writer.toByteArray());
+    }
+
+    @Test
+    public void givenDeeplyNestedPayload_whenRead_thenExceptionInsteadOfStackOverflow() {
+        BinaryWriter writer = new BinaryWriter()
+                .writeByte(1)
+                .writeSignedVarLong(1)
+                .writeByte(0)
+                .writeByte(0)
+                .writeByte(0);
+        for (int i = 0; i < 100_000; ++i) {
+            writer.writeByte(12).writeVarLong(1);
+        }
+        writer.writeByte(0);
+
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Failed to recognize frame");
+        translator.translateToRequestOrResponse(writer.toByteArray());
+    }
+
+    @Test
+    public void givenPayloadWithinDepth_whenRoundTrip_thenEqual() {
+        Object payload = "leaf";
+        for (int i = 0; i < ValuePayloadEncoder.MAX_DEPTH; ++i) {
+            payload = Collections.singletonList(payload);
+        }
+        Response response = new Response(1, ResponseStatus.OK, payload);
+
+        assertThat(translator.translateToRequestOrResponse(translator.translateFromResponse(response))).isEqualTo(response);
+    }
+
+    @Test
+    public void givenRequest_whenCompareWithJavaSerialization_thenFrameIsMuchSmaller() throws IOException {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("playerId", 10L);
+        payload.put("exp", 15);
+        Request request = new Request(12, "app/player/add-exp", RequestMethod.POST, payload);
+        Response response = new Response(12, ResponseStatus.OK, "done");
+
+        assertThat(translator.translateFromRequest(request).length * 5).isLessThan(javaSerialize(request).length);
+        assertThat(translator.translateFromResponse(response).length * 10).isLessThan(javaSerialize(response).length);
+    }
+
+    @Test
+    public void givenSmallId_thenWrittenInSingleByte() {
+        assertThat(translator.translateFromResponse(new Response(63, ResponseStatus.OK, null))).hasSize(4);
+        assertThat(translator.translateFromResponse(new Response(64, ResponseStatus.OK, null))).hasSize(5);
+    }
+
+    @Test
+    public void givenResponsesWithoutPayload_whenTranslate_thenSameAsWithoutTemplates() {
+        BinaryFrameTranslator withoutTemplates = new BinaryFrameTranslator(new PayloadEncoder() {
+            private final ValuePayloadEncoder encoder = new ValuePayloadEncoder(new ObjectMapper());
+
+            @Override
+            public void write(Object payload, BinaryWriter writer) {
+                if (writer.size() == 1) {
+                    throw new IllegalArgumentException("no templates");
+                }
+
+                encoder.write(payload, writer);
+            }
+
+            @Override
+            public Object read(BinaryReader reader) {
+                return encoder.read(reader);
+            }
+        });
+
+        for (long id : new long[]{0, 63, 64, -1, Long.MAX_VALUE}) {
+            for (Response response : Arrays.asList(new Response(id, ResponseStatus.CLOSE, null), new Response(id, ResponseStatus.OK, Mono.NO_VAL))) {
+                byte[] frame = translator.translateFromResponse(response);
+
+                assertThat(frame).isEqualTo(withoutTemplates.translateFromResponse(response));
+                assertThat(translator.translateToRequestOrResponse(frame)).isEqualTo(response);
+            }
+        }
+    }
+
+    @Test
+    public void givenNoValue_whenRoundTrip_thenNoValue() {
+        Response response = (Response) translator.translateToRequestOrResponse(translator.translateFromResponse(new Response(1, ResponseStatus.OK, Mono.NO_VAL)));
+
+        assertThat(response.getPayload()).isSameAs(Mono.NO_VAL);
+    }
+
+    @Test
+    public void givenCustomPayloadEncoder_thenUseIt() {
+        PayloadEncoder encoder = new PayloadEncoder() {
+            @Override
+            public void write(Object payload, BinaryWriter writer) {
+                writer.writeString(payload.toString().toUpperCase());
+            }
+
+            @Override
+            public Object read(BinaryReader reader) {
+                return reader.readString();
+            }
+        };
+        translator = new BinaryFrameTranslator(encoder);
+
+        Object result = translator.translateToRequestOrResponse(translator.translateFromResponse(new Response(1, ResponseStatus.OK, "abc")));
+
+        assertThat(((Response) result).getPayload()).isEqualTo("ABC");
+    }
+
+    @Test
+    public void givenTruncatedFrame_thenException() {
+        byte[] frame = translator.translateFromRequest(new Request(1, "app/test", RequestMethod.GET, "payload"));
+
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Failed to recognize frame of " + (frame.length - 1) + " bytes");
+        translator.translateToRequestOrResponse(Arrays.copyOf(frame, frame.length - 1));
+    }
+
+    @Test
+    public void givenTrailingBytes_thenException() {
+        byte[] frame = translator.translateFromResponse(new Response(1, ResponseStatus.OK, null));
+
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Failed to recognize frame");
+        translator.translateToRequestOrResponse(Arrays.copyOf(frame, frame.length + 1));
+    }
+
+    @Test
+    public void givenUnknownKind_thenException() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Failed to recognize frame of 1 bytes");
+        translator.translateToRequestOrResponse(new byte[]{9});
+    }
+
+    @Test
+    public void givenPayloadWithoutProperties_whenWrite_thenException() {
+        expectedException.expect(IllegalArgumentException.class);
+        translator.translateFromResponse(new Response(1, ResponseStatus.OK, new Object()));
+    }
+
+    public static class Pojo {
+        private final String value;
+        private final BigDecimal amount;
+
+        Pojo(String value, BigDecimal amount) {
+            this.value = value;
+            this.amount = amount;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+    }
+}
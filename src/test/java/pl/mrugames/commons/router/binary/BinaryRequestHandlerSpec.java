@@ -0,0 +1,103 @@
+package pl.mrugames.commons.router.binary;
+
+import io.reactivex.Observable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import pl.mrugames.commons.router.*;
+import pl.mrugames.commons.router.controllers.UserModel;
+import pl.mrugames.commons.router.request_handlers.ObjectRequestHandler;
+import pl.mrugames.commons.router.sessions.Session;
+import pl.mrugames.commons.router.sessions.SessionManager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.reset;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader = AnnotationConfigContextLoader.class, classes = {
+        TestConfiguration.class
+})
+public class BinaryRequestHandlerSpec {
+    @Autowired
+    private BinaryRequestHandler handler;
+
+    @Autowired
+    private BinaryFrameTranslator translator;
+
+    @Autowired
+    private SessionManager sessionManager;
+
+    @Autowired
+    private ObjectRequestHandler objectRequestHandler;
+
+    @Before
+    public void before() {
+        doReturn(new Session()).when(sessionManager).getSession();
+    }
+
+    @After
+    public void after() {
+        reset(sessionManager, objectRequestHandler);
+    }
+
+    private Response handle(Request request) {
+        Request decoded = (Request) translator.translateToRequestOrResponse(translator.translateFromRequest(request));
+        byte[] response = handler.handleRequest(decoded).blockingFirst();
+        return (Response) translator.translateToRequestOrResponse(response);
+    }
+
+    @Test
+    public void givenBinaryRequest_whenHandle_thenBinaryResponse() {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("a", 1);
+        payload.put("b", "x");
+        payload.put("c", 2.5);
+
+        Response response = handle(new Request(3, "app/test/concat", RequestMethod.GET, payload));
+
+        assertThat(response).isEqualTo(new Response(3, ResponseStatus.OK, "1x2.5last"));
+    }
+
+    @Test
+    public void givenRouteReturnsDto_whenHandle_thenItsPropertiesAsMap() {
+        Session session = new Session();
+        session.add(new UserModel("name", 1));
+        doReturn(session).when(sessionManager).getSession();
+
+        Response response = handle(new Request(5, "app/test/re-return-obj", RequestMethod.GET, null));
+
+        assertThat(response).isEqualTo(new Response(5, ResponseStatus.OK, Collections.singletonMap("name", "name")));
+    }
+
+    @Test
+    public void givenMapForDtoArgument_whenHandle_thenConverted() {
+        Map<String, Object> user = new HashMap<>();
+        user.put("name", "name");
+        user.put("id", 1);
+
+        Response response = handle(new Request(6, "app/test/player", RequestMethod.POST, Collections.singletonMap("user", user)));
+
+        assertThat(response.getStatus()).isEqualTo(ResponseStatus.OK);
+    }
+
+    @Test
+    public void givenNotEncodablePayload_whenHandle_thenInternalError() {
+        doReturn(Observable.just(new Response(4, ResponseStatus.OK, new Object()))).when(objectRequestHandler).handleRequest(any());
+
+        Response response = handle(new Request(4, "app/test/route1", RequestMethod.GET, null));
+
+        assertThat(response.getId()).isEqualTo(4);
+        assertThat(response.getStatus()).isEqualTo(ResponseStatus.INTERNAL_ERROR);
+    }
+}
@@ -1,8 +1,10 @@
 package pl.mrugames.commons.router.client;
 
 import io.reactivex.Observable;
+import io.reactivex.exceptions.MissingBackpressureException;
 import io.reactivex.observers.TestObserver;
 import io.reactivex.subjects.Subject;
+import io.reactivex.subscribers.TestSubscriber;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -16,6 +18,9 @@ import pl.mrugames.commons.router.sessions.Session;
 import java.io.IOException;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.concurrent.TimeoutException;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
@@ -227,4 +232,215 @@ public class ClientSpec {
 
         assertThat(subject1).isSameAs(subject2);
     }
+
+    @Test
+    public void givenStreamBatch_thenEmitEachItem() {
+        TestObserver<Object> testObserver = new TestObserver<>();
+        client.send("").response.subscribe(testObserver);
+
+        client.onFrameReceive(new Response(1, ResponseStatus.STREAM, "a"));
+        client.onFrameReceive(new Response(1, ResponseStatus.STREAM_BATCH, Arrays.asList("b", "c")));
+        client.onFrameReceive(new Response(1, ResponseStatus.CLOSE, null));
+
+        testObserver.awaitTerminalEvent();
+        testObserver.assertValues("a", "b", "c");
+        testObserver.assertComplete();
+    }
+
+    @Test
+    public void givenStreamDeltas_thenEmitFullItems() {
+        TestObserver<Object> testObserver = new TestObserver<>();
+        client.send("").response.subscribe(testObserver);
+
+        client.onFrameReceive(new Response(1, ResponseStatus.STREAM_DELTA, Collections.singletonMap("hp", 100)));
+        client.onFrameReceive(new Response(1, ResponseStatus.STREAM_DELTA, Collections.singletonMap("mp", 5)));
+        client.onFrameReceive(new Response(1, ResponseStatus.STREAM_DELTA, Collections.singletonMap("hp", null)));
+        client.onFrameReceive(new Response(1, ResponseStatus.CLOSE, null));
+
+        testObserver.awaitTerminalEvent();
+        testObserver.assertValueAt(0, Collections.singletonMap("hp", 100));
+        testObserver.assertValueAt(1, v -> v.equals(new HashMap<String, Object>() {{
+            put("hp", 100);
+            put("mp", 5);
+        }}));
+        testObserver.assertValueAt(2, Collections.singletonMap("mp", 5));
+        testObserver.assertComplete();
+    }
+
+    @Test
+    public void givenFlowable_whenSubscriberRequests_thenGrantCredits() {
+        TestSubscriber<Object> testSubscriber = new TestSubscriber<>(2);
+        FlowableResponseHandle<Object> handle = client.sendFlowable("stream");
+        handle.response.subscribe(testSubscriber);
+
+        verify(connector).send(handle.id, null, 2L, null, RequestType.CREDITS);
+
+        client.onFrameReceive(new Response(handle.id, ResponseStatus.STREAM, 1));
+        client.onFrameReceive(new Response(handle.id, ResponseStatus.STREAM, 2));
+        testSubscriber.request(1);
+        client.onFrameReceive(new Response(handle.id, ResponseStatus.STREAM, 3));
+        client.onFrameReceive(new Response(handle.id, ResponseStatus.CLOSE, null));
+
+        verify(connector).send(handle.id, null, 1L, null, RequestType.CREDITS);
+        testSubscriber.assertValues(1, 2, 3);
+        testSubscriber.assertComplete();
+    }
+
+    @Test
+    public void givenFlowable_whenConsumerPausesLongerThanTimeout_thenNoTimeoutUntilNextRequest() throws InterruptedException {
+        client = new Client(200, connector, new Session());
+        TestSubscriber<Object> testSubscriber = new TestSubscriber<>(1);
+        FlowableResponseHandle<Object> handle = client.sendFlowable("stream");
+        handle.response.subscribe(testSubscriber);
+
+        client.onFrameReceive(new Response(handle.id, ResponseStatus.STREAM, 1));
+        Thread.sleep(500);
+
+        testSubscriber.assertValues(1);
+        testSubscriber.assertNotTerminated();
+
+        testSubscriber.request(1);
+        testSubscriber.awaitTerminalEvent();
+        testSubscriber.assertError(TimeoutException.class);
+    }
+
+    @Test
+    public void givenFlowable_whenCancelled_thenCloseStream() {
+        FlowableResponseHandle<Object> handle = client.sendFlowable("stream");
+        TestSubscriber<Object> testSubscriber = new TestSubscriber<>(1);
+        handle.response.subscribe(testSubscriber);
+
+        testSubscriber.cancel();
+
+        verify(connector).send(handle.id, null, null, null, RequestType.CLOSE_STREAM);
+    }
+
+    @Test
+    public void givenItemsBeforeSubscription_thenReplayThemToFirstSubscriber() {
+        ResponseHandle<Object> handle = client.send("");
+
+        client.onFrameReceive(new Response(1, ResponseStatus.STREAM, "a"));
+        client.onFrameReceive(new Response(1, ResponseStatus.STREAM, "b"));
+
+        TestObserver<Object> first = handle.response.test();
+        client.onFrameReceive(new Response(1, ResponseStatus.STREAM, "c"));
+        TestObserver<Object> second = handle.response.test();
+        client.onFrameReceive(new Response(1, ResponseStatus.STREAM, "d"));
+        client.onFrameReceive(new Response(1, ResponseStatus.CLOSE, null));
+
+        first.assertValues("a", "b", "c", "d").assertComplete();
+        second.assertNoValues().assertError(IllegalStateException.class);
+    }
+
+    @Test
+    public void givenNothingDelivered_whenSubscribeTwice_thenBothReceiveItems() {
+        ResponseHandle<Object> handle = client.send("");
+
+        TestObserver<Object> first = handle.response.test();
+        TestObserver<Object> second = handle.response.test();
+        client.onFrameReceive(new Response(1, ResponseStatus.STREAM, "a"));
+        client.onFrameReceive(new Response(1, ResponseStatus.CLOSE, null));
+
+        first.assertValues("a").assertComplete();
+        second.assertValues("a").assertComplete();
+    }
+
+    @Test
+    public void givenOkDeliveredToSubscriber_thenLateSubscriberReceivesItToo() {
+        ResponseHandle<Object> handle = client.send("");
+
+        TestObserver<Object> first = handle.response.test();
+        client.onFrameReceive(new Response(1, ResponseStatus.OK, "ok"));
+
+        first.assertValue("ok").assertComplete();
+        assertThat(handle.response.blockingFirst()).isEqualTo("ok");
+    }
+
+    @Test
+    public void givenOkBeforeSubscription_whenSubscribeTwice_thenBothReceiveIt() {
+        ResponseHandle<Object> handle = client.send("");
+        client.onFrameReceive(new Response(1, ResponseStatus.OK, "ok"));
+
+        handle.response.test().assertValue("ok").assertComplete();
+        handle.response.test().assertValue("ok").assertComplete();
+    }
+
+    @Test
+    public void givenOkBeforeSubscription_thenLateSubscriberReceivesIt() {
+        ResponseHandle<Object> handle = client.send("");
+        client.onFrameReceive(new Response(1, ResponseStatus.OK, "ok"));
+
+        handle.response.test().assertValue("ok").assertComplete();
+    }
+
+    @Test
+    public void givenEarlyArrivalsOverflow_whenPolicyError_thenErrorAndCloseStream() {
+        client = new Client(1000, connector, new Session(), 2, OverflowPolicy.ERROR);
+        ResponseHandle<Object> handle = client.send("");
+
+        client.onFrameReceive(new Response(1, ResponseStatus.STREAM_BATCH, Arrays.asList("a", "b", "c")));
+
+        handle.response.test().assertValues("a", "b").assertError(MissingBackpressureException.class);
+        assertThat(client.getBuffer()).isEmpty();
+        verify(connector).send(1L, null, null, null, RequestType.CLOSE_STREAM);
+    }
+
+    @Test
+    public void givenEarlyArrivalsOverflow_whenPolicyDropOldest_thenKeepLatest() {
+        client = new Client(1000, connector, new Session(), 2, OverflowPolicy.DROP_OLDEST);
+        ResponseHandle<Object> handle = client.send("");
+
+        client.onFrameReceive(new Response(1, ResponseStatus.STREAM_BATCH, Arrays.asList("a", "b", "c")));
+        client.onFrameReceive(new Response(1, ResponseStatus.CLOSE, null));
+
+        handle.response.test().assertValues("b", "c").assertComplete();
+    }
+
+    @Test
+    public void givenEarlyArrivalsOverflow_whenPolicyDropLatest_thenKeepFirst() {
+        client = new Client(1000, connector, new Session(), 2, OverflowPolicy.DROP_LATEST);
+        ResponseHandle<Object> handle = client.send("");
+
+        client.onFrameReceive(new Response(1, ResponseStatus.STREAM_BATCH, Arrays.asList("a", "b", "c")));
+        client.onFrameReceive(new Response(1, ResponseStatus.CLOSE, null));
+
+        handle.response.test().assertValues("a", "b").assertComplete();
+    }
+
+    @Test
+    public void givenOnlySubscriberDisposed_thenDropItemsAndCloseStream() {
+        ResponseHandle<Object> handle = client.send("");
+        TestObserver<Object> testObserver = handle.response.take(1).test();
+
+        client.onFrameReceive(new Response(1, ResponseStatus.STREAM, "a"));
+        client.onFrameReceive(new Response(1, ResponseStatus.STREAM, "b"));
+
+        testObserver.assertValue("a").assertComplete();
+        assertThat(client.getBuffer()).isEmpty();
+        verify(connector).send(1L, null, null, null, RequestType.CLOSE_STREAM);
+    }
+
+    @Test
+    public void givenSubscribed_thenItemsAreNotLimitedByEarlyArrivals() {
+        client = new Client(1000, connector, new Session(), 1, OverflowPolicy.ERROR);
+        TestObserver<Object> testObserver = client.send("").response.test();
+
+        client.onFrameReceive(new Response(1, ResponseStatus.STREAM_BATCH, Arrays.asList("a", "b", "c")));
+
+        testObserver.assertValues("a", "b", "c").assertNoErrors();
+    }
+
+    @Test
+    public void givenStreamItems_thenTimeoutIsCountedFromLastItem() throws InterruptedException {
+        TestObserver<Object> testObserver = client.send("", null, RequestMethod.GET, 300).response.test();
+
+        for (int i = 0; i < 3; ++i) {
+            Thread.sleep(150);
+            client.onFrameReceive(new Response(1, ResponseStatus.STREAM, i));
+        }
+
+        testObserver.assertValues(0, 1, 2).assertNotTerminated();
+        testObserver.awaitTerminalEvent();
+        testObserver.assertError(TimeoutException.class);
+    }
 }
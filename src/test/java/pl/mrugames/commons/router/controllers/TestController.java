@@ -1,16 +1,23 @@
 package pl.mrugames.commons.router.controllers;
 
+import io.reactivex.Observable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
+import pl.mrugames.commons.router.LazyArg;
 import pl.mrugames.commons.router.RequestMethod;
 import pl.mrugames.commons.router.annotations.Arg;
+import pl.mrugames.commons.router.annotations.Body;
 import pl.mrugames.commons.router.annotations.Controller;
 import pl.mrugames.commons.router.annotations.PathVar;
 import pl.mrugames.commons.router.annotations.Route;
+import pl.mrugames.commons.router.annotations.StreamCoalescing;
+import pl.mrugames.commons.router.annotations.StreamDelta;
 import pl.mrugames.commons.router.arg_resolvers.ExampleType;
 
+import javax.validation.Valid;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 import java.util.List;
 import java.util.Map;
 
@@ -72,6 +79,30 @@ public class TestController {
         }
     }
 
+    public static class BodyDTO {
+        @Min(0)
+        private int count;
+
+        @NotNull
+        private String name;
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
     public static class ConcatRouteInvalidDTO {
         private final int a;
         private final String b;
@@ -233,4 +264,52 @@ public class TestController {
         return String.valueOf(data);
     }
 
+    @Route("nested-generics")
+    public int nestedGenerics(@Arg("matrix") List<List<ExampleType>> matrix) {
+        return matrix.size();
+    }
+
+    @Route("int-default")
+    public int intDefault(@Arg(value = "value", defaultValue = "5") int value) {
+        return value;
+    }
+
+    @Route("lazy")
+    public int lazy(@Arg(value = "count", defaultValue = "3") LazyArg<Integer> count,
+                    @Arg(value = "list", required = false) LazyArg<List<ExampleType>> list) {
+        return count.get();
+    }
+
+    @Route("body")
+    public String body(@Valid @Body BodyDTO body) {
+        return body.getName() + body.getCount();
+    }
+
+    @Route("optional-body")
+    public boolean optionalBody(@Body(required = false) BodyDTO body) {
+        return body == null;
+    }
+
+    @Route("never-stream")
+    public Observable<Integer> neverStream() {
+        return Observable.never();
+    }
+
+    @Route("coalesced-stream")
+    @StreamCoalescing(window = 60000, maxItems = 3)
+    public Observable<Integer> coalescedStream() {
+        return Observable.range(1, 7);
+    }
+
+    @Route("delta-stream")
+    @StreamDelta
+    public Observable<ConcatRouteWithOptionalDTO> deltaStream() {
+        return Observable.just(new ConcatRouteWithOptionalDTO(1, "b", null), new ConcatRouteWithOptionalDTO(2, "b", null));
+    }
+
+    @Route("checked-exception")
+    public void checkedException() throws Exception {
+        throw new Exception("checked");
+    }
+
 }
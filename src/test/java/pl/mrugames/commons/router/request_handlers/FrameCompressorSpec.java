@@ -0,0 +1,86 @@
+package pl.mrugames.commons.router.request_handlers;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import pl.mrugames.commons.router.client.FrameDecompressor;
+import pl.mrugames.commons.router.exceptions.FrameLimitExceededException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class FrameCompressorSpec {
+    private MetricRegistry metricRegistry;
+    private FrameCompressor compressor;
+
+    @Rule
+    public final ExpectedException expectedException = ExpectedException.none();
+
+    @Before
+    public void before() {
+        metricRegistry = new MetricRegistry();
+        compressor = new FrameCompressor(metricRegistry, 100);
+    }
+
+    private byte[] snapshot(int players) {
+        StringBuilder json = new StringBuilder("{\"id\":1,\"status\":\"OK\",\"payload\":[");
+        for (int i = 0; i < players; ++i) {
+            json.append(i == 0 ? "" : ",").append("{\"name\":\"player").append(i).append("\",\"level\":").append(i % 10).append(",\"online\":true}");
+        }
+
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void givenFrameBelowThreshold_thenNotCompressed() {
+        byte[] frame = snapshot(1);
+
+        assertThat(compressor.compress(frame)).isSameAs(frame);
+        assertThat(FrameDecompressor.isCompressed(frame)).isFalse();
+    }
+
+    @Test
+    public void givenLargeFrame_thenCompressedAndDecompressedBack() {
+        byte[] frame = snapshot(200);
+
+        byte[] compressed = compressor.compress(frame);
+
+        assertThat(FrameDecompressor.isCompressed(compressed)).isTrue();
+        assertThat(compressed.length).isLessThan(frame.length / 4);
+        assertThat(FrameDecompressor.decompress(compressed, 0)).isEqualTo(frame);
+        assertThat(metricRegistry.counter(MetricRegistry.name(FrameCompressor.class, "bytes_before_compression")).getCount()).isEqualTo(frame.length);
+        assertThat(metricRegistry.counter(MetricRegistry.name(FrameCompressor.class, "bytes_after_compression")).getCount()).isEqualTo(compressed.length);
+    }
+
+    @Test
+    public void givenIncompressibleFrame_thenSentAsItIs() {
+        byte[] frame = new byte[1000];
+        new Random(0).nextBytes(frame);
+        frame[0] = '{';
+
+        assertThat(compressor.compress(frame)).isSameAs(frame);
+        assertThat(metricRegistry.counter(MetricRegistry.name(FrameCompressor.class, "compressed_frames")).getCount()).isZero();
+    }
+
+    @Test
+    public void givenDisabledCompression_thenNotCompressed() {
+        byte[] frame = snapshot(200);
+
+        assertThat(new FrameCompressor(metricRegistry, 0).compress(frame)).isSameAs(frame);
+    }
+
+    @Test
+    public void givenDecompressedFrameExceedsLimit_thenException() {
+        byte[] compressed = compressor.compress(snapshot(200));
+
+        expectedException.expect(FrameLimitExceededException.class);
+        FrameDecompressor.decompress(compressed, 1000);
+    }
+}
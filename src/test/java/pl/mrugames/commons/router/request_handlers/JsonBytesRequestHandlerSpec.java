@@ -0,0 +1,137 @@
+package pl.mrugames.commons.router.request_handlers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.reactivex.Observable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import pl.mrugames.commons.router.*;
+import pl.mrugames.commons.router.client.FrameDecompressor;
+import pl.mrugames.commons.router.controllers.UserModel;
+import pl.mrugames.commons.router.sessions.Session;
+import pl.mrugames.commons.router.sessions.SessionManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader = AnnotationConfigContextLoader.class, classes = {
+        TestConfiguration.class
+})
+public class JsonBytesRequestHandlerSpec {
+    @Autowired
+    private JsonBytesRequestHandler handler;
+
+    @Autowired
+    private RequestProcessor requestProcessor;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private ResponseWriter responseWriter;
+
+    @Autowired
+    private JsonBytesFrameTranslator frameTranslator;
+
+    @Autowired
+    private SessionManager sessionManager;
+
+    private Request request;
+    private JsonRequest jsonRequest;
+
+    @Before
+    public void before() throws JsonProcessingException {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("arg1", "val1");
+        payload.put("arg2", "val2");
+        request = new Request(2, "app/test/json", RequestMethod.GET, payload);
+        jsonRequest = (JsonRequest) frameTranslator.translateToRequestOrResponse(mapper.writeValueAsBytes(request));
+
+        doReturn(new Session()).when(sessionManager).getSession();
+    }
+
+    @After
+    public void after() {
+        reset(mapper, responseWriter, requestProcessor, sessionManager);
+    }
+
+    @Test
+    public void givenRequest_thenBindPayloadAndInvokeRoute() throws Exception {
+        handler.handleRequest(jsonRequest).blockingFirst();
+        verify(requestProcessor).invoke(argThat(m -> m.getRouteInfo().getRoutePattern().equals("GET:" + request.getRoute())), eq(request.getId()), aryEq(new Object[]{"val1", "val2"}));
+    }
+
+    @Test
+    public void givenProcessorReturnsResponse_thenReturnItAsBytes() throws Exception {
+        Response response = new Response(123, ResponseStatus.CLOSE, new UserModel("Mariusz", 0));
+
+        doReturn(Observable.just(response))
+                .when(requestProcessor)
+                .invoke(any(), anyLong(), any());
+        byte[] realResponse = handler.handleRequest(jsonRequest).blockingFirst();
+
+        assertThat(realResponse).isEqualTo(mapper.writeValueAsBytes(response));
+    }
+
+    @Test
+    public void givenResponseWriterThrowsError_thenReturnReadyErrorResponse() throws IOException {
+        doThrow(new RuntimeException("mapping exception")).when(responseWriter).writeBytes(any(), any());
+        byte[] realResponse = handler.handleRequest(jsonRequest).blockingFirst();
+
+        assertThat(new String(realResponse, StandardCharsets.UTF_8)).matches(
+                String.format("\\" + JsonRequestHandler.JSON_MAPPING_ERROR_RESPONSE, request.getId(), "mapping exception", "[\\s\\S]*")
+        );
+    }
+
+    @Test
+    public void givenBinaryFormats_whenHandleRequest_thenSameResponseAsJsonInSameFormat() throws Exception {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("a", 1);
+        payload.put("b", "x");
+        payload.put("c", 2.5);
+        Request request = new Request(3, "app/test/concat", RequestMethod.GET, payload);
+
+        Object jsonResponse = frameTranslator.translateToRequestOrResponse(handleIn(request, FrameFormat.JSON), FrameFormat.JSON);
+        assertThat(jsonResponse).isEqualTo(new Response(3, ResponseStatus.OK, "1x2.5last"));
+
+        for (FrameFormat format : new FrameFormat[]{FrameFormat.SMILE, FrameFormat.CBOR}) {
+            Object response = frameTranslator.translateToRequestOrResponse(handleIn(request, format), format);
+            assertThat(response).isEqualTo(jsonResponse);
+        }
+    }
+
+    private byte[] handleIn(Request request, FrameFormat format) {
+        JsonRequest jsonRequest = (JsonRequest) frameTranslator.translateToRequestOrResponse(frameTranslator.translateFromRequest(request, format), format);
+        return handler.handleRequest(jsonRequest).blockingFirst();
+    }
+
+    @Test
+    public void givenClientAcceptsCompression_thenLargeResponseIsCompressed() throws Exception {
+        Response response = new Response(2, ResponseStatus.OK, Collections.nCopies(500, new UserModel("Mariusz", 0)));
+        doReturn(Observable.just(response)).when(requestProcessor).invoke(any(), anyLong(), any());
+
+        byte[] compressed = handler.handleRequest((JsonRequest) frameTranslator.translateToRequestOrResponse(
+                frameTranslator.translateFromRequest(request, FrameFormat.JSON, true))).blockingFirst();
+        byte[] plain = handler.handleRequest(jsonRequest).blockingFirst();
+
+        assertThat(FrameDecompressor.isCompressed(compressed)).isTrue();
+        assertThat(FrameDecompressor.isCompressed(plain)).isFalse();
+        assertThat(FrameDecompressor.decompress(compressed, 0)).isEqualTo(plain);
+        assertThat(frameTranslator.translateToRequestOrResponse(compressed)).isEqualTo(mapper.readValue(plain, JsonResponse.class));
+    }
+}
@@ -1,8 +1,10 @@
 package pl.mrugames.commons.router.request_handlers;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -13,13 +15,18 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.support.AnnotationConfigContextLoader;
 import pl.mrugames.commons.router.*;
 import pl.mrugames.commons.router.controllers.UserModel;
+import pl.mrugames.commons.router.exceptions.FrameLimitExceededException;
+import pl.mrugames.commons.router.sessions.Session;
+import pl.mrugames.commons.router.sessions.SessionManager;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -37,6 +44,15 @@ public class JsonRequestHandlerSpec {
     @Autowired
     private ObjectMapper mapper;
 
+    @Autowired
+    private ResponseWriter responseWriter;
+
+    @Autowired
+    private JsonFrameTranslator frameTranslator;
+
+    @Autowired
+    private SessionManager sessionManager;
+
     private Request request;
     private JsonRequest jsonRequest;
     private Map<String, Object> payload = new HashMap<>();
@@ -47,13 +63,12 @@ public class JsonRequestHandlerSpec {
         payload.put("arg2", "val2");
         request = new Request(2, "app/test/json", RequestMethod.GET, payload);
         String rawJson = mapper.writeValueAsString(request);
-        jsonRequest = mapper.readValue(rawJson, JsonRequest.class);
-        jsonRequest.setRawJson(rawJson);
+        jsonRequest = (JsonRequest) frameTranslator.translateToRequestOrResponse(rawJson);
     }
 
     @After
     public void after() {
-        reset(mapper, requestProcessor);
+        reset(mapper, responseWriter, requestProcessor, sessionManager);
     }
 
     private String prepareJsonRequest(String route, String payload) {
@@ -69,7 +84,7 @@ public class JsonRequestHandlerSpec {
     @Test
     public void givenStringRequest_thenParseIntoRequestAndCallObjectHandler() throws Exception {
         handler.handleRequest(jsonRequest);
-        verify(requestProcessor).standardRequest(any(), eq(request.getId()), eq(request.getRoute()), eq(request.getRequestMethod()), anyMap());
+        verify(requestProcessor).invoke(argThat(m -> m.getRouteInfo().getRoutePattern().equals("GET:" + request.getRoute())), eq(request.getId()), any());
     }
 
     @Test
@@ -79,15 +94,15 @@ public class JsonRequestHandlerSpec {
 
         doReturn(Observable.just(response))
                 .when(requestProcessor)
-                .standardRequest(any(), anyLong(), any(), any(), any());
+                .invoke(any(), anyLong(), any());
         String realResponse = handler.handleRequest(jsonRequest).blockingFirst();
 
         assertThat(realResponse).isEqualTo(jsonResponse);
     }
 
     @Test
-    public void givenObjectMapperThrowsError_thenReturnReadyErrorResponse() throws JsonProcessingException {
-        doThrow(new RuntimeException("mapping exception")).when(mapper).writeValueAsString(any());
+    public void givenResponseWriterThrowsError_thenReturnReadyErrorResponse() throws IOException {
+        doThrow(new RuntimeException("mapping exception")).when(responseWriter).writeString(any());
         String realResponse = handler.handleRequest(jsonRequest).blockingFirst();
 
         assertThat(realResponse).matches(
@@ -96,8 +111,154 @@ public class JsonRequestHandlerSpec {
     }
 
     @Test
-    public void payloadResolverTest() throws InvocationTargetException, IllegalAccessException {
+    public void payloadResolverTest() throws IllegalAccessException {
         handler.handleRequest(jsonRequest).blockingFirst();
-        verify(requestProcessor).standardRequest(any(), anyLong(), anyString(), any(), eq(payload));
+        verify(requestProcessor).invoke(any(), anyLong(), aryEq(new Object[]{"val1", "val2"}));
+    }
+
+    @Test
+    public void givenPayloadExceededLimits_thenBadRequest() throws Exception {
+        jsonRequest.setLimitViolation(new FrameLimitExceededException("too deep"));
+
+        String response = handler.handleRequest(jsonRequest).blockingFirst();
+
+        assertThat(response).isEqualTo(mapper.writeValueAsString(new Response(request.getId(), ResponseStatus.BAD_REQUEST, "too deep")));
+    }
+
+    @Test
+    public void givenFrameRejectedBeforeIdWasRead_thenBadRequestWithoutId() throws Exception {
+        JsonRequest rejected = new JsonRequest(null, null, null, null);
+        rejected.setLimitViolation(new FrameLimitExceededException("Frame of 2000 bytes exceeds the limit of 1000 bytes"));
+
+        String response = handler.handleRequest(rejected).blockingFirst();
+
+        assertThat(response).isEqualTo(mapper.writeValueAsString(new Response(-1, ResponseStatus.BAD_REQUEST, "Frame of 2000 bytes exceeds the limit of 1000 bytes")));
+    }
+
+    @Test
+    public void givenBatch_thenArrayOfResponsesInOrderOfRequests() throws Exception {
+        doReturn(new Session()).when(sessionManager).getSession();
+        JsonRequest batch = (JsonRequest) frameTranslator.translateToRequestOrResponse(
+                "[{\"id\":1,\"route\":\"app/test/route1\",\"requestMethod\":\"GET\"}," +
+                        "{\"id\":2,\"route\":\"app/test/missing\",\"requestMethod\":\"GET\"}," +
+                        "{\"route\":\"app/test/route1\",\"requestMethod\":\"GET\"}]"
+        );
+
+        List<String> frames = handler.handleRequest(batch).toList().blockingGet();
+        assertThat(frames).hasSize(1);
+
+        JsonNode responses = mapper.readTree(frames.get(0));
+        assertThat(responses).hasSize(3);
+        assertThat(responses.get(0).toString()).isEqualTo(mapper.writeValueAsString(new Response(1, ResponseStatus.OK, "route1")));
+        assertThat(responses.get(1).get("id").asLong()).isEqualTo(2);
+        assertThat(responses.get(1).get("status").asText()).isEqualTo("BAD_REQUEST");
+        assertThat(responses.get(2).get("id").asLong()).isEqualTo(-1);
+        assertThat(responses.get(2).get("status").asText()).isEqualTo("BAD_REQUEST");
+    }
+
+    @Test
+    public void givenStreamRouteInBatch_thenArrayIsSentWithoutWaitingForStream() throws Exception {
+        doReturn(new Session()).when(sessionManager).getSession();
+        JsonRequest batch = (JsonRequest) frameTranslator.translateToRequestOrResponse(
+                "[{\"id\":1,\"route\":\"app/test/route1\",\"requestMethod\":\"GET\"}," +
+                        "{\"id\":2,\"route\":\"app/test/never-stream\",\"requestMethod\":\"GET\"}," +
+                        "{\"id\":3,\"route\":\"app/test/route1\",\"requestMethod\":\"GET\"}]"
+        );
+
+        handler.handleRequest(batch).test().assertValues(
+                mapper.writeValueAsString(Arrays.asList(new Response(1, ResponseStatus.OK, "route1"), new Response(3, ResponseStatus.OK, "route1")))
+        ).assertNotComplete();
+    }
+
+    @Test
+    public void givenStreamInBatch_thenArrayIsNotHeldBackAndItemsAreSeparateFrames() throws Exception {
+        doReturn(new Session()).when(sessionManager).getSession();
+        PublishSubject<Response> stream = PublishSubject.create();
+        doReturn(stream).when(requestProcessor).invoke(any(), eq(2L), any());
+        JsonRequest batch = (JsonRequest) frameTranslator.translateToRequestOrResponse(
+                "[{\"id\":1,\"route\":\"app/test/route1\",\"requestMethod\":\"GET\"}," +
+                        "{\"id\":2,\"route\":\"app/test/route1\",\"requestMethod\":\"GET\"}," +
+                        "{\"id\":3,\"route\":\"app/test/route1\",\"requestMethod\":\"GET\"}]"
+        );
+
+        TestObserver<String> frames = handler.handleRequest(batch).test();
+        frames.assertValueCount(0);
+
+        stream.onNext(new Response(2, ResponseStatus.STREAM, "a"));
+        frames.assertValues(
+                mapper.writeValueAsString(new Response(2, ResponseStatus.STREAM, "a")),
+                mapper.writeValueAsString(Arrays.asList(new Response(1, ResponseStatus.OK, "route1"), new Response(3, ResponseStatus.OK, "route1")))
+        );
+
+        stream.onNext(new Response(2, ResponseStatus.STREAM, "b"));
+        stream.onNext(new Response(2, ResponseStatus.CLOSE, null));
+        stream.onComplete();
+
+        frames.assertValueCount(4).assertComplete();
+        assertThat(frames.values().get(2)).isEqualTo(mapper.writeValueAsString(new Response(2, ResponseStatus.STREAM, "b")));
+        assertThat(frames.values().get(3)).isEqualTo(mapper.writeValueAsString(new Response(2, ResponseStatus.CLOSE, null)));
+    }
+
+    @Test
+    public void givenConcurrentBatchWithSeparateResponses_thenFramePerRequest() throws Exception {
+        doReturn(new Session()).when(sessionManager).getSession();
+        StringBuilder frame = new StringBuilder("{\"concurrent\":true,\"separateResponses\":true,\"batch\":[");
+        for (int i = 0; i < 10; ++i) {
+            frame.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"route\":\"app/test/route1\",\"requestMethod\":\"GET\"}");
+        }
+
+        JsonRequest batch = (JsonRequest) frameTranslator.translateToRequestOrResponse(frame.append("]}").toString());
+
+        List<String> frames = handler.handleRequest(batch).toList().blockingGet();
+
+        assertThat(frames).hasSize(10);
+        for (int i = 0; i < 10; ++i) {
+            assertThat(frames).contains(mapper.writeValueAsString(new Response(i, ResponseStatus.OK, "route1")));
+        }
+    }
+
+    @Test
+    public void givenBatchWithInvalidEntries_thenOnlyThoseEntriesAreBadRequests() throws Exception {
+        doReturn(new Session()).when(sessionManager).getSession();
+        JsonRequest batch = (JsonRequest) frameTranslator.translateToRequestOrResponse(
+                "[{\"id\":1,\"route\":\"app/test/route1\",\"requestMethod\":\"GET\"}," +
+                        "{\"id\":2,\"route\":\"app/test/route1\",\"requestMethod\":\"get\"}," +
+                        "{\"id\":\"x\",\"route\":\"app/test/route1\",\"requestMethod\":\"GET\"}," +
+                        "{\"id\":4,\"route\":\"app/test/route1\",\"requestMethod\":\"GET\",\"requestType\":\"OTHER\"}]"
+        );
+
+        JsonNode responses = mapper.readTree(handler.handleRequest(batch).blockingFirst());
+
+        assertThat(responses).hasSize(4);
+        assertThat(responses.get(0).toString()).isEqualTo(mapper.writeValueAsString(new Response(1, ResponseStatus.OK, "route1")));
+        assertThat(responses.get(1).toString()).isEqualTo(mapper.writeValueAsString(new Response(2, ResponseStatus.BAD_REQUEST, "Unknown request method: get")));
+        assertThat(responses.get(2).toString()).isEqualTo(mapper.writeValueAsString(new Response(-1, ResponseStatus.BAD_REQUEST, "Invalid 'id': x")));
+        assertThat(responses.get(3).toString()).isEqualTo(mapper.writeValueAsString(new Response(4, ResponseStatus.BAD_REQUEST, "Unknown request type: OTHER")));
+    }
+
+    @Test
+    public void givenSingleRequestWithInvalidMethod_thenBadRequestWithItsId() throws Exception {
+        JsonRequest request = (JsonRequest) frameTranslator.translateToRequestOrResponse(
+                "{\"id\":3,\"route\":\"app/test/route1\",\"requestMethod\":\"get\"}");
+
+        assertThat(handler.handleRequest(request).blockingFirst())
+                .isEqualTo(mapper.writeValueAsString(new Response(3, ResponseStatus.BAD_REQUEST, "Unknown request method: get")));
+    }
+
+    @Test
+    public void givenCredits_thenGrantThemToStream() throws Exception {
+        doReturn(new Session()).when(sessionManager).getSession();
+        JsonRequest credits = (JsonRequest) frameTranslator.translateToRequestOrResponse("{\"id\":5,\"requestType\":\"CREDITS\",\"payload\":3}");
+
+        assertThat(handler.handleRequest(credits).toList().blockingGet()).isEmpty();
+        verify(requestProcessor).creditsRequest(5, 3);
+    }
+
+    @Test
+    public void givenCreditsWhichAreNotNumber_thenBadRequest() throws Exception {
+        JsonRequest credits = (JsonRequest) frameTranslator.translateToRequestOrResponse("{\"id\":5,\"requestType\":\"CREDITS\",\"payload\":\"3\"}");
+
+        JsonNode response = mapper.readTree(handler.handleRequest(credits).blockingFirst());
+        assertThat(response.get("status").asText()).isEqualTo("BAD_REQUEST");
     }
 }
@@ -9,6 +9,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
@@ -20,11 +21,7 @@ import pl.mrugames.commons.router.arg_resolvers.SessionArgumentResolver;
 import pl.mrugames.commons.router.sessions.Session;
 import pl.mrugames.commons.router.sessions.SessionManager;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
 import java.util.stream.Stream;
 
 import static junit.framework.TestCase.fail;
@@ -124,44 +121,36 @@ public class ObjectRequestHandlerSpec {
         Request request = new Request(100, "app/test/concat", RequestMethod.GET, Collections.emptyMap());
         handler.handleRequest(request);
 
-        verify(router).findRoute("app/test/concat", RequestMethod.GET);
+        verify(router).match("app/test/concat", RequestMethod.GET);
     }
 
     @Test
-    public void givenArgumentResolversReturnDifferentInstances_whenRequest_thenNavigateWithThatInstances() throws InvocationTargetException, IllegalAccessException {
-        Map<String, Object> pathArg = new HashMap<>();
-        pathArg.put("1", "1");
-        Map<String, Object> payloadArg = new HashMap<>();
-        payloadArg.put("1", "1");
-        Map<Class<?>, Optional<Object>> sessionArg = new HashMap<>();
-        sessionArg.put(String.class, Optional.of("1"));
+    public void whenRequest_thenAllResolversBindIntoArgumentsPassedToRouter() throws IllegalAccessException {
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
 
-        doReturn(pathArg).when(pathArgumentResolver).resolve(any(), anyString(), any());
-        doReturn(payloadArg).when(requestPayloadArgumentResolver).resolve(any(), any());
-        doReturn(sessionArg).when(sessionArgumentResolver).resolve(any(), any());
-
-        RouteInfo routeInfo = router.findRoute("app/test/concat", RequestMethod.GET);
-
-        Request request = new Request(100, "app/test/concat", RequestMethod.GET, Collections.emptyMap());
+        Request request = new Request(100, "app/test/route1", RequestMethod.GET, Collections.emptyMap());
         handler.handleRequest(request);
 
-        verify(router).navigate(routeInfo, pathArg, payloadArg, sessionArg);
+        verify(requestPayloadArgumentResolver).resolve(any(), any(), args.capture());
+        verify(pathArgumentResolver).resolve(any(), same(args.getValue()));
+        verify(sessionArgumentResolver).resolve(any(), any(), same(args.getValue()));
+        verify(router).navigate(any(), same(args.getValue()));
     }
 
     @Test
-    public void whenRequest_thenPathResolverIsCalledWithProperPath() {
-        RouteInfo routeInfo = router.findRoute("app/test/concat", RequestMethod.GET);
+    public void whenRequest_thenPathResolverIsCalledWithMatchedRoute() {
+        RouteMatch routeMatch = router.match("app/test/player/10", RequestMethod.GET);
 
-        Request request = new Request(100, "app/test/concat", RequestMethod.GET, Collections.emptyMap());
+        Request request = new Request(100, "app/test/player/10", RequestMethod.GET, Collections.emptyMap());
         handler.handleRequest(request);
 
-        verify(pathArgumentResolver).resolve("GET:app/test/concat", routeInfo.getRoutePattern(), routeInfo.getParameters());
+        verify(pathArgumentResolver).resolve(argThat(m -> m.getRouteInfo() == routeMatch.getRouteInfo()), any());
     }
 
     @Test
-    public void givenRouterReturnsSomeObject_whenRequest_thenReturnResponseOk() throws InvocationTargetException, IllegalAccessException {
+    public void givenRouterReturnsSomeObject_whenRequest_thenReturnResponseOk() throws IllegalAccessException {
         Object someObject = new Object();
-        doReturn(someObject).when(router).navigate(any(), anyMap(), anyMap(), anyMap());
+        doReturn(someObject).when(router).navigate(any(), any());
 
         Request request = new Request(92, "app/test/route1", RequestMethod.GET, Collections.emptyMap());
 
@@ -184,7 +173,7 @@ public class ObjectRequestHandlerSpec {
             }
 
             try {
-                doReturn(returnedVal).when(router).navigate(any(), anyMap(), anyMap(), anyMap());
+                doReturn(returnedVal).when(router).navigate(any(), any());
             } catch (IllegalAccessException e) {
                 e.printStackTrace();
                 fail();
@@ -206,8 +195,8 @@ public class ObjectRequestHandlerSpec {
     }
 
     @Test
-    public void givenRouterReturnsSubject_whenItEmitsNextFrames_thenResponseHasStatusOfSTREAM() throws InvocationTargetException, IllegalAccessException {
-        doReturn(sourceSubject).when(router).navigate(any(), anyMap(), anyMap(), anyMap());
+    public void givenRouterReturnsSubject_whenItEmitsNextFrames_thenResponseHasStatusOfSTREAM() throws IllegalAccessException {
+        doReturn(sourceSubject).when(router).navigate(any(), any());
 
         Request request = new Request(92, "app/test/route1", RequestMethod.GET, Collections.emptyMap());
 
@@ -231,10 +220,10 @@ public class ObjectRequestHandlerSpec {
     }
 
     @Test
-    public void givenRouterReturnsSubject_whenRequest_thenRegisterEmitter() throws InvocationTargetException, IllegalAccessException {
+    public void givenRouterReturnsSubject_whenRequest_thenRegisterEmitter() throws IllegalAccessException {
         Session session = spy(new Session());
 
-        doReturn(sourceSubject).when(router).navigate(any(), anyMap(), anyMap(), anyMap());
+        doReturn(sourceSubject).when(router).navigate(any(), any());
         doReturn(session).when(sessionManager).getSession();
 
         Request request = new Request(92, "app/test/route1", RequestMethod.GET, Collections.emptyMap());
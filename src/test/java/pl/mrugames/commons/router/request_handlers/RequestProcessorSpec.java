@@ -1,8 +1,14 @@
 package pl.mrugames.commons.router.request_handlers;
 
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
+import io.reactivex.Single;
 import io.reactivex.observers.TestObserver;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.subjects.CompletableSubject;
 import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.SingleSubject;
 import io.reactivex.subjects.Subject;
 import org.junit.After;
 import org.junit.Before;
@@ -15,12 +21,16 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.support.AnnotationConfigContextLoader;
 import pl.mrugames.commons.router.*;
+import pl.mrugames.commons.router.annotations.StreamCoalescing;
 import pl.mrugames.commons.router.sessions.Session;
 import pl.mrugames.commons.router.sessions.SessionExpiredException;
 import pl.mrugames.commons.router.sessions.SessionManager;
 
-import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
@@ -65,14 +75,14 @@ public class RequestProcessorSpec {
     }
 
     @Test
-    public void givenEmitterRegistered_whenRequestWithTypeOfCLOSE_STREAM_thenShutdownEmitter() throws InvocationTargetException, IllegalAccessException {
+    public void givenEmitterRegistered_whenRequestWithTypeOfCLOSE_STREAM_thenShutdownEmitter() throws IllegalAccessException {
         doReturn(new Session()).when(sessionManager).getSession();
 
         TestObserver<Response> testObserver = TestObserver.create();
-        doReturn(sourceSubject).when(router).navigate(any(), anyMap(), anyMap(), anyMap());
+        doReturn(sourceSubject).when(router).navigate(any(), any());
 
         Request request = new Request(904, "app/test/route1", RequestMethod.GET, Collections.emptyMap());
-        requestProcessor.standardRequest(router.findRoute(request.getRoute(), request.getRequestMethod()), request.getId(), request.getRoute(), request.getRequestMethod(), request.getPayload())
+        requestProcessor.standardRequest(router.match(request.getRoute(), request.getRequestMethod()), request.getId(), request.getPayload())
                 .subscribe(testObserver);
 
         Request closeRequest = new Request(904, null, null, null, RequestType.CLOSE_STREAM);
@@ -133,12 +143,12 @@ public class RequestProcessorSpec {
     }
 
     @Test
-    public void whenResponseIsObservable_thenDelegateToOnSubject() throws IllegalAccessException, InvocationTargetException {
+    public void whenResponseIsObservable_thenDelegateToOnSubject() throws IllegalAccessException {
         TestObserver<Response> testObserver = new TestObserver<>();
-        doReturn(Observable.just("123")).when(router).navigate(any(), any(), any(), any());
+        doReturn(Observable.just("123")).when(router).navigate(any(), any());
 
         Request request = new Request(904, "app/test/route1", RequestMethod.GET, Collections.emptyMap());
-        requestProcessor.standardRequest(router.findRoute(request.getRoute(), request.getRequestMethod()), request.getId(), request.getRoute(), request.getRequestMethod(), request.getPayload())
+        requestProcessor.standardRequest(router.match(request.getRoute(), request.getRequestMethod()), request.getId(), request.getPayload())
                 .subscribe(testObserver);
 
         testObserver.awaitTerminalEvent();
@@ -147,49 +157,49 @@ public class RequestProcessorSpec {
     }
 
     @Test
-    public void givenSessionExpired_whenRegisterEmitter_thenThrowException() throws IllegalAccessException, InvocationTargetException {
+    public void givenSessionExpired_whenRegisterEmitter_thenThrowException() throws IllegalAccessException {
         Session session = mock(Session.class);
         doThrow(SessionExpiredException.class).when(session).registerEmitter(anyLong(), any());
         doReturn(session).when(sessionManager).getSession();
 
         Subject subject = PublishSubject.create();
 
-        doReturn(subject).when(router).navigate(any(), any(), any(), any());
+        doReturn(subject).when(router).navigate(any(), any());
 
         Request request = new Request(904, "app/test/route1", RequestMethod.GET, Collections.emptyMap());
 
         expectedException.expect(SessionExpiredException.class);
-        requestProcessor.standardRequest(router.findRoute(request.getRoute(), request.getRequestMethod()), request.getId(), request.getRoute(), request.getRequestMethod(), request.getPayload());
+        requestProcessor.standardRequest(router.match(request.getRoute(), request.getRequestMethod()), request.getId(), request.getPayload());
     }
 
     @Test
-    public void givenSessionExpired_whenRegisterSubscription_thenException() throws InvocationTargetException, IllegalAccessException {
+    public void givenSessionExpired_whenRegisterSubscription_thenException() throws IllegalAccessException {
         Session session = mock(Session.class);
         doThrow(SessionExpiredException.class).when(session).registerEmitter(anyLong(), any());
         doReturn(session).when(sessionManager).getSession();
 
-        doReturn(Observable.empty()).when(router).navigate(any(), any(), any(), any());
+        doReturn(Observable.empty()).when(router).navigate(any(), any());
 
         Request request = new Request(904, "app/test/route1", RequestMethod.GET, Collections.emptyMap());
 
         expectedException.expect(SessionExpiredException.class);
-        requestProcessor.standardRequest(router.findRoute(request.getRoute(), request.getRequestMethod()), request.getId(), request.getRoute(), request.getRequestMethod(), request.getPayload());
+        requestProcessor.standardRequest(router.match(request.getRoute(), request.getRequestMethod()), request.getId(), request.getPayload());
     }
 
     @Test
-    public void givenSessionExpired_whenRegisterEmitter_thenCloseIt() throws IllegalAccessException, InvocationTargetException {
+    public void givenSessionExpired_whenRegisterEmitter_thenCloseIt() throws IllegalAccessException {
         Session session = mock(Session.class);
         doThrow(RuntimeException.class).when(session).registerEmitter(anyLong(), any()); // any exception!
         doReturn(session).when(sessionManager).getSession();
 
         Subject subject = PublishSubject.create();
 
-        doReturn(subject).when(router).navigate(any(), any(), any(), any());
+        doReturn(subject).when(router).navigate(any(), any());
 
         Request request = new Request(904, "app/test/route1", RequestMethod.GET, Collections.emptyMap());
 
         try {
-            requestProcessor.standardRequest(router.findRoute(request.getRoute(), request.getRequestMethod()), request.getId(), request.getRoute(), request.getRequestMethod(), request.getPayload());
+            requestProcessor.standardRequest(router.match(request.getRoute(), request.getRequestMethod()), request.getId(), request.getPayload());
         } catch (Exception e) {
             // ignore
         }
@@ -205,12 +215,12 @@ public class RequestProcessorSpec {
 
         Subject subject = PublishSubject.create();
 
-        doReturn(subject.hide()).when(router).navigate(any(), any(), any(), any());
+        doReturn(subject.hide()).when(router).navigate(any(), any());
 
         Request request = new Request(904, "app/test/route1", RequestMethod.GET, Collections.emptyMap());
 
         try {
-            requestProcessor.standardRequest(router.findRoute(request.getRoute(), request.getRequestMethod()), request.getId(), request.getRoute(), request.getRequestMethod(), request.getPayload());
+            requestProcessor.standardRequest(router.match(request.getRoute(), request.getRequestMethod()), request.getId(), request.getPayload());
         } catch (Exception e) {
             // ignore
         }
@@ -219,4 +229,233 @@ public class RequestProcessorSpec {
         assertThat(subject.hasObservers()).isFalse();
     }
 
+    @Test
+    public void givenRouteWithCoalescing_thenStreamItemsAreSentInBatches() throws IllegalAccessException {
+        doReturn(new Session()).when(sessionManager).getSession();
+        TestObserver<Response> testObserver = TestObserver.create();
+
+        requestProcessor.standardRequest(router.match("app/test/coalesced-stream", RequestMethod.GET), 5, null)
+                .subscribe(testObserver);
+
+        testObserver.awaitTerminalEvent();
+        testObserver.assertValues(
+                new Response(5, ResponseStatus.STREAM_BATCH, Arrays.asList(1, 2, 3)),
+                new Response(5, ResponseStatus.STREAM_BATCH, Arrays.asList(4, 5, 6)),
+                new Response(5, ResponseStatus.STREAM, 7),
+                new Response(5, ResponseStatus.CLOSE, null)
+        );
+    }
+
+    @Test
+    public void givenErrorAfterItems_thenItemsAreSentBeforeError() {
+        StreamCoalescing coalescing = mock(StreamCoalescing.class);
+        doReturn(0L).when(coalescing).window();
+        doReturn(10).when(coalescing).maxItems();
+
+        TestObserver<Response> testObserver = TestObserver.create();
+        requestProcessor.coalesce(Observable.just(
+                new Response(1, ResponseStatus.STREAM, "a"),
+                new Response(1, ResponseStatus.STREAM, "b"),
+                new Response(1, ResponseStatus.ERROR, "error")
+        ), coalescing).subscribe(testObserver);
+
+        testObserver.assertValues(
+                new Response(1, ResponseStatus.STREAM_BATCH, Arrays.asList("a", "b")),
+                new Response(1, ResponseStatus.ERROR, "error")
+        );
+    }
+
+    @Test
+    public void givenRouteWithDelta_thenFirstItemIsFullAndNextArePatches() throws IllegalAccessException {
+        doReturn(new Session()).when(sessionManager).getSession();
+        TestObserver<Response> testObserver = TestObserver.create();
+
+        requestProcessor.standardRequest(router.match("app/test/delta-stream", RequestMethod.GET), 5, null)
+                .subscribe(testObserver);
+
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("a", 1);
+        first.put("b", "b");
+
+        testObserver.awaitTerminalEvent();
+        testObserver.assertValues(
+                new Response(5, ResponseStatus.STREAM_DELTA, first),
+                new Response(5, ResponseStatus.STREAM_DELTA, Collections.singletonMap("a", 2)),
+                new Response(5, ResponseStatus.CLOSE, null)
+        );
+    }
+
+    private TestObserver<Response> navigateTo(Object returnValue) throws IllegalAccessException {
+        TestObserver<Response> testObserver = TestObserver.create();
+        doReturn(returnValue).when(router).navigate(any(), any());
+
+        requestProcessor.standardRequest(router.match("app/test/route1", RequestMethod.GET), 7, null)
+                .subscribe(testObserver);
+
+        return testObserver;
+    }
+
+    @Test
+    public void givenCompletionStage_whenNotCompleted_thenNoResponseUntilCompleted() throws IllegalAccessException {
+        CompletableFuture<String> future = new CompletableFuture<>();
+
+        TestObserver<Response> testObserver = navigateTo(future);
+        testObserver.assertNoValues();
+        testObserver.assertNotTerminated();
+
+        future.complete("done");
+
+        testObserver.assertValue(new Response(7, ResponseStatus.OK, "done"));
+        testObserver.assertComplete();
+    }
+
+    @Test
+    public void givenCompletionStage_whenCompletedExceptionally_thenErrorGoesToExceptionHandler() throws IllegalAccessException {
+        CompletableFuture<String> future = new CompletableFuture<>();
+
+        TestObserver<Response> testObserver = navigateTo(future.thenApply(String::trim));
+        future.completeExceptionally(new IllegalArgumentException("wrong"));
+
+        testObserver.assertValue(new Response(7, ResponseStatus.BAD_REQUEST, "wrong"));
+        testObserver.assertComplete();
+    }
+
+    @Test
+    public void givenCompletionStageWithNull_thenOkWithoutPayload() throws IllegalAccessException {
+        navigateTo(CompletableFuture.completedFuture(null))
+                .assertValue(new Response(7, ResponseStatus.OK, null));
+    }
+
+    @Test
+    public void givenCompletionStageWithMono_thenResponseOfMono() throws IllegalAccessException {
+        navigateTo(CompletableFuture.completedFuture(Mono.error(ResponseStatus.ERROR, "missing")))
+                .assertValue(new Response(7, ResponseStatus.ERROR, "missing"));
+    }
+
+    @Test
+    public void givenSingle_thenOkResponse() throws IllegalAccessException {
+        SingleSubject<Integer> single = SingleSubject.create();
+
+        TestObserver<Response> testObserver = navigateTo(single);
+        testObserver.assertNoValues();
+
+        single.onSuccess(5);
+        testObserver.assertValue(new Response(7, ResponseStatus.OK, 5));
+        testObserver.assertComplete();
+    }
+
+    @Test
+    public void givenSingleError_thenErrorGoesToExceptionHandler() throws IllegalAccessException {
+        navigateTo(Single.error(new IllegalArgumentException("wrong")))
+                .assertValue(new Response(7, ResponseStatus.BAD_REQUEST, "wrong"));
+    }
+
+    @Test
+    public void givenMaybe_thenOkResponseWithOrWithoutPayload() throws IllegalAccessException {
+        navigateTo(Maybe.just("value")).assertValue(new Response(7, ResponseStatus.OK, "value"));
+        navigateTo(Maybe.empty()).assertValue(new Response(7, ResponseStatus.OK, null));
+    }
+
+    @Test
+    public void givenCompletable_thenOkResponseWhenCompleted() throws IllegalAccessException {
+        CompletableSubject completable = CompletableSubject.create();
+
+        TestObserver<Response> testObserver = navigateTo(completable);
+        testObserver.assertNoValues();
+
+        completable.onComplete();
+        testObserver.assertValue(new Response(7, ResponseStatus.OK, null));
+        testObserver.assertComplete();
+    }
+
+    @Test
+    public void givenPublisher_thenEmitOnlyAsManyItemsAsCredited() throws IllegalAccessException {
+        doReturn(new Session()).when(sessionManager).getSession();
+
+        TestObserver<Response> testObserver = navigateTo(Flowable.range(1, 3));
+        testObserver.assertNoValues();
+
+        requestProcessor.creditsRequest(7, 2);
+        testObserver.assertValues(new Response(7, ResponseStatus.STREAM, 1), new Response(7, ResponseStatus.STREAM, 2));
+        testObserver.assertNotTerminated();
+
+        requestProcessor.creditsRequest(7, 5);
+        testObserver.assertValues(
+                new Response(7, ResponseStatus.STREAM, 1),
+                new Response(7, ResponseStatus.STREAM, 2),
+                new Response(7, ResponseStatus.STREAM, 3),
+                new Response(7, ResponseStatus.CLOSE, null)
+        );
+        testObserver.assertComplete();
+    }
+
+    @Test
+    public void givenPublisher_whenStreamClosed_thenCancelSource() throws IllegalAccessException {
+        doReturn(new Session()).when(sessionManager).getSession();
+        PublishProcessor<Integer> source = PublishProcessor.create();
+
+        TestObserver<Response> testObserver = navigateTo(source);
+        assertThat(source.hasSubscribers()).isTrue();
+
+        requestProcessor.closeStreamRequest(7);
+
+        assertThat(source.hasSubscribers()).isFalse();
+        testObserver.assertValue(new Response(7, ResponseStatus.CLOSE, null));
+    }
+
+    @Test
+    public void givenCreditsForUnknownStream_thenIgnore() {
+        doReturn(new Session()).when(sessionManager).getSession();
+
+        requestProcessor.creditsRequest(404, 1).test().assertNoValues().assertComplete();
+    }
+
+    @Test
+    public void givenCreditsForStreamWithoutBackpressure_thenIgnore() throws IllegalAccessException {
+        doReturn(new Session()).when(sessionManager).getSession();
+        PublishSubject<Integer> source = PublishSubject.create();
+        TestObserver<Response> testObserver = navigateTo(source);
+
+        requestProcessor.creditsRequest(7, 1).test().assertNoValues().assertComplete();
+        source.onNext(1);
+
+        assertThat(source.hasObservers()).isTrue();
+        testObserver.assertValue(new Response(7, ResponseStatus.STREAM, 1));
+    }
+
+    @Test
+    public void givenNotPositiveCredits_thenException() {
+        expectedException.expect(IllegalArgumentException.class);
+        requestProcessor.creditsRequest(7, 0);
+    }
+
+    @Test
+    public void givenSynchronousSource_thenAllItemsAreSentToLateSubscriber() throws IllegalAccessException {
+        doReturn(new Session()).when(sessionManager).getSession();
+        doReturn(Observable.range(1, 2)).when(router).navigate(any(), any());
+
+        Observable<Response> responses = requestProcessor.standardRequest(router.match("app/test/route1", RequestMethod.GET), 7, null);
+
+        responses.test().assertValues(
+                new Response(7, ResponseStatus.STREAM, 1),
+                new Response(7, ResponseStatus.STREAM, 2),
+                new Response(7, ResponseStatus.CLOSE, null)
+        );
+    }
+
+    @Test
+    public void givenStream_whenSubscribed_thenItemsAreNotRetained() throws IllegalAccessException {
+        doReturn(new Session()).when(sessionManager).getSession();
+        PublishSubject<Integer> source = PublishSubject.create();
+        doReturn(source.hide()).when(router).navigate(any(), any());
+
+        Observable<Response> responses = requestProcessor.standardRequest(router.match("app/test/route1", RequestMethod.GET), 7, null);
+        source.onNext(1);
+
+        TestObserver<Response> transport = responses.test();
+        source.onNext(2);
+        transport.assertValues(new Response(7, ResponseStatus.STREAM, 1), new Response(7, ResponseStatus.STREAM, 2));
+
+        responses.test().assertError(IllegalStateException.class);
+    }
 }
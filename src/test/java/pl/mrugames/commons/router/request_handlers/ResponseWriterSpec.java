@@ -0,0 +1,195 @@
+package pl.mrugames.commons.router.request_handlers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import pl.mrugames.commons.router.FrameFormat;
+import pl.mrugames.commons.router.Mono;
+import pl.mrugames.commons.router.Response;
+import pl.mrugames.commons.router.ResponseStatus;
+import pl.mrugames.commons.router.controllers.UserModel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class ResponseWriterSpec {
+    private ObjectMapper mapper;
+    private ResponseWriter responseWriter;
+
+    @Before
+    public void before() {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        responseWriter = new ResponseWriter(mapper);
+    }
+
+    private List<Response> responses() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("user", new UserModel("Mariusz", 1));
+        map.put("date", LocalDate.of(2017, 10, 1));
+        map.put("null", null);
+
+        return Arrays.asList(
+                new Response(1, ResponseStatus.OK, null),
+                new Response(2, ResponseStatus.STREAM, "text \"quoted\" ąę"),
+                new Response(3, ResponseStatus.STREAM, 15),
+                new Response(4, ResponseStatus.CLOSE, new UserModel("Mariusz", 0)),
+                new Response(5, ResponseStatus.OK, Arrays.asList(new UserModel("a", 1), new UserModel("b", 2))),
+                new Response(6, ResponseStatus.OK, map),
+                new JsonResponse(7, ResponseStatus.ERROR, Collections.singletonMap("key", "value")),
+                new ExtendedResponse(8, ResponseStatus.OK, "payload")
+        );
+    }
+
+    @Test
+    public void whenWriteString_thenSameAsObjectMapper() throws IOException {
+        for (Response response : responses()) {
+            assertThat(responseWriter.writeString(response)).isEqualTo(mapper.writeValueAsString(response));
+        }
+    }
+
+    @Test
+    public void whenWriteBytes_thenSameAsObjectMapper() throws IOException {
+        for (Response response : responses()) {
+            assertThat(responseWriter.writeBytes(response)).isEqualTo(mapper.writeValueAsBytes(response));
+        }
+    }
+
+    @Test
+    public void whenWriteSmile_thenSameAsObjectMapperWithSmileFactory() throws IOException {
+        for (Response response : responses()) {
+            byte[] expected = mapper.writer().with(FrameFormat.SMILE.createFactory(mapper)).writeValueAsBytes(response);
+            assertThat(responseWriter.writeBytes(response, FrameFormat.SMILE)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void givenLargeResponse_whenWriteMoreResponses_thenBufferIsNotShared() throws IOException {
+        char[] chars = new char[100_000];
+        Arrays.fill(chars, 'x');
+        Response large = new Response(1, ResponseStatus.OK, new String(chars));
+        Response small = new Response(2, ResponseStatus.OK, "small");
+
+        String first = responseWriter.writeString(large);
+        byte[] firstBytes = responseWriter.writeBytes(large);
+
+        assertThat(responseWriter.writeString(small)).isEqualTo(mapper.writeValueAsString(small));
+        assertThat(responseWriter.writeBytes(small)).isEqualTo(mapper.writeValueAsBytes(small));
+        assertThat(first).isEqualTo(mapper.writeValueAsString(large));
+        assertThat(firstBytes).isEqualTo(mapper.writeValueAsBytes(large));
+    }
+
+    @Test
+    public void whenWriteToStream_thenStreamIsNotClosed() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Response response = new Response(1, ResponseStatus.OK, "a");
+
+        responseWriter.write(response, out, FrameFormat.JSON);
+        responseWriter.write(response, out, FrameFormat.JSON);
+
+        assertThat(out.toString("UTF-8")).isEqualTo(mapper.writeValueAsString(response) + mapper.writeValueAsString(response));
+    }
+
+    @Test
+    public void givenResponsesWithoutPayload_whenWrite_thenSameAsObjectMapper() throws IOException {
+        for (long id : new long[]{0, 7, 10, 1234567890123L, Long.MAX_VALUE, -1, Long.MIN_VALUE}) {
+            for (ResponseStatus status : ResponseStatus.values()) {
+                Response response = new Response(id, status, null);
+
+                assertThat(responseWriter.writeString(response)).isEqualTo(mapper.writeValueAsString(response));
+                assertThat(responseWriter.writeBytes(response)).isEqualTo(mapper.writeValueAsBytes(response));
+            }
+        }
+    }
+
+    @Test
+    public void givenNoValue_whenWrite_thenEmptyObject() throws IOException {
+        Response response = new Response(5, ResponseStatus.OK, Mono.NO_VAL);
+
+        assertThat(responseWriter.writeString(response)).isEqualTo("{\"id\":5,\"status\":\"OK\",\"payload\":{}}");
+        assertThat(new String(responseWriter.writeBytes(response), StandardCharsets.UTF_8)).isEqualTo("{\"id\":5,\"status\":\"OK\",\"payload\":{}}");
+    }
+
+    @Test
+    public void givenNoValue_whenWriteWithoutTemplate_thenEmptyObject() throws IOException {
+        Response response = new Response(5, ResponseStatus.OK, Mono.NO_VAL);
+        Response emptyObject = new Response(5, ResponseStatus.OK, Collections.emptyMap());
+        String json = "{\"id\":5,\"status\":\"OK\",\"payload\":{}}";
+
+        StringWriter writer = new StringWriter();
+        responseWriter.write(response, writer);
+        assertThat(writer.toString()).isEqualTo(json);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        responseWriter.write(response, out, FrameFormat.JSON);
+        assertThat(out.toString("UTF-8")).isEqualTo(json);
+
+        assertThat(responseWriter.writeBatchString(Arrays.asList(response, response))).isEqualTo("[" + json + "," + json + "]");
+        assertThat(new String(responseWriter.writeBatchBytes(Collections.singletonList(response), FrameFormat.JSON), StandardCharsets.UTF_8))
+                .isEqualTo("[" + json + "]");
+
+        for (FrameFormat format : Arrays.asList(FrameFormat.SMILE, FrameFormat.CBOR)) {
+            byte[] expected = mapper.writer().with(format.createFactory(mapper)).writeValueAsBytes(emptyObject);
+            assertThat(responseWriter.writeBytes(response, format)).isEqualTo(expected);
+
+            ByteArrayOutputStream formatOut = new ByteArrayOutputStream();
+            responseWriter.write(response, formatOut, format);
+            assertThat(formatOut.toByteArray()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void givenRepeatedErrorMessage_whenWrite_thenSameAsObjectMapper() throws IOException {
+        for (long id = 98; id < 103; ++id) {
+            Response response = new Response(id, ResponseStatus.BAD_REQUEST, "Session \"expired\" ąę");
+
+            assertThat(responseWriter.writeString(response)).isEqualTo(mapper.writeValueAsString(response));
+            assertThat(responseWriter.writeBytes(response)).isEqualTo(mapper.writeValueAsBytes(response));
+        }
+    }
+
+    @Test
+    public void givenConstantErrorMessage_thenTemplateIsBuiltUpfront() throws IOException {
+        ResponseTemplates templates = new ResponseTemplates(mapper::writeValueAsString);
+
+        for (String message : Arrays.asList("Session expired", "Session does not exist")) {
+            Response response = new Response(3, ResponseStatus.BAD_REQUEST, message);
+
+            assertThat(templates.find(response).toString(3)).isEqualTo(mapper.writeValueAsString(response));
+            assertThat(responseWriter.writeBytes(response)).isEqualTo(mapper.writeValueAsBytes(response));
+        }
+
+        assertThat(templates.find(new Response(3, ResponseStatus.STREAM, "Session expired"))).isNull();
+        assertThat(templates.find(new Response(3, ResponseStatus.BAD_REQUEST, "Route not found: app/x"))).isNull();
+    }
+
+    @Test
+    public void givenTemplate_whenWriteToStream_thenWriteTemplate() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Response response = new Response(41, ResponseStatus.CLOSE, null);
+
+        responseWriter.write(response, out, FrameFormat.JSON);
+
+        assertThat(out.toByteArray()).isEqualTo(mapper.writeValueAsBytes(response));
+    }
+
+    public static class ExtendedResponse extends Response {
+        ExtendedResponse(long id, ResponseStatus status, Object payload) {
+            super(id, status, payload);
+        }
+
+        public String getExtra() {
+            return "extra";
+        }
+    }
+}